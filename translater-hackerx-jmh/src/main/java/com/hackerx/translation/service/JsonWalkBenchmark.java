@@ -0,0 +1,60 @@
+package com.hackerx.translation.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The work on a lesson document around a translation: the walk that finds the segments and
+ * highlights, and putting the translations back. Putting back only overwrites values, so the
+ * same document is reused across invocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonWalkBenchmark {
+
+    @Param({"12", "120"})
+    public int blocks;
+
+    private Map<String, Object> lesson;
+    private TranslatableDocument document;
+    private List<String> translations;
+
+    @Setup
+    public void setUp() {
+        lesson = LessonFixtures.lesson(7, blocks);
+        document = TranslatableDocument.of(lesson);
+        translations = new ArrayList<>(document.size());
+        for (String text : document.getTexts()) {
+            translations.add(TextPreprocessor.preprocessText("[es] " + text, "Gemini"));
+        }
+    }
+
+    @Benchmark
+    public TranslatableDocument visit() {
+        return TranslatableDocument.of(lesson);
+    }
+
+    @Benchmark
+    public Map<String, Object> fill() {
+        document.fill(translations, text -> TextPreprocessor.postprocessText(text, "", "service"));
+        return lesson;
+    }
+}
@@ -0,0 +1,141 @@
+package com.hackerx.translation.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Deterministic HackerX lesson documents: subject and topic headers with a list of INFO, CODE,
+ * OUTPUT, highlighted text, MCQ and match blocks, and technical sentences full of the
+ * punctuation the preprocessor escapes.
+ */
+final class LessonFixtures {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String[] WORDS = {
+        "variable", "function", "loop", "array", "index", "string", "integer", "condition", "return",
+        "value", "object", "class", "method", "parameter", "argument", "list", "dictionary", "key",
+        "compiler", "runtime", "exception", "module", "import", "output", "input", "boolean", "scope"
+    };
+
+    private static final String[] SNIPPETS = {
+        "print(\"Hello, World!\")", "x = a[i] + b[j]", "if (n % 2 == 0) { return n; }", "C:\\\\temp\\\\data.txt",
+        "user@example.com", "50%", "#include <stdio.h>", "a && b || !c", "$HOME/bin", "x ^= y;", "`ls -la`",
+        "{key: value}", "arr[0..n-1]", "3.14", "i++", "'single'", "“curly”", "‘quoted’ text", "a|b", "~/.bashrc"
+    };
+
+    private LessonFixtures() {
+    }
+
+    /**
+     * One lesson with {@code blocks} content blocks.
+     */
+    static Map<String, Object> lesson(long seed, int blocks) {
+        Random random = new Random(seed);
+        Map<String, Object> lesson = new LinkedHashMap<>();
+        lesson.put("id", "lesson-" + seed);
+        lesson.put("subject", "Programming Fundamentals");
+        lesson.put("topic_name", sentence(random, 4));
+        lesson.put("subtopic_name", sentence(random, 3));
+        lesson.put("description", sentence(random, 18));
+
+        List<Object> content = new ArrayList<>(blocks);
+        for (int i = 0; i < blocks; i++) {
+            content.add(block(random, i));
+        }
+        lesson.put("blocks", content);
+        return lesson;
+    }
+
+    /**
+     * {@code lines} lessons as NDJSON, one per line.
+     */
+    static String ndjson(int lines, int blocksPerLesson) throws JsonProcessingException {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            ndjson.append(OBJECT_MAPPER.writeValueAsString(lesson(i, blocksPerLesson))).append('\n');
+        }
+        return ndjson.toString();
+    }
+
+    private static Map<String, Object> block(Random random, int index) {
+        Map<String, Object> block = new LinkedHashMap<>();
+        switch (index % 6) {
+            case 0:
+                block.put("type", "INFO");
+                block.put("title", sentence(random, 5));
+                block.put("info_text", paragraph(random));
+                break;
+            case 1:
+                block.put("type", "CODE");
+                block.put("translate_content", "false");
+                block.put("content", SNIPPETS[random.nextInt(SNIPPETS.length)]);
+                block.put("hint", sentence(random, 10));
+                break;
+            case 2:
+                block.put("type", "OUTPUT");
+                block.put("data", SNIPPETS[random.nextInt(SNIPPETS.length)] + "\n" + SNIPPETS[random.nextInt(SNIPPETS.length)]);
+                break;
+            case 3:
+                String phrase = sentence(random, 2);
+                block.put("type", "TEXT");
+                block.put("data", sentence(random, 8) + " " + phrase + " " + sentence(random, 8));
+                List<Object> highlight = new ArrayList<>();
+                highlight.add(new LinkedHashMap<>(Map.of("key_title", phrase)));
+                block.put("highlight", highlight);
+                break;
+            case 4:
+                block.put("type", "MCQ");
+                block.put("question_text", sentence(random, 12) + "?");
+                List<Object> options = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    options.add(random.nextBoolean() ? sentence(random, 3) : SNIPPETS[random.nextInt(SNIPPETS.length)]);
+                }
+                block.put("option", options);
+                block.put("correct_explanation", paragraph(random));
+                block.put("incorrect_explanation", sentence(random, 14));
+                break;
+            default:
+                block.put("type", "MATCH");
+                block.put("lhs", sentence(random, 3));
+                block.put("rhs", sentence(random, 6));
+                break;
+        }
+        return block;
+    }
+
+    private static String paragraph(Random random) {
+        StringBuilder paragraph = new StringBuilder();
+        int sentences = 2 + random.nextInt(3);
+        for (int i = 0; i < sentences; i++) {
+            if (i > 0) {
+                paragraph.append(random.nextInt(4) == 0 ? "\n" : " ");
+            }
+            paragraph.append(sentence(random, 8 + random.nextInt(10)));
+            if (random.nextInt(3) == 0) {
+                paragraph.append(" (e.g. ").append(SNIPPETS[random.nextInt(SNIPPETS.length)]).append(")");
+            }
+            paragraph.append(random.nextInt(5) == 0 ? "!" : ".");
+        }
+        return paragraph.toString();
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (i == 0) {
+                sentence.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            } else {
+                sentence.append(random.nextInt(7) == 0 ? ", " : " ").append(word);
+            }
+        }
+        return sentence.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package com.hackerx.translation.service;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hackerx.translation.service.provider.ChatGptProvider;
+import com.hackerx.translation.service.provider.GeminiProvider;
+import com.hackerx.translation.service.provider.ProviderRouter;
+import com.hackerx.translation.service.provider.RequestHedger;
+import com.hackerx.translation.service.provider.TranslationProviderRegistry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * {@code translateNDJsonBatch} end to end with the provider stubbed: parsing the lines,
+ * preprocessing, packing and encoding the batches, parsing the replies and reassembling the
+ * documents. The translation memory and checkpoint journal are off so that every invocation
+ * does the full work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NDJsonBatchBenchmark {
+
+    @Param({"50", "500"})
+    public int lines;
+
+    @Param({"Gemini", "ChatGPT"})
+    public String provider;
+
+    private TranslationService service;
+    private String content;
+
+    @Setup
+    public void setUp() throws Exception {
+        TranslationMetrics metrics = new TranslationMetrics(new SimpleMeterRegistry());
+        StubProviderHttpClient providerHttpClient = new StubProviderHttpClient(metrics);
+        BatchRecovery batchRecovery = new BatchRecovery(3, 0, 0);
+        TranslationProviderRegistry providerRegistry = new TranslationProviderRegistry(List.of(
+                new ChatGptProvider(providerHttpClient, batchRecovery, metrics, "benchmark", MaskingMode.NONE),
+                new GeminiProvider(providerHttpClient, batchRecovery, metrics, "benchmark",
+                        "https://generativelanguage.googleapis.com/v1beta/models/gemini:generateContent",
+                        MaskingMode.COMPACT)), "", 0, false);
+        service = new TranslationService(new TranslationMemory(false, 0, ""),
+                new BatchPacker(8000, 6000, 200, 1.6),
+                providerRegistry,
+                new RequestHedger(providerRegistry, false, 0.95, 0, 0, 1, 1, false),
+                new ProviderRouter(providerRegistry, metrics, false, 0.2, 5, 0.5, 0, 0.3, 0, 0),
+                new NDJsonCheckpointJournal(false, "target/checkpoints", 1000, 24),
+                new HighlightResolver(providerHttpClient, metrics, "benchmark", 0.8, 100),
+                metrics);
+        set("ndjsonWindowSize", 50);
+        content = LessonFixtures.ndjson(lines, 12);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> translateNDJsonBatch() throws IOException {
+        return service.translateNDJsonBatch(content, "es", provider);
+    }
+
+    private void set(String name, Object value) throws ReflectiveOperationException {
+        Field field = TranslationService.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(service, value);
+    }
+}
@@ -0,0 +1,67 @@
+package com.hackerx.translation.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import okhttp3.Request;
+import okio.Buffer;
+
+/**
+ * Answers provider calls in-process and at once, so that the benchmarks measure the
+ * service's own CPU and allocation cost. Batch requests get every segment back with a
+ * language prefix; any other prompt, such as a highlight lookup, gets a fixed phrase.
+ */
+final class StubProviderHttpClient extends ProviderHttpClient {
+
+    private static final String SEGMENTS = "{\"segments\"";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    StubProviderHttpClient(TranslationMetrics metrics) {
+        super(new ProviderRateLimiter(Long.MAX_VALUE / 4, Long.MAX_VALUE / 4, Long.MAX_VALUE / 4,
+                Long.MAX_VALUE / 4, Long.MAX_VALUE / 4, Long.MAX_VALUE / 4), metrics, 64, 64, 0, 0);
+    }
+
+    @Override
+    public CompletableFuture<String> executeAsync(String provider, Request request) {
+        try {
+            Buffer body = new Buffer();
+            request.body().writeTo(body);
+            JsonNode root = objectMapper.readTree(body.readUtf8());
+            boolean gemini = "Gemini".equalsIgnoreCase(provider);
+            String prompt = gemini
+                    ? root.path("contents").path(0).path("parts").path(0).path("text").asText()
+                    : root.path("messages").path(root.path("messages").size() - 1).path("content").asText();
+            String reply = reply(prompt);
+
+            Map<String, Object> response = gemini
+                    ? Map.of("candidates", List.of(Map.of("content", Map.of("parts", List.of(Map.of("text", reply))))))
+                    : Map.of("choices", List.of(Map.of("message", Map.of("content", reply))));
+            return CompletableFuture.completedFuture(objectMapper.writeValueAsString(response));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private String reply(String prompt) throws IOException {
+        int start = prompt.indexOf(SEGMENTS);
+        if (start < 0) {
+            return "highlighted phrase";
+        }
+        List<Map<String, String>> translations = new ArrayList<>();
+        for (JsonNode segment : objectMapper.readTree(prompt.substring(start)).path("segments")) {
+            Map<String, String> translation = new LinkedHashMap<>();
+            translation.put("id", segment.path("id").asText());
+            translation.put("text", "[es] " + segment.path("text").asText());
+            translations.add(translation);
+        }
+        return objectMapper.writeValueAsString(Map.of("translations", translations));
+    }
+}
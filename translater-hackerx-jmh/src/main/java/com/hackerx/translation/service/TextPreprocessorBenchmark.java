@@ -0,0 +1,55 @@
+package com.hackerx.translation.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Placeholder encoding and restoring over every segment of a lesson.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextPreprocessorBenchmark {
+
+    private List<String> segments;
+    private List<String> encoded;
+
+    @Setup
+    public void setUp() {
+        segments = TranslatableDocument.of(LessonFixtures.lesson(42, 60)).getTexts();
+        encoded = new ArrayList<>(segments.size());
+        for (String segment : segments) {
+            encoded.add(TextPreprocessor.preprocessText(segment, "Gemini"));
+        }
+    }
+
+    @Benchmark
+    public void preprocessText(Blackhole blackhole) {
+        for (String segment : segments) {
+            blackhole.consume(TextPreprocessor.preprocessText(segment, "Gemini"));
+        }
+    }
+
+    @Benchmark
+    public void postprocessText(Blackhole blackhole) {
+        for (String segment : encoded) {
+            blackhole.consume(TextPreprocessor.postprocessText(segment, "key", "Gemini"));
+        }
+    }
+}
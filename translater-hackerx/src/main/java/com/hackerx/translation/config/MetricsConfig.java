@@ -0,0 +1,41 @@
+package com.hackerx.translation.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.hackerx.translation.service.TranslationJobExecutor;
+import com.hackerx.translation.service.TranslationMemory;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Gauges of the translation pipeline, next to the meters of
+ * {@link com.hackerx.translation.service.TranslationMetrics}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Jobs in progress and queued with their estimated memory, which is what autoscaling
+     * follows, and the hit ratio of the translation memory.
+     */
+    @Bean
+    public MeterBinder translationGauges(TranslationJobExecutor jobExecutor, TranslationMemory translationMemory) {
+        return registry -> {
+            Gauge.builder("translation.jobs.in.progress", jobExecutor, TranslationJobExecutor::getJobsInProgress)
+                    .description("Jobs admitted and not yet finished")
+                    .register(registry);
+            Gauge.builder("translation.jobs.queued", jobExecutor, TranslationJobExecutor::getQueuedJobs)
+                    .description("Jobs waiting for a thread of the job pool")
+                    .register(registry);
+            Gauge.builder("translation.jobs.memory", jobExecutor, TranslationJobExecutor::getInMemoryBytes)
+                    .description("Estimated memory held by the jobs in progress")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("translation.memory.hit.ratio", translationMemory, TranslationMemory::hitRatio)
+                    .description("Share of segments found in the translation memory")
+                    .register(registry);
+        };
+    }
+}
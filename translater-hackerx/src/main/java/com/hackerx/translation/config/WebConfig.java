@@ -14,6 +14,7 @@ public class WebConfig implements WebMvcConfigurer {
                                  "https://translater-hackerx-gzxb6nl4qq-el.a.run.app")
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowCredentials(true)
-                .allowedHeaders("*");
+                .allowedHeaders("*")
+                .exposedHeaders("Server-Timing");
     }
 }
@@ -0,0 +1,119 @@
+package com.hackerx.translation.controller;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.hackerx.translation.service.FlightRecordings;
+
+/**
+ * Flight Recorder recordings on demand: start one, download what it holds as a {@code .jfr}
+ * file for JDK Mission Control or {@code jfr print}, and close it. Every call needs the
+ * {@code X-Admin-Token} header to match {@code translation.admin.token}; without a token
+ * configured the endpoints are off.
+ */
+@RestController
+@RequestMapping("/api/admin/recordings")
+public class AdminController {
+
+    private static final String TOKEN_HEADER = "X-Admin-Token";
+
+    @Autowired
+    private FlightRecordings flightRecordings;
+
+    @Value("${translation.admin.token:}")
+    private String adminToken;
+
+    /**
+     * Starts a recording; with {@code durationSeconds} above 0 it stops by itself after that
+     * long and can still be downloaded until it is closed.
+     */
+    @PostMapping
+    public ResponseEntity<?> start(@RequestHeader(value = TOKEN_HEADER, required = false) String token,
+            @RequestParam(value = "durationSeconds", defaultValue = "0") long durationSeconds) throws IOException {
+        ResponseEntity<?> denied = checkToken(token);
+        if (denied != null) {
+            return denied;
+        }
+        Duration duration = durationSeconds > 0 ? Duration.ofSeconds(durationSeconds) : null;
+        return ResponseEntity.status(HttpStatus.CREATED).body(flightRecordings.start(duration));
+    }
+
+    @GetMapping
+    public ResponseEntity<?> list(@RequestHeader(value = TOKEN_HEADER, required = false) String token) {
+        ResponseEntity<?> denied = checkToken(token);
+        return denied != null ? denied : ResponseEntity.ok(flightRecordings.list());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> dump(@RequestHeader(value = TOKEN_HEADER, required = false) String token,
+            @PathVariable long id) throws IOException {
+        ResponseEntity<?> denied = checkToken(token);
+        if (denied != null) {
+            return denied;
+        }
+        Path file = flightRecordings.dump(id);
+        if (file == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Unknown recording " + id));
+        }
+        StreamingResponseBody body = output -> {
+            try {
+                Files.copy(file, output);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=translation-" + id + ".jfr")
+                .contentLength(Files.size(file))
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> close(@RequestHeader(value = TOKEN_HEADER, required = false) String token,
+            @PathVariable long id) {
+        ResponseEntity<?> denied = checkToken(token);
+        if (denied != null) {
+            return denied;
+        }
+        if (!flightRecordings.close(id)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Unknown recording " + id));
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * The response refusing the call, or {@code null} if {@code token} is the admin token.
+     */
+    private ResponseEntity<?> checkToken(String token) {
+        if (adminToken == null || adminToken.isBlank()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Admin endpoints are disabled"));
+        }
+        if (token == null || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                adminToken.getBytes(StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Invalid admin token"));
+        }
+        return null;
+    }
+}
@@ -1,11 +1,10 @@
 package com.hackerx.translation.controller;
 
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -15,21 +14,38 @@ import java.util.zip.ZipOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.hackerx.translation.service.BatchPacker;
+import com.hackerx.translation.service.MaskingTokenReport;
+import com.hackerx.translation.service.HighlightResolver;
+import com.hackerx.translation.service.NDJsonCheckpointJournal;
+import com.hackerx.translation.service.ProviderHttpClient;
+import com.hackerx.translation.service.ProviderRateLimiter;
+import com.hackerx.translation.service.StageTimer;
+import com.hackerx.translation.service.TranslatableDocument;
+import com.hackerx.translation.service.TranslationJob;
+import com.hackerx.translation.service.TranslationJobExecutor;
+import com.hackerx.translation.service.TranslationJobService;
+import com.hackerx.translation.service.TranslationMemory;
+import com.hackerx.translation.service.TranslationReport;
 import com.hackerx.translation.service.TranslationService;
+import com.hackerx.translation.service.provider.ProviderRouter;
+import com.hackerx.translation.service.provider.RequestHedger;
+import com.hackerx.translation.service.provider.TranslationProviderRegistry;
 
 @CrossOrigin(origins = {
     "http://localhost:3000", 
@@ -42,36 +58,93 @@ public class TranslationController {
 
     @Autowired
     private TranslationService translationService;
+    @Autowired
+    private TranslationJobExecutor jobExecutor;
+    @Autowired
+    private TranslationJobService jobService;
+    @Autowired
+    private ProviderHttpClient providerHttpClient;
+    @Autowired
+    private ProviderRateLimiter rateLimiter;
+    @Autowired
+    private TranslationMemory translationMemory;
+    @Autowired
+    private BatchPacker batchPacker;
+    @Autowired
+    private NDJsonCheckpointJournal checkpointJournal;
+    @Autowired
+    private HighlightResolver highlightResolver;
+    @Autowired
+    private TranslationProviderRegistry providerRegistry;
+    @Autowired
+    private RequestHedger requestHedger;
+    @Autowired
+    private ProviderRouter providerRouter;
+    @Autowired
+    private UploadLimits uploadLimits;
     private static final Logger LOGGER = LoggerFactory.getLogger(TranslationController.class);
     private static final long TIMEOUT = 3600000; // 1 hour in milliseconds
 
+    /**
+     * Translates one file into {@code language}. Given a comma-separated list of
+     * {@code languages} instead, the file is parsed once and translated into all of them at
+     * once, and the response is a zip with a folder per language. With {@code failover}, calls
+     * may go to another provider while {@code service} is unhealthy. The {@code Server-Timing}
+     * header of the response breaks the time down by stage.
+     */
     @PostMapping("/single")
     public DeferredResult<Object> translateSingleFile(@RequestParam("file") MultipartFile file,
-            @RequestParam("language") String language, 
+            @RequestParam(value = "language", required = false) String language, 
+            @RequestParam(value = "languages", required = false) String languages,
             @RequestParam("service") String service,
-            @RequestParam(value = "fileType", defaultValue = "json") String fileType) throws IOException {
+            @RequestParam(value = "fileType", defaultValue = "json") String fileType,
+            @RequestParam(value = "failover", defaultValue = "false") boolean failover) throws IOException {
         
         LOGGER.info("Received single file translation request. File type: {}", fileType);
         
         DeferredResult<Object> result = new DeferredResult<>(TIMEOUT);
+        List<String> targetLanguages = TranslationJobService.parseLanguages(languages != null ? languages
+                : language != null ? language : "");
+        if (targetLanguages.isEmpty()) {
+            result.setResult(ResponseEntity.badRequest().body(Map.of("error", "No target language given")));
+            return result;
+        }
+        uploadLimits.checkInMemory(file);
+        TranslationReport report = new TranslationReport();
+        report.setFailoverAllowed(failover);
         
-        CompletableFuture.supplyAsync(() -> {
-            try {
-                if ("ndjson".equalsIgnoreCase(fileType)) {
-                    // Process as NDJSON with batch processing
-                    String content = new String(file.getBytes(), StandardCharsets.UTF_8);
-                    return translationService.translateNDJsonBatch(content, language, service);
-                } else {
-                    // Process as regular JSON
-                    ObjectMapper objectMapper = new ObjectMapper();
-                    Map<String, Object> jsonContent = objectMapper.readValue(file.getInputStream(), Map.class);
-                    return translationService.translateJson(jsonContent, language, service);
-                }
-            } catch (IOException e) {
-                LOGGER.error("Error processing file: ", e);
-                throw new RuntimeException("Error processing file", e);
+        // Parsing runs on the job pool; the translation then completes on the provider callbacks
+        CompletableFuture<Object> translation = jobExecutor.submit(file.getSize(), () -> {
+            if (targetLanguages.size() > 1) {
+                List<TranslationJob.Upload> uploads = List.of(
+                        new TranslationJob.Upload("translated_" + file.getOriginalFilename(), file.getBytes()));
+                return jobService.translate(uploads, fileType, targetLanguages, service, report)
+                        .thenApply(archive -> (Object) ResponseEntity.ok()
+                                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + archive.getFileName())
+                                .header(TranslationReport.SERVER_TIMING_HEADER, report.getServerTiming())
+                                .contentType(MediaType.parseMediaType(archive.getContentType()))
+                                .body(archive.getContent()));
             }
-        }).whenComplete((response, ex) -> {
+            String targetLanguage = targetLanguages.get(0);
+            if ("ndjson".equalsIgnoreCase(fileType)) {
+                // Process as NDJSON with batch processing
+                String content = new String(file.getBytes(), StandardCharsets.UTF_8);
+                return translationService.translateNDJsonBatchAsync(content, targetLanguage, service, report)
+                        .whenComplete((response, failure) -> LOGGER.info("Translation report: {}", report.toMap()))
+                        .thenApply(response -> (Object) withTiming(response, report));
+            } else {
+                // Process as regular JSON
+                ObjectMapper objectMapper = new ObjectMapper();
+                StageTimer parse = StageTimer.start(StageTimer.Stage.PARSE, report);
+                Map<String, Object> jsonContent = objectMapper.readValue(file.getInputStream(), Map.class);
+                parse.stop(1);
+                return translationService.translateJsonAsync(jsonContent, targetLanguage, service, report)
+                        .thenApply(response -> (Object) withTiming(response, report));
+            }
+        });
+        result.onTimeout(() -> translation.cancel(true));
+        
+        translation.whenComplete((response, ex) -> {
             if (ex != null) {
                 result.setErrorResult(ex);
             } else {
@@ -82,26 +155,89 @@ public class TranslationController {
         return result;
     }
 
-    @PostMapping("/app-json")
-    public DeferredResult<Map<String, String>> translateAppJSON(@RequestParam("file") MultipartFile file,
+    /**
+     * Translates one file, writing the translation as it goes. Uploads up to the servlet
+     * multipart limits are accepted here, far beyond what the in-memory endpoints take (see
+     * {@link UploadLimits}); the upload is spooled to disk and read back window by window.
+     */
+    @PostMapping("/single/stream")
+    public ResponseEntity<StreamingResponseBody> translateSingleFileStreaming(@RequestParam("file") MultipartFile file,
             @RequestParam("language") String language, 
-            @RequestParam("service") String service) throws IOException {
+            @RequestParam("service") String service,
+            @RequestParam(value = "fileType", defaultValue = "ndjson") String fileType) throws IOException {
         
-        DeferredResult<Map<String, String>> result = new DeferredResult<>(TIMEOUT);
+        if ("json".equalsIgnoreCase(fileType)) {
+            return translateJsonFileStreaming(file, language, service);
+        }
+        LOGGER.info("Received streaming NDJSON translation request. File: {}", file.getOriginalFilename());
         
-        CompletableFuture.supplyAsync(() -> {
+        TranslationJobExecutor.Admission admission = jobExecutor.admit(
+                uploadLimits.streamedAdmissionBytes(file.getSize()));
+        InputStream input = file.getInputStream();
+        StreamingResponseBody body = output -> {
+            try (InputStream in = input) {
+                translationService.translateNDJsonStream(in, output, language, service);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Error streaming file: ", e);
+                throw e;
+            } finally {
+                admission.release();
+            }
+        };
+        
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    /**
+     * A JSON document is streamed from the upload twice, once to find its segments and once to
+     * write the translated copy, so its size is not bound by the heap.
+     */
+    private ResponseEntity<StreamingResponseBody> translateJsonFileStreaming(MultipartFile file, String language,
+            String service) {
+        LOGGER.info("Received streaming JSON translation request. File: {}", file.getOriginalFilename());
+        
+        TranslationJobExecutor.Admission admission = jobExecutor.admit(file.getSize());
+        StreamingResponseBody body = output -> {
             try {
-                ObjectMapper objectMapper = new ObjectMapper();
-                Map<String, String> jsonContent = objectMapper.readValue(file.getInputStream(), 
-                        new TypeReference<Map<String, String>>() {});
-                
-                LOGGER.info("Received app JSON translation request with {} keys", jsonContent.size());
-                return translationService.translateAppJson(jsonContent, language, service);
-            } catch (IOException e) {
-                LOGGER.error("Error processing file: ", e);
-                throw new RuntimeException("Error processing file", e);
+                translationService.translateJsonStream(file, output, language, service);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Error streaming file: ", e);
+                throw e;
+            } finally {
+                admission.release();
             }
-        }).whenComplete((response, ex) -> {
+        };
+        
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    @PostMapping("/app-json")
+    public DeferredResult<ResponseEntity<Map<String, String>>> translateAppJSON(@RequestParam("file") MultipartFile file,
+            @RequestParam("language") String language, 
+            @RequestParam("service") String service) throws IOException {
+        
+        uploadLimits.checkInMemory(file);
+        DeferredResult<ResponseEntity<Map<String, String>>> result = new DeferredResult<>(TIMEOUT);
+        TranslationReport report = new TranslationReport();
+        
+        CompletableFuture<ResponseEntity<Map<String, String>>> translation = jobExecutor.submit(file.getSize(), () -> {
+            ObjectMapper objectMapper = new ObjectMapper();
+            StageTimer parse = StageTimer.start(StageTimer.Stage.PARSE, report);
+            Map<String, String> jsonContent = objectMapper.readValue(file.getInputStream(), 
+                    new TypeReference<Map<String, String>>() {});
+            parse.stop(1);
+            
+            LOGGER.info("Received app JSON translation request with {} keys", jsonContent.size());
+            return translationService.translateAppJsonAsync(jsonContent, language, service, report)
+                    .thenApply(response -> withTiming(response, report));
+        });
+        result.onTimeout(() -> translation.cancel(true));
+        
+        translation.whenComplete((response, ex) -> {
             if (ex != null) {
                 result.setErrorResult(ex);
             } else {
@@ -113,68 +249,110 @@ public class TranslationController {
     }
 
     @PostMapping("/multiple")
-    public DeferredResult<ResponseEntity<InputStreamResource>> translateMultipleFiles(
+    public ResponseEntity<StreamingResponseBody> translateMultipleFiles(
             @RequestParam("files") MultipartFile[] files,
             @RequestParam("language") String language, 
             @RequestParam("service") String service,
             @RequestParam(value = "fileType", defaultValue = "json") String fileType) throws IOException {
         
         LOGGER.info("Received multiple files translation request. File type: {}", fileType);
-        DeferredResult<ResponseEntity<InputStreamResource>> result = new DeferredResult<>(TIMEOUT);
         
-        CompletableFuture.supplyAsync(() -> {
+        if (!"ndjson".equalsIgnoreCase(fileType)) {
+            uploadLimits.checkInMemory(files);
+        }
+        long totalSize = 0;
+        for (MultipartFile file : files) {
+            totalSize += "ndjson".equalsIgnoreCase(fileType) ? uploadLimits.streamedAdmissionBytes(file.getSize())
+                    : file.getSize();
+        }
+        TranslationJobExecutor.Admission admission = jobExecutor.admit(totalSize);
+        
+        // Entries are written straight to the response, each one as soon as its file is translated
+        StreamingResponseBody body = output -> {
             try {
-                Path zipFilePath = Paths.get("translated_files.zip");
+                // The response stream belongs to the container, so finish the archive without closing it
+                ZipOutputStream zos = new ZipOutputStream(output);
+                ObjectMapper objectMapper = new ObjectMapper();
                 
-                try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zipFilePath))) {
-                    ObjectMapper objectMapper = new ObjectMapper();
+                for (MultipartFile file : files) {
+                    String fileName = file.getOriginalFilename();
                     
-                    for (MultipartFile file : files) {
-                        String fileName = file.getOriginalFilename();
-                        
-                        if ("ndjson".equalsIgnoreCase(fileType)) {
-                            // Process as NDJSON with batch processing
-                            String content = new String(file.getBytes(), StandardCharsets.UTF_8);
-                            List<Map<String, Object>> translatedNdjson = translationService.translateNDJsonBatch(content, language, service);
-                            
-                            // Convert back to NDJSON format
-                            StringBuilder ndjsonContent = new StringBuilder();
-                            for (Map<String, Object> json : translatedNdjson) {
-                                ndjsonContent.append(objectMapper.writeValueAsString(json)).append("\n");
-                            }
-                            
-                            zos.putNextEntry(new ZipEntry(fileName));
-                            zos.write(ndjsonContent.toString().getBytes(StandardCharsets.UTF_8));
-                            zos.closeEntry();
-                        } else {
-                            // Process as regular JSON
-                            Map<String, Object> jsonContent = objectMapper.readValue(file.getInputStream(), Map.class);
-                            Map<String, Object> translatedJson = translationService.translateJson(jsonContent, language, service);
-                            
-                            zos.putNextEntry(new ZipEntry(fileName));
-                            zos.write(objectMapper.writeValueAsBytes(translatedJson));
-                            zos.closeEntry();
+                    if ("ndjson".equalsIgnoreCase(fileType)) {
+                        // Process as NDJSON, writing the entry window by window
+                        zos.putNextEntry(new ZipEntry(fileName));
+                        try (InputStream in = file.getInputStream()) {
+                            translationService.translateNDJsonStream(in, zos, language, service);
                         }
+                    } else {
+                        // Process as regular JSON
+                        Map<String, Object> jsonContent = objectMapper.readValue(file.getInputStream(), Map.class);
+                        Map<String, Object> translatedJson = translationService.translateJson(jsonContent, language, service);
+                        zos.putNextEntry(new ZipEntry(fileName));
+                        zos.write(objectMapper.writeValueAsBytes(translatedJson));
                     }
+                    
+                    zos.closeEntry();
+                    zos.flush();
+                    LOGGER.info("Translated {} and added it to the archive", fileName);
                 }
-                
-                InputStreamResource resource = new InputStreamResource(new FileInputStream(zipFilePath.toFile()));
-                return ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=translated_files.zip")
-                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                        .body(resource);
-            } catch (Exception e) {
+                zos.finish();
+            } catch (IOException | RuntimeException e) {
                 LOGGER.error("Error processing files: ", e);
-                throw new RuntimeException("Error processing files", e);
-            }
-        }).whenComplete((response, ex) -> {
-            if (ex != null) {
-                result.setErrorResult(ex);
-            } else {
-                result.setResult(response);
+                throw e;
+            } finally {
+                admission.release();
             }
-        });
+        };
         
-        return result;
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=translated_files.zip")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+
+    /**
+     * {@code body} with the {@code Server-Timing} header of {@code report}. Streamed responses
+     * send their headers before the work is done, so they carry none.
+     */
+    private static <T> ResponseEntity<T> withTiming(T body, TranslationReport report) {
+        return ResponseEntity.ok().header(TranslationReport.SERVER_TIMING_HEADER, report.getServerTiming()).body(body);
+    }
+
+    /**
+     * Token cost of the masking modes on the segments of an uploaded file, without calling a
+     * provider.
+     */
+    @PostMapping("/masking-report")
+    public Map<String, Object> getMaskingReport(@RequestParam("file") MultipartFile file,
+            @RequestParam(value = "fileType", defaultValue = "json") String fileType) throws IOException {
+        uploadLimits.checkInMemory(file);
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<String> segments = new ArrayList<>();
+        if ("ndjson".equalsIgnoreCase(fileType)) {
+            for (String line : new String(file.getBytes(), StandardCharsets.UTF_8).split("\n")) {
+                if (!line.isBlank()) {
+                    segments.addAll(TranslatableDocument.of(objectMapper.readValue(line, Map.class)).getTexts());
+                }
+            }
+        } else {
+            segments.addAll(TranslatableDocument.of(objectMapper.readValue(file.getInputStream(), Map.class)).getTexts());
+        }
+        return MaskingTokenReport.compare(segments);
+    }
+
+    @GetMapping("/load")
+    public Map<String, Object> getLoad() {
+        Map<String, Object> load = new LinkedHashMap<>();
+        load.put("jobs", jobExecutor.stats());
+        load.put("providers", providerHttpClient.stats());
+        load.put("rateLimits", rateLimiter.stats());
+        load.put("translationMemory", translationMemory.stats());
+        load.put("batches", batchPacker.stats());
+        load.put("checkpoints", checkpointJournal.stats());
+        load.put("highlights", highlightResolver.stats());
+        load.put("routing", providerRegistry.stats());
+        load.put("hedging", requestHedger.stats());
+        load.put("circuits", providerRouter.stats());
+        return load;
     }
 }
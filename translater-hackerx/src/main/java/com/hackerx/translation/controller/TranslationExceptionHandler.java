@@ -0,0 +1,38 @@
+package com.hackerx.translation.controller;
+
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import com.hackerx.translation.service.JobRejectedException;
+
+/**
+ * Turns a rejected translation job into a 503 with {@code Retry-After}, for every endpoint
+ * that submits jobs, and an upload over its limit into a 413.
+ */
+@RestControllerAdvice
+public class TranslationExceptionHandler {
+
+    @ExceptionHandler(JobRejectedException.class)
+    public ResponseEntity<Map<String, Object>> handleJobRejected(JobRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of("error", e.getMessage(), "retryAfterSeconds", e.getRetryAfterSeconds()));
+    }
+
+    /**
+     * An upload over the servlet multipart limits, or over the in-memory limit of its endpoint
+     * (see {@link UploadLimits}).
+     */
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<Map<String, Object>> handleUploadTooLarge(MaxUploadSizeExceededException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(Map.of("error", "Upload too large; use /api/translate/single/stream for large files",
+                        "maxUploadBytes", e.getMaxUploadSize()));
+    }
+}
@@ -0,0 +1,115 @@
+package com.hackerx.translation.controller;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.hackerx.translation.service.TranslationJob;
+import com.hackerx.translation.service.TranslationJobService;
+import com.hackerx.translation.service.TranslationReport;
+
+/**
+ * Job-style translation: submit files, poll the job for progress, then download the result.
+ * Unlike {@code /api/translate/single}, no request is held open while the providers work.
+ */
+@CrossOrigin(origins = {
+    "http://localhost:3000",
+    "https://translater-hackerx-frontend-gzxb6nl4qq-uc.a.run.app",
+    "https://translater-hackerx-gzxb6nl4qq-el.a.run.app"
+}, allowCredentials = "true")
+@RestController
+@RequestMapping("/api/translate/jobs")
+public class TranslationJobController {
+
+    @Autowired
+    private TranslationJobService jobService;
+    @Autowired
+    private UploadLimits uploadLimits;
+
+    /**
+     * Submits {@code files} for translation into {@code language}, or into each of a
+     * comma-separated list of {@code languages}, which gives a zip with a folder per language.
+     * With {@code failover}, calls may go to another provider while {@code service} is unhealthy.
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> submitJob(@RequestParam("files") MultipartFile[] files,
+            @RequestParam(value = "language", required = false) String language,
+            @RequestParam(value = "languages", required = false) String languages,
+            @RequestParam("service") String service,
+            @RequestParam(value = "fileType", defaultValue = "json") String fileType,
+            @RequestParam(value = "failover", defaultValue = "false") boolean failover) throws IOException {
+        if (files.length == 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "No files uploaded"));
+        }
+        List<String> targetLanguages = TranslationJobService.parseLanguages(languages != null ? languages
+                : language != null ? language : "");
+        if (targetLanguages.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "No target language given"));
+        }
+        uploadLimits.checkInMemory(files);
+        List<TranslationJob.Upload> uploads = new ArrayList<>(files.length);
+        for (MultipartFile file : files) {
+            uploads.add(new TranslationJob.Upload("translated_" + file.getOriginalFilename(), file.getBytes()));
+        }
+
+        TranslationJob job = jobService.submit(uploads, fileType, targetLanguages, service, failover);
+        Map<String, Object> body = job.toMap();
+        body.put("statusUrl", "/api/translate/jobs/" + job.getId());
+        body.put("resultUrl", "/api/translate/jobs/" + job.getId() + "/result");
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header(HttpHeaders.LOCATION, "/api/translate/jobs/" + job.getId())
+                .body(body);
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable String jobId) {
+        TranslationJob job = jobService.get(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Unknown job " + jobId));
+        }
+        return ResponseEntity.ok(job.toMap());
+    }
+
+    @GetMapping("/{jobId}/result")
+    public ResponseEntity<?> getResult(@PathVariable String jobId) {
+        TranslationJob job = jobService.get(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Unknown job " + jobId));
+        }
+        TranslationJob.Result result = job.getResult();
+        if (result == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(job.toMap());
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + result.getFileName())
+                .header(TranslationReport.SERVER_TIMING_HEADER, job.getReport().getServerTiming())
+                .contentType(MediaType.parseMediaType(result.getContentType()))
+                .body(result.getContent());
+    }
+
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<Map<String, Object>> cancelJob(@PathVariable String jobId) {
+        TranslationJob job = jobService.get(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Unknown job " + jobId));
+        }
+        job.cancel();
+        return ResponseEntity.ok(job.toMap());
+    }
+}
@@ -0,0 +1,45 @@
+package com.hackerx.translation.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Upload sizes per kind of endpoint. The servlet multipart limits
+ * ({@code spring.servlet.multipart.max-file-size} and {@code max-request-size}) are sized for
+ * the streaming endpoints, which spool the upload to disk and read it in windows, so their
+ * memory stays flat whatever the size. The endpoints that read a whole file into the heap, or
+ * parse it into a tree, refuse files over {@code translation.upload.max-in-memory-file-size}
+ * with a 413 instead.
+ */
+@Component
+public class UploadLimits {
+
+    private final long maxInMemoryFileBytes;
+
+    public UploadLimits(@Value("${translation.upload.max-in-memory-file-size:10MB}") DataSize maxInMemoryFileSize) {
+        this.maxInMemoryFileBytes = maxInMemoryFileSize.toBytes();
+    }
+
+    /**
+     * Throws {@link MaxUploadSizeExceededException} if any of {@code files} is too large to be
+     * translated in memory.
+     */
+    public void checkInMemory(MultipartFile... files) {
+        for (MultipartFile file : files) {
+            if (file.getSize() > maxInMemoryFileBytes) {
+                throw new MaxUploadSizeExceededException(maxInMemoryFileBytes);
+            }
+        }
+    }
+
+    /**
+     * The size a streamed NDJSON upload is admitted as: it never holds more than a window in
+     * memory, so it counts as at most one in-memory upload however large it is.
+     */
+    public long streamedAdmissionBytes(long uploadBytes) {
+        return Math.min(uploadBytes, maxInMemoryFileBytes);
+    }
+}
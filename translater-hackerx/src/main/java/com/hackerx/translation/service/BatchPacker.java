@@ -0,0 +1,218 @@
+package com.hackerx.translation.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Splits the segments of a job into provider batches that stay under a token budget.
+ *
+ * Input and output tokens are estimated per segment. Segments are sorted by size before
+ * packing, so every batch holds segments of similar length and no batch waits on a single
+ * long straggler.
+ */
+@Component
+public class BatchPacker {
+
+    /** Rough number of characters per token for the mostly English source text. */
+    private static final int CHARS_PER_TOKEN = 4;
+
+    /** Tokens spent on the markers that frame every segment in a batch request. */
+    private static final int SEGMENT_OVERHEAD_TOKENS = 8;
+
+    private final int maxInputTokens;
+    private final int maxOutputTokens;
+    private final int maxSegments;
+    private final double outputRatio;
+
+    private final AtomicLong plannedBatches = new AtomicLong();
+    private final AtomicLong plannedSegments = new AtomicLong();
+    private final AtomicLong plannedOutputTokens = new AtomicLong();
+
+    public BatchPacker(@Value("${translation.batch.max-input-tokens:8000}") int maxInputTokens,
+            @Value("${translation.batch.max-output-tokens:6000}") int maxOutputTokens,
+            @Value("${translation.batch.max-segments:200}") int maxSegments,
+            @Value("${translation.batch.output-ratio:1.6}") double outputRatio) {
+        this.maxInputTokens = maxInputTokens;
+        this.maxOutputTokens = maxOutputTokens;
+        this.maxSegments = Math.max(1, maxSegments);
+        this.outputRatio = outputRatio;
+    }
+
+    /**
+     * Estimated prompt tokens for one segment, including its batch markers.
+     */
+    public static int estimateInputTokens(String text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN + SEGMENT_OVERHEAD_TOKENS;
+    }
+
+    /**
+     * Estimated completion tokens for one segment. Translations are usually longer than the
+     * English source and the markers are echoed back.
+     */
+    public int estimateOutputTokens(String text) {
+        return (int) Math.ceil(((text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN) * outputRatio)
+                + SEGMENT_OVERHEAD_TOKENS;
+    }
+
+    public PackingPlan pack(List<String> texts) {
+        List<Integer> order = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            order.add(i);
+        }
+        // Stable sort, so segments of equal length keep their document order
+        order.sort(Comparator.comparingInt(i -> texts.get(i).length()));
+
+        List<Batch> batches = new ArrayList<>();
+        Batch current = new Batch();
+        for (int index : order) {
+            String text = texts.get(index);
+            int inputTokens = estimateInputTokens(text);
+            int outputTokens = estimateOutputTokens(text);
+            boolean full = current.size() >= maxSegments
+                    || current.inputTokens + inputTokens > maxInputTokens
+                    || current.outputTokens + outputTokens > maxOutputTokens;
+            if (full && current.size() > 0) {
+                batches.add(current);
+                current = new Batch();
+            }
+            current.add(index, text, inputTokens, outputTokens);
+        }
+        if (current.size() > 0) {
+            batches.add(current);
+        }
+
+        PackingPlan plan = new PackingPlan(texts.size(), batches, maxOutputTokens);
+        plannedBatches.addAndGet(batches.size());
+        plannedSegments.addAndGet(texts.size());
+        plannedOutputTokens.addAndGet(plan.getOutputTokens());
+        return plan;
+    }
+
+    /**
+     * Totals over every plan made since startup, for tuning the budget.
+     */
+    public Map<String, Object> stats() {
+        long batches = plannedBatches.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batches", batches);
+        stats.put("segments", plannedSegments.get());
+        stats.put("averageBatchSize", batches == 0 ? 0.0 : (double) plannedSegments.get() / batches);
+        stats.put("averageFillRatio",
+                batches == 0 ? 0.0 : (double) plannedOutputTokens.get() / (batches * (double) maxOutputTokens));
+        return stats;
+    }
+
+    /**
+     * A group of segments sent to the provider in one request.
+     */
+    public static class Batch {
+        private final List<Integer> indices = new ArrayList<>();
+        private final List<String> texts = new ArrayList<>();
+        private int inputTokens;
+        private int outputTokens;
+
+        private void add(int index, String text, int inputTokens, int outputTokens) {
+            indices.add(index);
+            texts.add(text);
+            this.inputTokens += inputTokens;
+            this.outputTokens += outputTokens;
+        }
+
+        public List<Integer> getIndices() {
+            return indices;
+        }
+
+        public List<String> getTexts() {
+            return texts;
+        }
+
+        public int getInputTokens() {
+            return inputTokens;
+        }
+
+        public int getOutputTokens() {
+            return outputTokens;
+        }
+
+        public int size() {
+            return texts.size();
+        }
+    }
+
+    /**
+     * The batches of one job, with the figures needed to tune the budget.
+     */
+    public static class PackingPlan {
+        private final int segmentCount;
+        private final List<Batch> batches;
+        private final int maxOutputTokens;
+
+        private PackingPlan(int segmentCount, List<Batch> batches, int maxOutputTokens) {
+            this.segmentCount = segmentCount;
+            this.batches = Collections.unmodifiableList(batches);
+            this.maxOutputTokens = maxOutputTokens;
+        }
+
+        public List<Batch> getBatches() {
+            return batches;
+        }
+
+        public int getBatchCount() {
+            return batches.size();
+        }
+
+        public double getAverageBatchSize() {
+            return batches.isEmpty() ? 0.0 : (double) segmentCount / batches.size();
+        }
+
+        public int getLargestBatchSize() {
+            int largest = 0;
+            for (Batch batch : batches) {
+                largest = Math.max(largest, batch.size());
+            }
+            return largest;
+        }
+
+        public long getOutputTokens() {
+            long total = 0;
+            for (Batch batch : batches) {
+                total += batch.getOutputTokens();
+            }
+            return total;
+        }
+
+        /**
+         * Estimated completion tokens divided by the budget of every batch in the plan.
+         */
+        public double getFillRatio() {
+            return batches.isEmpty() ? 0.0 : (double) getOutputTokens() / ((double) batches.size() * maxOutputTokens);
+        }
+
+        /**
+         * Puts the translations of every batch back in the order of the packed segments.
+         */
+        public List<String> scatter(List<List<String>> translatedBatches) {
+            List<String> results = new ArrayList<>(Collections.nCopies(segmentCount, (String) null));
+            for (int b = 0; b < batches.size(); b++) {
+                List<Integer> indices = batches.get(b).getIndices();
+                List<String> translated = translatedBatches.get(b);
+                if (translated.size() != indices.size()) {
+                    throw new IllegalStateException("Batch " + b + " expected " + indices.size()
+                            + " translations but got " + translated.size());
+                }
+                for (int i = 0; i < indices.size(); i++) {
+                    results.set(indices.get(i), translated.get(i));
+                }
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.hackerx.translation.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Structured request/response format for batch translation.
+ *
+ * Every segment of a batch gets a stable ID. The provider receives the segments as a JSON
+ * object and is constrained (JSON mode plus a response schema) to answer with
+ * {@code {"translations":[{"id":..,"text":..}]}}. Replies are mapped back by ID, so a
+ * missing or malformed segment only costs a re-request of that segment instead of the
+ * whole batch.
+ */
+public final class BatchProtocol {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private BatchProtocol() {
+    }
+
+    /**
+     * Sends one tagged batch to a provider; the future completes with the translations it
+     * could parse, by ID.
+     */
+    @FunctionalInterface
+    public interface BatchCall {
+        CompletableFuture<Map<String, String>> request(List<Segment> segments) throws IOException;
+    }
+
+    /**
+     * Sends one segment to a provider on its own.
+     */
+    @FunctionalInterface
+    public interface SegmentCall {
+        CompletableFuture<String> translate(String text) throws IOException;
+    }
+
+    public static final class Segment {
+        private final String id;
+        private final String text;
+
+        public Segment(String id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+
+    public static List<Segment> tag(List<String> texts) {
+        List<Segment> segments = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            segments.add(new Segment("s" + (i + 1), texts.get(i)));
+        }
+        return segments;
+    }
+
+    /**
+     * The user message of a batch request: {@code {"segments":[{"id":..,"text":..}]}}.
+     */
+    public static String encodeRequest(List<Segment> segments) throws JsonProcessingException {
+        List<Map<String, String>> items = new ArrayList<>(segments.size());
+        for (Segment segment : segments) {
+            Map<String, String> item = new LinkedHashMap<>();
+            item.put("id", segment.getId());
+            item.put("text", segment.getText());
+            items.add(item);
+        }
+        return OBJECT_MAPPER.writeValueAsString(Map.of("segments", items));
+    }
+
+    /**
+     * OpenAI {@code response_format} enforcing the reply schema (structured outputs).
+     */
+    public static Map<String, Object> openAiResponseFormat() {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("type", "object");
+        item.put("properties", Map.of("id", Map.of("type", "string"), "text", Map.of("type", "string")));
+        item.put("required", List.of("id", "text"));
+        item.put("additionalProperties", false);
+
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+        schema.put("properties", Map.of("translations", Map.of("type", "array", "items", item)));
+        schema.put("required", List.of("translations"));
+        schema.put("additionalProperties", false);
+
+        return Map.of("type", "json_schema",
+                "json_schema", Map.of("name", "translations", "strict", true, "schema", schema));
+    }
+
+    /**
+     * Gemini {@code generationConfig} enforcing a JSON reply with the same schema.
+     */
+    public static Map<String, Object> geminiGenerationConfig() {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("type", "OBJECT");
+        item.put("properties", Map.of("id", Map.of("type", "STRING"), "text", Map.of("type", "STRING")));
+        item.put("required", List.of("id", "text"));
+
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "OBJECT");
+        schema.put("properties", Map.of("translations", Map.of("type", "ARRAY", "items", item)));
+        schema.put("required", List.of("translations"));
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("responseMimeType", "application/json");
+        config.put("responseSchema", schema);
+        config.put("temperature", 0.3);
+        return config;
+    }
+
+    /**
+     * Parses a reply into translations by ID. Entries without an ID or with a missing or
+     * blank text are left out, so they show up as missing. An unparseable reply yields an
+     * empty map.
+     */
+    public static Map<String, String> parseReply(String reply) {
+        Map<String, String> translations = new HashMap<>();
+        if (reply == null || reply.isBlank()) {
+            return translations;
+        }
+
+        String json = reply.strip();
+        // Tolerate a reply wrapped in a Markdown code fence
+        if (json.startsWith("```")) {
+            int start = json.indexOf('\n');
+            int end = json.lastIndexOf("```");
+            json = start >= 0 && end > start ? json.substring(start + 1, end) : json;
+        }
+
+        JsonNode root;
+        try {
+            root = OBJECT_MAPPER.readTree(json);
+        } catch (JsonProcessingException e) {
+            return translations;
+        }
+        JsonNode items = root.isArray() ? root : root.path("translations");
+        if (!items.isArray()) {
+            return translations;
+        }
+        for (JsonNode item : items) {
+            JsonNode id = item.get("id");
+            JsonNode text = item.get("text");
+            if (id != null && id.isValueNode() && text != null && text.isTextual() && !text.asText().isBlank()) {
+                translations.putIfAbsent(id.asText(), text.asText().strip());
+            }
+        }
+        return translations;
+    }
+
+    /**
+     * Segments that have no translation in {@code translations}.
+     */
+    public static List<Segment> missing(List<Segment> segments, Map<String, String> translations) {
+        List<Segment> missing = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (!translations.containsKey(segment.getId())) {
+                missing.add(segment);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Translations in the order of {@code segments}. Every segment must have one.
+     */
+    public static List<String> inOrder(List<Segment> segments, Map<String, String> translations) {
+        List<String> ordered = new ArrayList<>(segments.size());
+        for (Segment segment : segments) {
+            ordered.add(translations.get(segment.getId()));
+        }
+        return ordered;
+    }
+}
@@ -0,0 +1,192 @@
+package com.hackerx.translation.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Recovers the segments a batch call did not translate (safety block, miscounted or
+ * malformed reply) without falling back to one call per segment.
+ *
+ * The failed segments are re-requested as one batch. If that batch fails as a whole, whether
+ * its reply lacks every segment or the call itself still fails after its retries, it is
+ * split in halves, recursively, until the offending segments are isolated. A segment that
+ * still fails on its own keeps its source text and is recorded as a segment error in the
+ * job's {@link TranslationReport}. Transport errors are retried with exponential backoff
+ * and jitter; the backoff is scheduled, so no thread waits it out.
+ */
+@Component
+public class BatchRecovery {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchRecovery.class);
+
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public BatchRecovery(@Value("${translation.recovery.max-attempts:3}") int maxAttempts,
+            @Value("${translation.recovery.base-backoff-ms:500}") long baseBackoffMillis,
+            @Value("${translation.recovery.max-backoff-ms:10000}") long maxBackoffMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Translates {@code failed} by bisection. The future completes with a translation for
+     * every one of them; segments that could not be translated map to their source text.
+     */
+    public CompletableFuture<Map<String, String>> recover(List<BatchProtocol.Segment> failed, int batchSize,
+            String service, BatchProtocol.BatchCall call, BatchProtocol.SegmentCall single,
+            TranslationReport report) {
+        TranslationReport.Recovery recovery = report.startRecovery(service, batchSize, failed.size());
+        Map<String, String> translated = new ConcurrentHashMap<>();
+        return recover(failed, call, single, translated, recovery, report).thenApply(done -> {
+            LOGGER.info("Recovered {} of {} failed {} segments with {} calls",
+                    failed.size() - recovery.getUnrecovered(), failed.size(), service, recovery.getCalls());
+            return translated;
+        });
+    }
+
+    private CompletableFuture<Void> recover(List<BatchProtocol.Segment> segments, BatchProtocol.BatchCall call,
+            BatchProtocol.SegmentCall single, Map<String, String> translated,
+            TranslationReport.Recovery recovery, TranslationReport report) {
+        if (segments.size() == 1) {
+            BatchProtocol.Segment segment = segments.get(0);
+            CompletableFuture<String> attempt = withRetries(() -> single.translate(segment.getText()), recovery);
+            CompletableFuture<Void> done = attempt.handle((result, failure) -> {
+                String reason = null;
+                if (failure != null) {
+                    reason = failedReason(failure);
+                } else if (result == null || result.isBlank()) {
+                    reason = "empty translation";
+                } else if (TranslationService.SAFETY_BLOCKED_TEXT.equals(result)) {
+                    reason = "blocked by safety filters";
+                    report.recordSafetyBlock(segment.getText());
+                }
+                if (reason == null) {
+                    translated.put(segment.getId(), result);
+                    return null;
+                }
+                LOGGER.warn("Keeping source text of segment {}: {}", segment.getId(), reason);
+                recovery.recordUnrecovered();
+                report.recordSegmentError(segment.getText(), reason);
+                translated.put(segment.getId(), segment.getText());
+                return null;
+            });
+            return Futures.propagateCancel(done, attempt);
+        }
+
+        CompletableFuture<Map<String, String>> attempt = withRetries(() -> call.request(segments), recovery);
+        CompletableFuture<Map<String, String>> replied = attempt.handle((reply, failure) -> {
+            if (failure == null) {
+                return reply;
+            }
+            // A batch that still fails after its retries is bisected like one whose reply lacks every segment
+            LOGGER.warn("Batch of {} segments failed, splitting it: {}", segments.size(), failedReason(failure));
+            return Map.<String, String>of();
+        });
+        Futures.propagateCancel(replied, attempt);
+        return Futures.compose(replied, reply -> {
+            Set<String> requested = new HashSet<>();
+            for (BatchProtocol.Segment segment : segments) {
+                requested.add(segment.getId());
+            }
+            for (Map.Entry<String, String> entry : reply.entrySet()) {
+                if (requested.contains(entry.getKey())) {
+                    translated.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            List<BatchProtocol.Segment> missing = BatchProtocol.missing(segments, translated);
+            if (missing.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (missing.size() < segments.size()) {
+                // Partial reply: only the missing segments go round again
+                return recover(missing, call, single, translated, recovery, report);
+            }
+
+            // The whole batch failed: isolate the offending segments, both halves at once
+            int middle = segments.size() / 2;
+            List<CompletableFuture<Void>> halves = new ArrayList<>();
+            halves.add(recover(segments.subList(0, middle), call, single, translated, recovery, report));
+            halves.add(recover(segments.subList(middle, segments.size()), call, single, translated, recovery, report));
+            return Futures.allOf(halves).thenApply(done -> null);
+        });
+    }
+
+    /**
+     * Why a call failed for good; a cancellation is not a failure of the segments and is
+     * passed on.
+     */
+    private static String failedReason(Throwable failure) {
+        Throwable cause = Futures.unwrap(failure);
+        if (cause instanceof CancellationException) {
+            throw (CancellationException) cause;
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    /**
+     * Runs {@code attempt}, retrying transport failures with exponential backoff and jitter.
+     */
+    public <T> CompletableFuture<T> withRetries(Futures.IOSupplier<T> attempt) {
+        return withRetries(attempt, null);
+    }
+
+    private <T> CompletableFuture<T> withRetries(Futures.IOSupplier<T> attempt, TranslationReport.Recovery recovery) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(attempt, recovery, 1, result);
+        return result;
+    }
+
+    private <T> void attempt(Futures.IOSupplier<T> attempt, TranslationReport.Recovery recovery, int attemptNumber,
+            CompletableFuture<T> result) {
+        if (result.isDone()) {
+            return;
+        }
+        if (recovery != null) {
+            recovery.recordCall();
+        }
+        CompletableFuture<T> call = Futures.start(attempt);
+        Futures.propagateCancel(result, call);
+        call.whenComplete((value, failure) -> {
+            if (failure == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = Futures.unwrap(failure);
+            if (!(cause instanceof IOException) || cause instanceof InterruptedIOException
+                    || attemptNumber >= maxAttempts) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            long backoff = backoffMillis(attemptNumber);
+            LOGGER.warn("Provider call failed (attempt {} of {}), retrying in {} ms: {}",
+                    attemptNumber, maxAttempts, backoff, cause.getMessage());
+            CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS, Runnable::run)
+                    .execute(() -> attempt(attempt, recovery, attemptNumber + 1, result));
+        });
+    }
+
+    private long backoffMillis(int attemptNumber) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attemptNumber - 1, 20));
+        // Equal jitter: half of the backoff is fixed, the other half random
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+}
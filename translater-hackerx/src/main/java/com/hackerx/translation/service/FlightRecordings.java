@@ -0,0 +1,134 @@
+package com.hackerx.translation.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Flight Recorder recordings started on demand, in-process, with no agent attached.
+ *
+ * A recording uses the JDK settings named by {@code translation.jfr.settings} ({@code default}
+ * costs about 1% CPU, {@code profile} adds method sampling) plus the translation events, and
+ * keeps at most {@code translation.jfr.max-age-minutes} and {@code translation.jfr.max-size-mb}
+ * of data on disk. The events that record environment variables, system properties and the JVM
+ * command line are turned off, since they carry the provider API keys.
+ */
+@Component
+public class FlightRecordings {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlightRecordings.class);
+
+    private static final List<String> SECRET_EVENTS = List.of(
+            "jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty", "jdk.JVMInformation");
+
+    private final Map<Long, Recording> recordings = new ConcurrentHashMap<>();
+    private final String settings;
+    private final Duration maxAge;
+    private final long maxSizeBytes;
+
+    public FlightRecordings(@Value("${translation.jfr.settings:default}") String settings,
+            @Value("${translation.jfr.max-age-minutes:30}") long maxAgeMinutes,
+            @Value("${translation.jfr.max-size-mb:250}") long maxSizeMb) {
+        this.settings = settings;
+        this.maxAge = Duration.ofMinutes(maxAgeMinutes);
+        this.maxSizeBytes = maxSizeMb * 1024 * 1024;
+    }
+
+    /**
+     * Starts a recording that stops by itself after {@code duration}, or runs until it is closed
+     * if {@code duration} is {@code null}.
+     */
+    public Map<String, Object> start(Duration duration) throws IOException {
+        Recording recording;
+        try {
+            recording = new Recording(Configuration.getConfiguration(settings));
+        } catch (ParseException e) {
+            throw new IOException("Unreadable Flight Recorder settings " + settings, e);
+        }
+        recording.setName("translation-" + recording.getId());
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge);
+        recording.setMaxSize(maxSizeBytes);
+        if (duration != null) {
+            recording.setDuration(duration);
+        }
+        recording.enable(StageEvent.class).withThreshold(Duration.ZERO);
+        recording.enable(ProviderCallEvent.class).withThreshold(Duration.ZERO);
+        SECRET_EVENTS.forEach(recording::disable);
+        recording.start();
+        recordings.put(recording.getId(), recording);
+        LOGGER.info("Started Flight Recorder recording {} with {} settings for {}", recording.getId(), settings,
+                duration == null ? "an open-ended time" : duration);
+        return toMap(recording);
+    }
+
+    public List<Map<String, Object>> list() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        recordings.values().forEach(recording -> list.add(toMap(recording)));
+        return list;
+    }
+
+    /**
+     * Writes what recording {@code id} holds so far to a new temporary file, which the caller
+     * deletes, or returns {@code null} if there is no such recording. The recording goes on.
+     */
+    public Path dump(long id) throws IOException {
+        Recording recording = recordings.get(id);
+        if (recording == null) {
+            return null;
+        }
+        Path file = Files.createTempFile("translation-" + id + "-", ".jfr");
+        try {
+            recording.dump(file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * Stops recording {@code id} and discards its data; returns whether there was one.
+     */
+    public boolean close(long id) {
+        Recording recording = recordings.remove(id);
+        if (recording == null) {
+            return false;
+        }
+        recording.close();
+        LOGGER.info("Closed Flight Recorder recording {}", id);
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        recordings.keySet().forEach(this::close);
+    }
+
+    private static Map<String, Object> toMap(Recording recording) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", recording.getId());
+        map.put("name", recording.getName());
+        map.put("state", recording.getState().name());
+        map.put("startTime", String.valueOf(recording.getStartTime()));
+        map.put("duration", String.valueOf(recording.getDuration()));
+        map.put("size", recording.getSize());
+        return map;
+    }
+}
@@ -0,0 +1,172 @@
+package com.hackerx.translation.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Helpers for composing provider calls as {@link CompletableFuture}s while keeping the
+ * {@link IOException}s the rest of the service works with.
+ */
+public final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * A step of a pipeline that may fail with an {@link IOException}.
+     */
+    @FunctionalInterface
+    public interface IOFunction<T, R> {
+        R apply(T value) throws IOException;
+    }
+
+    /**
+     * A call that starts asynchronous work, but may fail before it gets that far.
+     */
+    @FunctionalInterface
+    public interface IOSupplier<T> {
+        CompletableFuture<T> get() throws IOException;
+    }
+
+    /**
+     * Applies {@code function} to the result of {@code future}, failing the returned future with
+     * its {@link IOException} if it throws one. Cancelling the returned future cancels
+     * {@code future}.
+     */
+    public static <T, R> CompletableFuture<R> map(CompletableFuture<T> future, IOFunction<T, R> function) {
+        CompletableFuture<R> mapped = future.thenApply(value -> {
+            try {
+                return function.apply(value);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+        return propagateCancel(mapped, future);
+    }
+
+    /**
+     * Continues {@code future} with the asynchronous step {@code function}. Cancelling the
+     * returned future cancels whichever of the two is still running.
+     */
+    public static <T, R> CompletableFuture<R> compose(CompletableFuture<T> future,
+            IOFunction<T, CompletableFuture<R>> function) {
+        CompletableFuture<R> composed = new CompletableFuture<>();
+        future.whenComplete((value, failure) -> {
+            if (failure != null) {
+                composed.completeExceptionally(unwrap(failure));
+                return;
+            }
+            CompletableFuture<R> next = start(() -> function.apply(value));
+            propagateCancel(composed, next);
+            next.whenComplete((result, nextFailure) -> {
+                if (nextFailure != null) {
+                    composed.completeExceptionally(unwrap(nextFailure));
+                } else {
+                    composed.complete(result);
+                }
+            });
+        });
+        return propagateCancel(composed, future);
+    }
+
+    /**
+     * Cancels {@code source} when {@code derived} is cancelled, so that cancelling a job reaches
+     * the provider calls it is waiting on.
+     */
+    public static <T> CompletableFuture<T> propagateCancel(CompletableFuture<T> derived, CompletableFuture<?> source) {
+        derived.whenComplete((result, failure) -> {
+            if (derived.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return derived;
+    }
+
+    /**
+     * Starts {@code supplier}, turning an exception it throws into a failed future.
+     */
+    public static <T> CompletableFuture<T> start(IOSupplier<T> supplier) {
+        try {
+            return supplier.get();
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Completes with the results of {@code futures} in order once all of them have completed.
+     * On the first failure the others are cancelled and the returned future fails with it.
+     */
+    public static <T> CompletableFuture<List<T>> allOf(List<CompletableFuture<T>> futures) {
+        CompletableFuture<List<T>> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    List<T> results = new ArrayList<>(futures.size());
+                    for (CompletableFuture<T> future : futures) {
+                        results.add(future.join());
+                    }
+                    return results;
+                });
+        for (CompletableFuture<T> future : futures) {
+            future.whenComplete((result, failure) -> {
+                if (failure != null) {
+                    all.completeExceptionally(unwrap(failure));
+                }
+            });
+        }
+        all.whenComplete((results, failure) -> {
+            if (failure != null) {
+                futures.forEach(future -> future.cancel(true));
+            }
+        });
+        return all;
+    }
+
+    /**
+     * Waits for {@code future} from blocking code. An interrupt cancels it.
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the translation");
+        } catch (ExecutionException e) {
+            throw toIOException(e.getCause());
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("Translation was cancelled");
+        }
+    }
+
+    /**
+     * The failure behind the {@link CompletionException} wrappers added by composition.
+     */
+    public static Throwable unwrap(Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    public static IOException toIOException(Throwable failure) {
+        Throwable cause = unwrap(failure);
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+}
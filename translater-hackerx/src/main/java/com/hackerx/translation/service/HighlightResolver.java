@@ -0,0 +1,368 @@
+package com.hackerx.translation.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+/**
+ * Points the {@code key_title} of every {@code highlight} entry at the matching phrase of
+ * its translated {@code data}.
+ *
+ * The key title has already been translated as a segment of its own, so most highlights are
+ * found in the data locally: verbatim, then ignoring case, whitespace and surrounding
+ * punctuation, then by fuzzy matching of word windows (character-bigram similarity of at
+ * least {@code translation.highlights.fuzzy-threshold}), which absorbs inflection. Only the
+ * highlights left over go to ChatGPT, all of a document or NDJSON window in one ID-tagged
+ * request. A highlight that cannot be resolved keeps its key title.
+ */
+@Component
+public class HighlightResolver {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HighlightResolver.class);
+
+    private final ProviderHttpClient providerHttpClient;
+    private final TranslationMetrics metrics;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String openaiApiKey;
+    private final double fuzzyThreshold;
+    private final int maxPerRequest;
+
+    private final AtomicLong exactMatches = new AtomicLong();
+    private final AtomicLong normalizedMatches = new AtomicLong();
+    private final AtomicLong fuzzyMatches = new AtomicLong();
+    private final AtomicLong modelMatches = new AtomicLong();
+    private final AtomicLong unresolved = new AtomicLong();
+    private final AtomicLong modelCalls = new AtomicLong();
+
+    public HighlightResolver(ProviderHttpClient providerHttpClient, TranslationMetrics metrics,
+            @Value("${openai.api.key}") String openaiApiKey,
+            @Value("${translation.highlights.fuzzy-threshold:0.8}") double fuzzyThreshold,
+            @Value("${translation.highlights.max-per-request:100}") int maxPerRequest) {
+        this.providerHttpClient = providerHttpClient;
+        this.metrics = metrics;
+        this.openaiApiKey = openaiApiKey;
+        this.fuzzyThreshold = fuzzyThreshold;
+        this.maxPerRequest = Math.max(1, maxPerRequest);
+    }
+
+    /**
+     * Resolves {@code highlights} in place. The future completes once every highlight has its
+     * final key title; it never fails.
+     */
+    public CompletableFuture<Void> resolve(List<Highlight> highlights) {
+        List<Highlight> remaining = new ArrayList<>();
+        for (Highlight highlight : highlights) {
+            String keyTitle = highlight.getKeyTitle();
+            String translatedData = highlight.getTranslatedData();
+            if (translatedData == null || keyTitle == null || keyTitle.isBlank()) {
+                continue;
+            }
+            String phrase = findLocally(translatedData, keyTitle);
+            if (phrase != null) {
+                highlight.setKeyTitle(phrase);
+            } else {
+                remaining.add(highlight);
+            }
+        }
+        if (remaining.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        LOGGER.info("Resolved {} of {} highlights locally, asking ChatGPT for the rest",
+                highlights.size() - remaining.size(), highlights.size());
+        List<CompletableFuture<Void>> requests = new ArrayList<>();
+        for (int start = 0; start < remaining.size(); start += maxPerRequest) {
+            List<Highlight> chunk = remaining.subList(start, Math.min(remaining.size(), start + maxPerRequest));
+            requests.add(Futures.start(() -> requestPhrases(chunk))
+                    .handle((phrases, failure) -> {
+                        if (failure != null) {
+                            LOGGER.error("Error finding corresponding text. Keeping the key titles: {}",
+                                    Futures.unwrap(failure).getMessage());
+                        }
+                        apply(chunk, failure == null ? phrases : Map.of());
+                        return null;
+                    }));
+        }
+        return Futures.allOf(requests).thenApply(done -> null);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("exactMatches", exactMatches.get());
+        stats.put("normalizedMatches", normalizedMatches.get());
+        stats.put("fuzzyMatches", fuzzyMatches.get());
+        stats.put("modelMatches", modelMatches.get());
+        stats.put("unresolved", unresolved.get());
+        stats.put("modelCalls", modelCalls.get());
+        return stats;
+    }
+
+    /**
+     * The phrase of {@code data} that {@code keyTitle} stands for, or {@code null} if none is
+     * close enough.
+     */
+    String findLocally(String data, String keyTitle) {
+        if (data.contains(keyTitle)) {
+            exactMatches.incrementAndGet();
+            return keyTitle;
+        }
+
+        Folded folded = Folded.of(data);
+        String key = Folded.of(trimPunctuation(keyTitle)).text;
+        if (key.isEmpty()) {
+            return null;
+        }
+        int index = folded.text.indexOf(key);
+        if (index >= 0) {
+            normalizedMatches.incrementAndGet();
+            return folded.original(index, index + key.length());
+        }
+
+        String fuzzy = findFuzzy(data, key);
+        if (fuzzy != null) {
+            fuzzyMatches.incrementAndGet();
+        }
+        return fuzzy;
+    }
+
+    /**
+     * The window of words of {@code data}, one word shorter to one word longer than the key,
+     * most similar to the folded {@code key}.
+     */
+    private String findFuzzy(String data, String key) {
+        List<int[]> words = new ArrayList<>();
+        int length = data.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(data.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(data.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                words.add(new int[] {start, i});
+            }
+        }
+        int keyWords = key.split(" ").length;
+        KeyBigrams keyBigrams = new KeyBigrams(key);
+
+        double best = fuzzyThreshold;
+        String match = null;
+        for (int size = Math.max(1, keyWords - 1); size <= keyWords + 1; size++) {
+            for (int first = 0; first + size <= words.size(); first++) {
+                String window = trimPunctuation(data.substring(words.get(first)[0], words.get(first + size - 1)[1]));
+                double similarity = keyBigrams.similarity(Folded.of(window).text);
+                if (similarity >= best && (match == null || similarity > best)) {
+                    best = similarity;
+                    match = window;
+                }
+            }
+        }
+        return match;
+    }
+
+    private CompletableFuture<Map<String, String>> requestPhrases(List<Highlight> highlights) throws IOException {
+        List<Map<String, String>> items = new ArrayList<>(highlights.size());
+        for (int i = 0; i < highlights.size(); i++) {
+            Map<String, String> item = new LinkedHashMap<>();
+            item.put("id", "h" + (i + 1));
+            item.put("phrase", highlights.get(i).getKeyTitle());
+            item.put("text", highlights.get(i).getTranslatedData());
+            items.add(item);
+        }
+
+        String requestBody = objectMapper.writeValueAsString(Map.of(
+            "model", "gpt-4o-mini-2024-07-18",
+            "messages", List.of(
+                Map.of("role", "system", "content", SystemPrompts.getHighlightBatchPrompt()),
+                Map.of("role", "user", "content", objectMapper.writeValueAsString(Map.of("highlights", items)))
+            ),
+            "response_format", BatchProtocol.openAiResponseFormat(),
+            "temperature", 0.3
+        ));
+
+        Request request = new Request.Builder()
+            .url("https://api.openai.com/v1/chat/completions")
+            .post(RequestBody.create(requestBody, MediaType.parse("application/json")))
+            .addHeader("Authorization", "Bearer " + openaiApiKey)
+            .build();
+
+        modelCalls.incrementAndGet();
+        return Futures.map(providerHttpClient.executeAsync("ChatGPT", request), responseBodyStr -> {
+            Map<String, Object> responseBody = objectMapper.readValue(responseBodyStr, Map.class);
+            metrics.recordUsage("ChatGPT", responseBody);
+            List<Map<String, Object>> choices = (List<Map<String, Object>>) responseBody.get("choices");
+            Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
+            return BatchProtocol.parseReply((String) message.get("content"));
+        });
+    }
+
+    private void apply(List<Highlight> highlights, Map<String, String> phrases) {
+        for (int i = 0; i < highlights.size(); i++) {
+            String phrase = phrases.get("h" + (i + 1));
+            if (phrase == null) {
+                unresolved.incrementAndGet();
+                continue;
+            }
+            modelMatches.incrementAndGet();
+            highlights.get(i).setKeyTitle(phrase.replaceAll("^[\"']|[\"']$", "").trim());
+        }
+    }
+
+    private static String trimPunctuation(String text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && !Character.isLetterOrDigit(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && !Character.isLetterOrDigit(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(start, end);
+    }
+
+    private static int bigram(String text, int i) {
+        return (text.charAt(i) << 16) | text.charAt(i + 1);
+    }
+
+    /**
+     * The character bigrams of a folded key, counted once for all the windows it is compared
+     * with: the distinct bigrams sorted, and how often each occurs.
+     */
+    static final class KeyBigrams {
+        private final String key;
+        private final int[] bigrams;
+        private final int[] counts;
+        private final int[] remaining;
+
+        KeyBigrams(String key) {
+            this.key = key;
+            int[] all = new int[Math.max(0, key.length() - 1)];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = bigram(key, i);
+            }
+            Arrays.sort(all);
+            int[] distinct = new int[all.length];
+            int[] occurrences = new int[all.length];
+            int size = 0;
+            for (int i = 0; i < all.length; i++) {
+                if (size == 0 || distinct[size - 1] != all[i]) {
+                    distinct[size++] = all[i];
+                }
+                occurrences[size - 1]++;
+            }
+            this.bigrams = Arrays.copyOf(distinct, size);
+            this.counts = Arrays.copyOf(occurrences, size);
+            this.remaining = new int[size];
+        }
+
+        /**
+         * Dice coefficient of the character bigrams of {@code window} and the key. Not thread
+         * safe: the counts left to match are reused from call to call.
+         */
+        double similarity(String window) {
+            if (window.length() < 2 || key.length() < 2) {
+                return window.equals(key) ? 1.0 : 0.0;
+            }
+            System.arraycopy(counts, 0, remaining, 0, counts.length);
+            int shared = 0;
+            for (int i = 0; i + 1 < window.length(); i++) {
+                int index = Arrays.binarySearch(bigrams, bigram(window, i));
+                if (index >= 0 && remaining[index] > 0) {
+                    shared++;
+                    remaining[index]--;
+                }
+            }
+            return 2.0 * shared / (window.length() - 1 + key.length() - 1);
+        }
+    }
+
+    /**
+     * Text lower-cased with whitespace runs folded to one space, keeping where each folded
+     * char came from.
+     */
+    private static final class Folded {
+        private final String text;
+        private final String source;
+        private final int[] offsets;
+
+        private Folded(String text, String source, int[] offsets) {
+            this.text = text;
+            this.source = source;
+            this.offsets = offsets;
+        }
+
+        static Folded of(String source) {
+            StringBuilder text = new StringBuilder(source.length());
+            int[] offsets = new int[source.length() + 1];
+            boolean space = false;
+            for (int i = 0; i < source.length(); i++) {
+                char c = source.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    space = text.length() > 0;
+                    continue;
+                }
+                if (space) {
+                    offsets[text.length()] = i - 1;
+                    text.append(' ');
+                    space = false;
+                }
+                offsets[text.length()] = i;
+                text.append(Character.toLowerCase(c));
+            }
+            return new Folded(text.toString(), source, offsets);
+        }
+
+        /**
+         * The source text the folded range {@code start} to {@code end} came from.
+         */
+        String original(int start, int end) {
+            return source.substring(offsets[start], offsets[end - 1] + 1);
+        }
+    }
+
+    /**
+     * One highlight entry and the object whose translated data it points into.
+     */
+    public static final class Highlight {
+        private final Map<String, Object> owner;
+        private final Map<String, Object> entry;
+
+        Highlight(Map<String, Object> owner, Map<String, Object> entry) {
+            this.owner = owner;
+            this.entry = entry;
+        }
+
+        String getTranslatedData() {
+            Object data = owner.get("data");
+            return data instanceof String ? (String) data : null;
+        }
+
+        String getKeyTitle() {
+            Object keyTitle = entry.get("key_title");
+            return keyTitle instanceof String ? (String) keyTitle : null;
+        }
+
+        void setKeyTitle(String keyTitle) {
+            entry.put("key_title", keyTitle);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.hackerx.translation.service;
+
+/**
+ * Thrown when a translation job is not admitted because the instance is at capacity. The
+ * client should try again after {@link #getRetryAfterSeconds()}.
+ */
+public class JobRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public JobRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
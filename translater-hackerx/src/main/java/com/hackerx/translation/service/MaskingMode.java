@@ -0,0 +1,24 @@
+package com.hackerx.translation.service;
+
+/**
+ * How special characters are protected in the text of a single-segment provider request.
+ * Chosen per provider with {@code translation.masking.<provider>}.
+ */
+public enum MaskingMode {
+
+    /** Text is sent as it is; the JSON request body escapes it. */
+    NONE,
+
+    /**
+     * Every special character becomes a named placeholder such as {@code __DOT__}. Safe with
+     * any model, but a sentence of technical prose grows several times in tokens.
+     */
+    PLACEHOLDER,
+
+    /**
+     * Only the characters that break a JSON reply are masked, as short sentinels:
+     * {@code {{n}}} newline, {@code {{t}}} tab, {@code {{r}}} carriage return, {@code {{q}}}
+     * double quote, {@code {{b}}} backslash, and {@code {{l}}} for a literal {@code {{}.
+     */
+    COMPACT
+}
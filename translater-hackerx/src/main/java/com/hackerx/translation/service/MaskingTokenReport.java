@@ -0,0 +1,106 @@
+package com.hackerx.translation.service;
+
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the {@link MaskingMode}s on the same segments: characters and estimated tokens
+ * each mode sends, and how many segments survive a mask/unmask round trip unchanged.
+ *
+ * Tokens are estimated the way BPE tokenizers split technical prose: a token per five
+ * letters of a word, per three digits and per symbol, with a doubled symbol such as
+ * {@code __} or {@code {{} counted once. The completion echoes every marker back, so the
+ * estimate for a call is twice the masked segment.
+ */
+public final class MaskingTokenReport {
+
+    private MaskingTokenReport() {
+    }
+
+    public static Map<String, Object> compare(List<String> segments) {
+        long sourceCharacters = 0;
+        for (String segment : segments) {
+            sourceCharacters += segment.length();
+        }
+
+        Map<String, Object> modes = new LinkedHashMap<>();
+        long baselineTokens = 0;
+        long placeholderTokens = 0;
+        long compactTokens = 0;
+        for (MaskingMode mode : MaskingMode.values()) {
+            long characters = 0;
+            long tokens = 0;
+            int lossless = 0;
+            for (String segment : segments) {
+                String masked = TextMasker.mask(segment, mode);
+                characters += masked.length();
+                tokens += estimateTokens(masked);
+                String expected = Normalizer.normalize(segment, Normalizer.Form.NFC).strip();
+                if (expected.equals(TextMasker.unmask(masked, mode, "Gemini").strip())) {
+                    lossless++;
+                }
+            }
+            if (mode == MaskingMode.NONE) {
+                baselineTokens = tokens;
+            } else if (mode == MaskingMode.PLACEHOLDER) {
+                placeholderTokens = tokens;
+            } else if (mode == MaskingMode.COMPACT) {
+                compactTokens = tokens;
+            }
+
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("characters", characters);
+            stats.put("promptTokens", tokens);
+            stats.put("estimatedCallTokens", tokens * 2);
+            stats.put("tokensPerSegment", segments.isEmpty() ? 0.0 : round((double) tokens / segments.size()));
+            stats.put("growthOverNone", baselineTokens == 0 ? 1.0 : round((double) tokens / baselineTokens));
+            stats.put("losslessRoundTrips", lossless);
+            modes.put(mode.name(), stats);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("segments", segments.size());
+        report.put("sourceCharacters", sourceCharacters);
+        report.put("modes", modes);
+        report.put("compactSavingsOverPlaceholder",
+                placeholderTokens == 0 ? 0.0 : round(1 - (double) compactTokens / placeholderTokens));
+        return report;
+    }
+
+    static long estimateTokens(String text) {
+        long tokens = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            int start = i;
+            if (Character.isLetter(c)) {
+                while (i < length && Character.isLetter(text.charAt(i))) {
+                    i++;
+                }
+                tokens += (i - start + 4) / 5;
+            } else if (Character.isDigit(c)) {
+                while (i < length && Character.isDigit(text.charAt(i))) {
+                    i++;
+                }
+                tokens += (i - start + 2) / 3;
+            } else if (c == ' ') {
+                // A space is part of the word that follows it
+                i++;
+            } else {
+                i++;
+                if (i < length && text.charAt(i) == c) {
+                    i++;
+                }
+                tokens++;
+            }
+        }
+        return tokens;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
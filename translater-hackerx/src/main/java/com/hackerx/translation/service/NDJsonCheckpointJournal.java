@@ -0,0 +1,378 @@
+package com.hackerx.translation.service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Append-only journal of the NDJSON windows a job has already translated, so that a job
+ * restarted after a crash or redeploy resumes from the first untranslated line instead of
+ * paying for the whole file again.
+ *
+ * A job is identified by the hash of its content, target language, provider and
+ * {@link SystemPrompts#PROMPT_VERSION}; resubmitting the same file finds its journal. The
+ * file starts with a magic number and version, followed by one record per window:
+ * first line index, line count, output length, the window's translated NDJSON and a CRC32
+ * of the record. Replay stops at the first torn or corrupt record and truncates it.
+ *
+ * Every record is written to the file as soon as its window is done, so a process crash
+ * loses nothing already written; the file is forced to disk at most once per
+ * {@code translation.checkpoint.fsync-interval-ms} and when the job stops. The journal is
+ * deleted once the job completes.
+ */
+@Component
+public class NDJsonCheckpointJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NDJsonCheckpointJournal.class);
+
+    private static final int MAGIC = 0x4E444A43; // "NDJC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_OVERHEAD_BYTES = 16;
+    private static final String SUFFIX = ".journal";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long fsyncIntervalNanos;
+    private final Duration maxAge;
+    private final Set<String> openJobs = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong resumedJobs = new AtomicLong();
+    private final AtomicLong replayedWindows = new AtomicLong();
+    private final AtomicLong appendedWindows = new AtomicLong();
+    private final AtomicLong fsyncs = new AtomicLong();
+
+    public NDJsonCheckpointJournal(@Value("${translation.checkpoint.enabled:true}") boolean enabled,
+            @Value("${translation.checkpoint.dir:data/checkpoints}") String directory,
+            @Value("${translation.checkpoint.fsync-interval-ms:1000}") long fsyncIntervalMillis,
+            @Value("${translation.checkpoint.max-age-hours:24}") long maxAgeHours) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory).toAbsolutePath();
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        this.maxAge = Duration.ofHours(maxAgeHours);
+    }
+
+    /**
+     * Deletes journals of jobs that were never resubmitted.
+     */
+    @PostConstruct
+    public void purgeStale() {
+        if (!enabled || !Files.isDirectory(directory)) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(maxAge);
+        try (DirectoryStream<Path> journals = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path journal : journals) {
+                if (Files.getLastModifiedTime(journal).toInstant().isBefore(cutoff)) {
+                    Files.deleteIfExists(journal);
+                    LOGGER.info("Deleted stale checkpoint journal {}", journal.getFileName());
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not purge checkpoint journals in {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Opens the journal of the job translating {@code content}, replaying the windows it
+     * already holds. A checkpoint that records nothing is returned when journaling is
+     * disabled or the same job is already running.
+     */
+    public Checkpoint open(String content, String language, String service) throws IOException {
+        if (!enabled) {
+            return disabled();
+        }
+        String jobKey = jobKey(content, language, service);
+        if (!openJobs.add(jobKey)) {
+            LOGGER.info("NDJSON job {} is already running, this run is not journaled", jobKey);
+            return disabled();
+        }
+
+        Path file = directory.resolve(jobKey + SUFFIX);
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(directory);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            TreeMap<Integer, Window> windows = new TreeMap<>();
+            long end = replay(channel, windows);
+            channel.truncate(end);
+            channel.position(end);
+            if (end == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+                writeFully(channel, header);
+            }
+
+            if (!windows.isEmpty()) {
+                resumedJobs.incrementAndGet();
+                replayedWindows.addAndGet(windows.size());
+                int lines = windows.values().stream().mapToInt(Window::getLineCount).sum();
+                LOGGER.info("Resuming NDJSON job {} from its journal: {} windows, {} lines already translated",
+                        jobKey, windows.size(), lines);
+            }
+            return new Checkpoint(jobKey, file, channel, windows);
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            openJobs.remove(jobKey);
+            throw e;
+        }
+    }
+
+    /**
+     * A checkpoint that replays and records nothing.
+     */
+    public Checkpoint disabled() {
+        return new Checkpoint(null, null, null, new TreeMap<>());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("openJobs", openJobs.size());
+        stats.put("resumedJobs", resumedJobs.get());
+        stats.put("replayedWindows", replayedWindows.get());
+        stats.put("appendedWindows", appendedWindows.get());
+        stats.put("fsyncs", fsyncs.get());
+        return stats;
+    }
+
+    /**
+     * Reads the records of {@code channel} into {@code windows} and returns the offset just
+     * past the last intact one, or 0 if the file has no valid header.
+     */
+    private static long replay(FileChannel channel, Map<Integer, Window> windows) throws IOException {
+        if (channel.size() < HEADER_BYTES) {
+            return 0;
+        }
+        InputStream stream = Channels.newInputStream(channel.position(0));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            LOGGER.warn("Discarding checkpoint journal with an unknown header");
+            return 0;
+        }
+
+        long end = HEADER_BYTES;
+        long size = channel.size();
+        while (end + RECORD_OVERHEAD_BYTES <= size) {
+            try {
+                int firstLine = in.readInt();
+                int lineCount = in.readInt();
+                int length = in.readInt();
+                if (firstLine < 0 || lineCount <= 0 || length < 0 || end + RECORD_OVERHEAD_BYTES + length > size) {
+                    break;
+                }
+                byte[] output = new byte[length];
+                in.readFully(output);
+                int crc = in.readInt();
+                if (crc != crc(firstLine, lineCount, output)) {
+                    break;
+                }
+                windows.put(firstLine, new Window(firstLine, lineCount, output));
+                end += RECORD_OVERHEAD_BYTES + length;
+            } catch (EOFException e) {
+                break;
+            }
+        }
+        if (end < size) {
+            LOGGER.warn("Truncating {} bytes of a torn checkpoint record", size - end);
+        }
+        return end;
+    }
+
+    private static int crc(int firstLine, int lineCount, byte[] output) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putInt(firstLine).putInt(lineCount).flip());
+        crc.update(output);
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static String jobKey(String content, String language, String service) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(language.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(service.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(SystemPrompts.PROMPT_VERSION.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            byte[] hash = digest.digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hexString = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hexString.append(String.format("%02x", b));
+            }
+            return hexString.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * A window of lines translated in an earlier run, and its translated NDJSON.
+     */
+    public static final class Window {
+        private final int firstLine;
+        private final int lineCount;
+        private final byte[] output;
+
+        private Window(int firstLine, int lineCount, byte[] output) {
+            this.firstLine = firstLine;
+            this.lineCount = lineCount;
+            this.output = output;
+        }
+
+        public int getFirstLine() {
+            return firstLine;
+        }
+
+        public int getLineCount() {
+            return lineCount;
+        }
+
+        public byte[] getOutput() {
+            return output;
+        }
+    }
+
+    /**
+     * The open journal of one job. Windows may be appended from any thread, in any order.
+     */
+    public final class Checkpoint implements Closeable {
+        private final String jobKey;
+        private final Path file;
+        private final TreeMap<Integer, Window> windows;
+        private FileChannel channel;
+        private long lastSync = System.nanoTime();
+        private boolean unsynced;
+
+        private Checkpoint(String jobKey, Path file, FileChannel channel, TreeMap<Integer, Window> windows) {
+            this.jobKey = jobKey;
+            this.file = file;
+            this.channel = channel;
+            this.windows = windows;
+        }
+
+        /**
+         * The replayed window starting at {@code line}, or {@code null}.
+         */
+        public Window replayed(int line) {
+            return windows.get(line);
+        }
+
+        /**
+         * The first line after {@code line} where a replayed window starts, so that new
+         * windows stop short of it; {@link Integer#MAX_VALUE} if there is none.
+         */
+        public int nextReplayedLine(int line) {
+            Integer next = windows.higherKey(line);
+            return next == null ? Integer.MAX_VALUE : next;
+        }
+
+        /**
+         * Records that lines {@code firstLine} to {@code firstLine + lineCount - 1} translate
+         * to {@code output}.
+         */
+        public synchronized void append(int firstLine, int lineCount, byte[] output) throws IOException {
+            if (channel == null) {
+                return;
+            }
+            ByteArrayOutputStream record = new ByteArrayOutputStream(RECORD_OVERHEAD_BYTES + output.length);
+            DataOutputStream out = new DataOutputStream(record);
+            out.writeInt(firstLine);
+            out.writeInt(lineCount);
+            out.writeInt(output.length);
+            out.write(output);
+            out.writeInt(crc(firstLine, lineCount, output));
+            writeFully(channel, ByteBuffer.wrap(record.toByteArray()));
+            appendedWindows.incrementAndGet();
+            unsynced = true;
+
+            if (System.nanoTime() - lastSync >= fsyncIntervalNanos) {
+                sync();
+            }
+        }
+
+        /**
+         * Deletes the journal of a job that completed.
+         */
+        public synchronized void complete() throws IOException {
+            if (channel == null) {
+                return;
+            }
+            closeChannel();
+            Files.deleteIfExists(file);
+        }
+
+        /**
+         * Closes the journal of a job that stopped before completing, keeping it for the next
+         * run.
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            if (channel == null) {
+                return;
+            }
+            if (unsynced) {
+                sync();
+            }
+            closeChannel();
+        }
+
+        private void sync() throws IOException {
+            channel.force(false);
+            fsyncs.incrementAndGet();
+            lastSync = System.nanoTime();
+            unsynced = false;
+        }
+
+        private void closeChannel() throws IOException {
+            try {
+                channel.close();
+            } finally {
+                channel = null;
+                openJobs.remove(jobKey);
+            }
+        }
+    }
+}
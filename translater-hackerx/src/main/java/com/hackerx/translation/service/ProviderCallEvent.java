@@ -0,0 +1,42 @@
+package com.hackerx.translation.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One HTTP exchange with a provider, as recorded by Flight Recorder in {@link ProviderHttpClient}.
+ * Token counts are -1 when the reply does not report them.
+ */
+@Name("com.hackerx.translation.ProviderCall")
+@Label("Provider Call")
+@Category({"HackerX", "Translation"})
+@Description("An HTTP exchange with a translation provider, from the moment it is sent until its body is in")
+@StackTrace(false)
+class ProviderCallEvent extends Event {
+
+    @Label("Provider")
+    String provider;
+
+    @Label("Status")
+    @Description("HTTP status, or 0 if no response came")
+    int status;
+
+    @Label("Request Bytes")
+    @DataAmount
+    long requestBytes;
+
+    @Label("Response Bytes")
+    @DataAmount
+    long responseBytes;
+
+    @Label("Prompt Tokens")
+    long promptTokens = -1;
+
+    @Label("Completion Tokens")
+    long completionTokens = -1;
+}
@@ -0,0 +1,100 @@
+package com.hackerx.translation.service;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tells whoever started a provider call when its first HTTP request leaves the provider's
+ * dispatcher queue in the {@link ProviderHttpClient}. Calls wait there, and in the rate limiter
+ * before it, for as long as other jobs keep the provider busy; timers, timeouts and hedges
+ * that start when the call is made would count that wait against the provider.
+ *
+ * A dispatch is current on the thread that starts the call, and requests made from there carry
+ * it. Dispatches nest: a request going out marks its dispatch and every one around it as sent.
+ */
+public final class ProviderDispatch {
+
+    private static final ThreadLocal<ProviderDispatch> CURRENT = new ThreadLocal<>();
+
+    private final ProviderDispatch parent;
+    private final CompletableFuture<Long> sentAt = new CompletableFuture<>();
+
+    private ProviderDispatch(ProviderDispatch parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * A new dispatch inside the one current on this thread, if any.
+     */
+    public static ProviderDispatch open() {
+        return new ProviderDispatch(CURRENT.get());
+    }
+
+    /**
+     * A new dispatch inside {@code parent}, for a call started away from the thread it was
+     * current on.
+     */
+    public static ProviderDispatch open(ProviderDispatch parent) {
+        return new ProviderDispatch(parent);
+    }
+
+    /**
+     * The dispatch current on this thread, or {@code null}.
+     */
+    public static ProviderDispatch current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Starts {@code call} with {@code dispatch} current, or as it is if {@code dispatch} is
+     * {@code null}; for a call continued on another thread.
+     */
+    public static <T> CompletableFuture<T> within(ProviderDispatch dispatch, Futures.IOSupplier<T> call) {
+        return dispatch == null ? Futures.start(call) : dispatch.start(call);
+    }
+
+    /**
+     * Starts {@code call} with this dispatch current, so that the requests it sends mark it.
+     */
+    public <T> CompletableFuture<T> start(Futures.IOSupplier<T> call) {
+        ProviderDispatch previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return Futures.start(call);
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Runs {@code action} once the first request has gone out, at once if it already has. It
+     * runs on the dispatcher thread sending the request, so it must not block.
+     */
+    public void whenSent(Runnable action) {
+        sentAt.thenRun(action);
+    }
+
+    public boolean isSent() {
+        return sentAt.isDone();
+    }
+
+    /**
+     * Milliseconds since the first request went out, or -1 if none has.
+     */
+    public long millisSinceSent() {
+        Long sent = sentAt.getNow(null);
+        return sent == null ? -1 : (System.nanoTime() - sent) / 1_000_000;
+    }
+
+    /**
+     * Marks the call sent; the {@link ProviderHttpClient} calls this as a request goes out.
+     */
+    public void markSent() {
+        if (sentAt.complete(System.nanoTime()) && parent != null) {
+            parent.markSent();
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.hackerx.translation.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The single HTTP client all provider calls go through.
+ *
+ * Calls are asynchronous: they are queued on a per-provider OkHttp {@link Dispatcher} whose
+ * per-host limit is the provider's concurrency, so a job with hundreds of batches in flight
+ * holds no thread while its calls wait. Every call first takes its share of the provider quota
+ * from the {@link ProviderRateLimiter}; a call that has to wait for it is scheduled instead of
+ * sleeping. A 429 pauses the provider for the time it asks for ({@code Retry-After},
+ * {@code retry-after-ms} or the {@code retryDelay} of a Gemini error) and the call is sent
+ * again, so a burst over the quota slows the job down instead of failing it.
+ *
+ * Each exchange is timed in {@link TranslationMetrics} by the provider's client, from the
+ * moment the dispatcher sends it, so the time spent queued is not counted as latency. While a
+ * Flight Recorder recording is running, each exchange is also recorded as a
+ * {@link ProviderCallEvent} with its sizes and the tokens the reply reports. A call started
+ * under a {@link ProviderDispatch} marks it sent at the same moment, so the callers' own timers
+ * leave the queue out as well.
+ */
+@Component
+public class ProviderHttpClient {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProviderHttpClient.class);
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int DEFAULT_CONCURRENCY = 4;
+    private static final Pattern RETRY_DELAY = Pattern.compile("\"retryDelay\"\\s*:\\s*\"(\\d+(?:\\.\\d+)?)s\"");
+    private static final Pattern PROMPT_TOKENS = Pattern.compile("\"(?:prompt_tokens|promptTokenCount)\"\\s*:\\s*(\\d+)");
+    private static final Pattern COMPLETION_TOKENS =
+            Pattern.compile("\"(?:completion_tokens|candidatesTokenCount)\"\\s*:\\s*(\\d+)");
+    /** Largest reply body read ahead for a {@link ProviderCallEvent}. */
+    private static final long MAX_RECORDED_BODY_BYTES = 8 * 1024 * 1024;
+
+    private final OkHttpClient baseClient;
+    private final Map<String, OkHttpClient> providerClients = new ConcurrentHashMap<>();
+    private final Map<String, Integer> concurrency = new ConcurrentHashMap<>();
+    private final ProviderRateLimiter rateLimiter;
+    private final TranslationMetrics metrics;
+    private final int maxRateLimitRetries;
+    private final long defaultRetryAfterMillis;
+
+    public ProviderHttpClient(ProviderRateLimiter rateLimiter, TranslationMetrics metrics,
+            @Value("${translation.concurrency.chatgpt:8}") int chatGptConcurrency,
+            @Value("${translation.concurrency.gemini:8}") int geminiConcurrency,
+            @Value("${translation.ratelimit.max-retries:6}") int maxRateLimitRetries,
+            @Value("${translation.ratelimit.default-retry-after-ms:2000}") long defaultRetryAfterMillis) {
+        this.baseClient = new OkHttpClient.Builder()
+                .connectTimeout(500, TimeUnit.SECONDS)
+                .writeTimeout(500, TimeUnit.SECONDS)
+                .readTimeout(500, TimeUnit.SECONDS)
+                .build();
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
+        this.maxRateLimitRetries = maxRateLimitRetries;
+        this.defaultRetryAfterMillis = defaultRetryAfterMillis;
+        concurrency.put("chatgpt", Math.max(1, chatGptConcurrency));
+        concurrency.put("gemini", Math.max(1, geminiConcurrency));
+    }
+
+    /**
+     * Sends {@code request} to {@code provider} within its rate limit and waits for the
+     * response body. Prefer {@link #executeAsync(String, Request)}.
+     */
+    public String execute(String provider, Request request) throws IOException {
+        return Futures.await(executeAsync(provider, request));
+    }
+
+    /**
+     * Sends {@code request} to {@code provider} within its rate limit. The future completes
+     * with the response body, or fails on any unsuccessful status other than a 429 that can
+     * still be retried. Cancelling it cancels the HTTP call.
+     */
+    public CompletableFuture<String> executeAsync(String provider, Request request) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        long tokens;
+        try {
+            tokens = estimateTokens(request);
+        } catch (IOException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        ProviderDispatch dispatch = ProviderDispatch.current();
+        if (dispatch != null) {
+            request = request.newBuilder().tag(ProviderDispatch.class, dispatch).build();
+        }
+        send(new PendingCall(provider, request, tokens, result), 1);
+        return result;
+    }
+
+    private void send(PendingCall pending, int attempt) {
+        long waitNanos = rateLimiter.reserve(pending.provider, pending.tokens);
+        if (waitNanos > 0) {
+            if (waitNanos > TimeUnit.SECONDS.toNanos(1)) {
+                LOGGER.info("Delaying {} call by {} ms for the rate limit", pending.provider,
+                        TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            }
+            CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS, Runnable::run)
+                    .execute(() -> enqueue(pending, attempt));
+        } else {
+            enqueue(pending, attempt);
+        }
+    }
+
+    private void enqueue(PendingCall pending, int attempt) {
+        if (pending.result.isDone()) {
+            return;
+        }
+        Call call = clientFor(pending.provider).newCall(pending.request);
+        pending.result.whenComplete((body, failure) -> {
+            if (pending.result.isCancelled()) {
+                call.cancel();
+            }
+        });
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call failedCall, IOException e) {
+                pending.result.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call completedCall, Response response) {
+                try (response) {
+                    rateLimiter.onResponse(pending.provider, response.headers());
+                    if (response.isSuccessful()) {
+                        pending.result.complete(response.body().string());
+                        return;
+                    }
+                    if (response.code() != TOO_MANY_REQUESTS || attempt > maxRateLimitRetries) {
+                        pending.result.completeExceptionally(new IOException("Unexpected code " + response));
+                        return;
+                    }
+
+                    long retryAfter = retryAfterMillis(response, attempt);
+                    LOGGER.warn("{} returned 429 (attempt {} of {}), retrying in {} ms",
+                            pending.provider, attempt, maxRateLimitRetries + 1, retryAfter);
+                    rateLimiter.pause(pending.provider, retryAfter);
+                    send(pending, attempt + 1);
+                } catch (IOException e) {
+                    pending.result.completeExceptionally(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Calls running and queued per provider.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        providerClients.forEach((provider, client) -> stats.put(provider, Map.of(
+                "running", client.dispatcher().runningCallsCount(),
+                "queued", client.dispatcher().queuedCallsCount(),
+                "maxPerHost", client.dispatcher().getMaxRequestsPerHost())));
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        providerClients.values().forEach(client -> client.dispatcher().executorService().shutdown());
+        baseClient.dispatcher().executorService().shutdown();
+    }
+
+    /**
+     * A client of its own per provider, sharing the connection pool, so that one provider's
+     * queue never holds up the other.
+     */
+    private OkHttpClient clientFor(String provider) {
+        String key = provider.toLowerCase(Locale.ROOT);
+        return providerClients.computeIfAbsent(key, k -> {
+            int limit = concurrency.getOrDefault(k, DEFAULT_CONCURRENCY);
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(limit);
+            dispatcher.setMaxRequestsPerHost(limit);
+            return baseClient.newBuilder().dispatcher(dispatcher).addInterceptor(chain -> {
+                ProviderDispatch dispatch = chain.request().tag(ProviderDispatch.class);
+                if (dispatch != null) {
+                    dispatch.markSent();
+                }
+                ProviderCallEvent event = new ProviderCallEvent();
+                event.begin();
+                long start = System.nanoTime();
+                int status = 0;
+                Response response = null;
+                try {
+                    response = chain.proceed(chain.request());
+                    status = response.code();
+                    return response;
+                } finally {
+                    metrics.recordProviderCall(provider, status, System.nanoTime() - start);
+                    if (event.isEnabled()) {
+                        recordCall(event, provider, chain.request(), response);
+                    }
+                }
+            }).build();
+        });
+    }
+
+    /**
+     * Commits {@code event} for an exchange that ended with {@code response}, or with none. The
+     * body is read ahead, up to {@link #MAX_RECORDED_BODY_BYTES}, so the event also covers its
+     * download; the response itself still has all of it. A body that cannot be read ahead is
+     * left to the caller, which gets the same error.
+     */
+    private static void recordCall(ProviderCallEvent event, String provider, Request request, Response response) {
+        String body = null;
+        if (response != null && response.body() != null) {
+            try {
+                body = response.peekBody(MAX_RECORDED_BODY_BYTES).string();
+            } catch (IOException e) {
+                body = null;
+            }
+        }
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.provider = provider;
+        event.status = response == null ? 0 : response.code();
+        event.requestBytes = requestBytes(request);
+        if (body != null) {
+            long length = response.body().contentLength();
+            event.responseBytes = length >= 0 ? length : body.getBytes(StandardCharsets.UTF_8).length;
+            event.promptTokens = firstNumber(PROMPT_TOKENS, body);
+            event.completionTokens = firstNumber(COMPLETION_TOKENS, body);
+        }
+        event.commit();
+    }
+
+    private static long requestBytes(Request request) {
+        try {
+            return request.body() == null ? 0 : request.body().contentLength();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static long firstNumber(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Tokens charged against the quota for one call: the prompt estimated from the request
+     * size, plus as many again for the completion, which mirrors the text it translates.
+     */
+    private static long estimateTokens(Request request) throws IOException {
+        long length = request.body() == null ? 0 : request.body().contentLength();
+        long promptTokens = Math.max(1, length / CHARS_PER_TOKEN);
+        return promptTokens * 2;
+    }
+
+    private long retryAfterMillis(Response response, int attempt) throws IOException {
+        String retryAfterMs = response.header("retry-after-ms");
+        if (retryAfterMs != null) {
+            try {
+                return Math.max(0, (long) Double.parseDouble(retryAfterMs.trim()));
+            } catch (NumberFormatException e) {
+                // Fall through to Retry-After
+            }
+        }
+
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter != null) {
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+            } catch (NumberFormatException e) {
+                try {
+                    ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                    return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+                } catch (DateTimeParseException ignored) {
+                    // Fall through to the body
+                }
+            }
+        }
+
+        // Gemini reports the delay in the RetryInfo detail of the error body
+        String body = response.peekBody(64 * 1024).string();
+        Matcher matcher = RETRY_DELAY.matcher(body);
+        if (matcher.find()) {
+            return (long) (Double.parseDouble(matcher.group(1)) * 1000);
+        }
+
+        return defaultRetryAfterMillis << Math.min(attempt - 1, 10);
+    }
+
+    /**
+     * One provider call across its rate-limit retries.
+     */
+    private static final class PendingCall {
+        private final String provider;
+        private final Request request;
+        private final long tokens;
+        private final CompletableFuture<String> result;
+
+        private PendingCall(String provider, Request request, long tokens, CompletableFuture<String> result) {
+            this.provider = provider;
+            this.request = request;
+            this.tokens = tokens;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.hackerx.translation.service;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import okhttp3.Headers;
+
+/**
+ * Client-side rate limiter shared by every job in the JVM, with one requests-per-minute and
+ * one tokens-per-minute bucket per provider.
+ *
+ * A caller reserves one request and its estimated tokens. When a bucket runs dry the
+ * reservation puts it in debt and the call is held back until the debt has been refilled, so
+ * calls go out in the order they arrived and concurrent jobs together run at the quota
+ * without going over it. A 429 pauses the provider for its {@code Retry-After}, and the
+ * limits follow the {@code x-ratelimit-*} headers when the provider sends them.
+ */
+@Component
+public class ProviderRateLimiter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProviderRateLimiter.class);
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final Map<String, ProviderLimits> limits = new ConcurrentHashMap<>();
+    private final long defaultRequestsPerMinute;
+    private final long defaultTokensPerMinute;
+
+    public ProviderRateLimiter(
+            @Value("${translation.ratelimit.chatgpt.requests-per-minute:500}") long chatGptRequestsPerMinute,
+            @Value("${translation.ratelimit.chatgpt.tokens-per-minute:200000}") long chatGptTokensPerMinute,
+            @Value("${translation.ratelimit.gemini.requests-per-minute:1000}") long geminiRequestsPerMinute,
+            @Value("${translation.ratelimit.gemini.tokens-per-minute:1000000}") long geminiTokensPerMinute,
+            @Value("${translation.ratelimit.default.requests-per-minute:300}") long defaultRequestsPerMinute,
+            @Value("${translation.ratelimit.default.tokens-per-minute:100000}") long defaultTokensPerMinute) {
+        this.defaultRequestsPerMinute = defaultRequestsPerMinute;
+        this.defaultTokensPerMinute = defaultTokensPerMinute;
+        limits.put("chatgpt", new ProviderLimits(chatGptRequestsPerMinute, chatGptTokensPerMinute));
+        limits.put("gemini", new ProviderLimits(geminiRequestsPerMinute, geminiTokensPerMinute));
+    }
+
+    /**
+     * Reserves one request and {@code tokens} tokens and returns how long the caller has to
+     * wait before sending it, in nanoseconds.
+     */
+    public long reserve(String provider, long tokens) {
+        return limitsFor(provider).reserve(tokens, System.nanoTime());
+    }
+
+    /**
+     * Stops handing out reservations for {@code provider} for the given time, after a 429.
+     */
+    public void pause(String provider, long millis) {
+        LOGGER.warn("{} rate limit hit, pausing calls for {} ms", provider, millis);
+        limitsFor(provider).pauseUntil(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * Adapts the buckets to the {@code x-ratelimit-*} headers of a response (sent by OpenAI).
+     */
+    public void onResponse(String provider, Headers headers) {
+        ProviderLimits providerLimits = limitsFor(provider);
+        providerLimits.adapt(parseLong(headers.get("x-ratelimit-limit-requests")),
+                parseLong(headers.get("x-ratelimit-remaining-requests")),
+                parseLong(headers.get("x-ratelimit-limit-tokens")),
+                parseLong(headers.get("x-ratelimit-remaining-tokens")),
+                System.nanoTime());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        limits.forEach((provider, providerLimits) -> stats.put(provider, providerLimits.toMap()));
+        return stats;
+    }
+
+    private ProviderLimits limitsFor(String provider) {
+        String key = provider == null ? "" : provider.toLowerCase(Locale.ROOT);
+        return limits.computeIfAbsent(key, k -> new ProviderLimits(defaultRequestsPerMinute, defaultTokensPerMinute));
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The request and token buckets of one provider.
+     */
+    private static final class ProviderLimits {
+        private final Bucket requests;
+        private final Bucket tokens;
+        private long pausedUntil;
+
+        private ProviderLimits(long requestsPerMinute, long tokensPerMinute) {
+            long now = System.nanoTime();
+            this.requests = new Bucket(requestsPerMinute, now);
+            this.tokens = new Bucket(tokensPerMinute, now);
+            this.pausedUntil = now;
+        }
+
+        synchronized long reserve(long tokenCount, long now) {
+            long requestWait = requests.take(1, now);
+            long tokenWait = tokens.take(Math.min(tokenCount, tokens.perMinute), now);
+            long pauseWait = pausedUntil - now;
+            return Math.max(Math.max(requestWait, tokenWait), pauseWait);
+        }
+
+        synchronized void pauseUntil(long until) {
+            if (until - pausedUntil > 0) {
+                pausedUntil = until;
+            }
+        }
+
+        synchronized void adapt(long requestLimit, long requestsRemaining, long tokenLimit, long tokensRemaining,
+                long now) {
+            requests.adapt(requestLimit, requestsRemaining, now);
+            tokens.adapt(tokenLimit, tokensRemaining, now);
+        }
+
+        synchronized Map<String, Object> toMap() {
+            long now = System.nanoTime();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("requestsPerMinute", requests.perMinute);
+            map.put("requestsAvailable", requests.available(now));
+            map.put("tokensPerMinute", tokens.perMinute);
+            map.put("tokensAvailable", tokens.available(now));
+            map.put("pausedForMillis", Math.max(0, TimeUnit.NANOSECONDS.toMillis(pausedUntil - now)));
+            return map;
+        }
+    }
+
+    /**
+     * A token bucket holding at most one minute of quota, refilled continuously. The stored
+     * amount may go negative: that debt is what later callers wait for.
+     */
+    private static final class Bucket {
+        private long perMinute;
+        private double stored;
+        private long lastRefill;
+
+        private Bucket(long perMinute, long now) {
+            this.perMinute = Math.max(1, perMinute);
+            this.stored = this.perMinute;
+            this.lastRefill = now;
+        }
+
+        private void refill(long now) {
+            long elapsed = now - lastRefill;
+            if (elapsed > 0) {
+                stored = Math.min(perMinute, stored + (double) elapsed * perMinute / NANOS_PER_MINUTE);
+                lastRefill = now;
+            }
+        }
+
+        /**
+         * Takes {@code amount} and returns the nanoseconds until the bucket is out of debt.
+         */
+        private long take(long amount, long now) {
+            refill(now);
+            stored -= amount;
+            return stored >= 0 ? 0 : (long) Math.ceil(-stored * NANOS_PER_MINUTE / perMinute);
+        }
+
+        private void adapt(long limit, long remaining, long now) {
+            refill(now);
+            if (limit > 0 && limit != perMinute) {
+                LOGGER.info("Adapting rate limit from {} to {} per minute", perMinute, limit);
+                perMinute = limit;
+                stored = Math.min(stored, perMinute);
+            }
+            if (remaining >= 0 && remaining < stored) {
+                stored = remaining;
+            }
+        }
+
+        private long available(long now) {
+            refill(now);
+            return (long) stored;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.hackerx.translation.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One stage of the translation pipeline, as recorded by Flight Recorder; see {@link StageTimer}.
+ */
+@Name("com.hackerx.translation.Stage")
+@Label("Translation Stage")
+@Category({"HackerX", "Translation"})
+@Description("A stage of a translation job: parse, extract, preprocess, provider, postprocess, reassemble or highlights")
+@StackTrace(false)
+class StageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Items")
+    @Description("Lines, segments or highlights the stage handled")
+    int items;
+}
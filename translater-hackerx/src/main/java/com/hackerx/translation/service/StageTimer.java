@@ -0,0 +1,73 @@
+package com.hackerx.translation.service;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Times one stage of a job: its duration is added to the job's {@link TranslationReport}, and a
+ * {@link StageEvent} is committed if a Flight Recorder recording is running.
+ */
+public final class StageTimer {
+
+    /**
+     * The stages of the pipeline, in the order a job goes through them.
+     */
+    public enum Stage {
+        /** Reading the upload into JSON. */
+        PARSE,
+        /** Finding the translatable segments and highlights of the documents. */
+        EXTRACT,
+        /** Repeats, memory lookups, masking, packing and encoding, until the calls are out. */
+        PREPROCESS,
+        /** Waiting for the translations of the calls. */
+        PROVIDER,
+        /** Cleaning up the translations and writing them into the documents. */
+        POSTPROCESS,
+        /** Writing the translated documents out. */
+        REASSEMBLE,
+        /** Resolving the key titles of the highlights. */
+        HIGHLIGHTS;
+
+        public String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Stage stage;
+    private final TranslationReport report;
+    private final StageEvent event = new StageEvent();
+    private final long start = System.nanoTime();
+
+    private StageTimer(Stage stage, TranslationReport report) {
+        this.stage = stage;
+        this.report = report;
+        event.begin();
+    }
+
+    /**
+     * Starts timing {@code stage} of the job of {@code report}, which may be {@code null}.
+     */
+    public static StageTimer start(Stage stage, TranslationReport report) {
+        return new StageTimer(stage, report);
+    }
+
+    public void stop(int items) {
+        if (report != null) {
+            report.recordStage(stage, System.nanoTime() - start);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.stage = stage.label();
+            event.items = items;
+            event.commit();
+        }
+    }
+
+    /**
+     * Stops the timer once {@code future} completes, and returns {@code future} itself.
+     */
+    public <T> CompletableFuture<T> stopWhenDone(CompletableFuture<T> future, int items) {
+        future.whenComplete((result, failure) -> stop(items));
+        return future;
+    }
+}
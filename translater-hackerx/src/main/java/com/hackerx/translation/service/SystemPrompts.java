@@ -2,7 +2,21 @@ package com.hackerx.translation.service;
 
 public class SystemPrompts {
 
+    /**
+     * Version of the translation prompts. Part of every translation memory key, so bump it
+     * whenever a prompt change should invalidate stored translations.
+     */
+    public static final String PROMPT_VERSION = "3";
+
 public static String getChatGPTTranslationPrompt(String targetLanguage, String text) {
+    return getChatGPTTranslationPrompt(targetLanguage, text, MaskingMode.NONE);
+}
+
+/**
+ * The ChatGPT prompt for {@code text} masked in {@code mode}, with the rule for its markers.
+ */
+public static String getChatGPTTranslationPrompt(String targetLanguage, String text, MaskingMode mode) {
+    String maskingRule = TextMasker.promptRule(mode);
     return String.format(
         "You are a highly skilled translation model specializing in translating technical educational content. "
         + "The following text contains educational material for an online learning platform called HackerX. "
@@ -20,12 +34,59 @@ public static String getChatGPTTranslationPrompt(String targetLanguage, String t
         + "8. Preserve the original formatting, including newlines and spacing where they appear.\n"
         + "9. CRITICAL: Do not add ANY statements about your training data, capabilities, or knowledge cutoff date.\n"
         + "10. In your output, ONLY provide the translated text - no explanations, comments, or disclaimers.\n"
+        + (maskingRule.isEmpty() ? "" : "11. " + maskingRule.replace("%", "%%") + "\n")
         + "Here is the text to translate:\n%s",
         targetLanguage, text);
 }
 
+/**
+ * The Gemini prompt for a single segment, {@code text} masked in {@code mode}.
+ */
+public static String getGeminiTranslationPrompt(String targetLanguage, String text, MaskingMode mode) {
+    String maskingRule = TextMasker.promptRule(mode);
+    return "JUST GIVE TRANSLATED TEXT IN OUTPUT,NOTHING ELSE ,DONT ADD ANY EXTRA CHARACTERS OR SPECIAL CHARACTERS(keep weblinks as they are)You are a highly skilled translation model specializing in translating technical educational content. "
+            + "The following text contains educational material for an online learning platform called HackerX. "
+            + "HackerX helps users learn ethical hacking through real-life examples, Python code, and bits of code. "
+            + "Currently, the tutorials are only available in English, and we need to translate them into various languages "
+            + "to make the content accessible to a broader audience. "
+            + "Your task is to translate the following text into the specified language, ensuring the following guidelines are strictly followed:\n"
+            + "1. Maintain the original context and meaning of the text.\n"
+            + "2. Handle special characters, escape sequences, and formatting marks correctly to avoid any loss of information or formatting issues.\n"
+            + "3. Translate technical terms accurately and consistently, referring to common terminology in the target language.\n"
+            + "4. Ensure the translated text is clear, natural, and grammatically correct in the target language.\n"
+            + "5. Do not include any gibberish or nonsensical content in the translation.\n"
+            + "6. If any text seems out of context or unclear, translate it to the best of your ability while preserving the original intent.\n"
+            + (maskingRule.isEmpty() ? "" : "7. " + maskingRule + "\n")
+            + "Translate the following text to " + targetLanguage + ": " + text;
+}
+
+
 
 
+    public static String getBatchTranslationPrompt(String targetLanguage) {
+        return String.format(
+                "You are a translation engine for HackerX, an online platform that teaches ethical hacking through "
+                        + "real-life examples, Python code, and bits of code. "
+                        + "You receive a JSON object whose \"segments\" array holds the texts to translate, each with an \"id\" and a \"text\". "
+                        + "Translate the text of every segment from English to %s, each segment on its own, ensuring these guidelines are strictly followed:\n"
+                        + "1. Maintain the original context and meaning of the text.\n"
+                        + "2. Do not modify, translate, or alter any code snippets, commands, URLs, file paths, variable names, or placeholders in the format '__XXXX__'.\n"
+                        + "3. Translate technical terms accurately and consistently, referring to common terminology in the target language.\n"
+                        + "4. Preserve the original formatting, including newlines and spacing where they appear.\n"
+                        + "5. Return a JSON object {\"translations\": [{\"id\": ..., \"text\": ...}]} with exactly one entry for every id you received, "
+                        + "with the id copied unchanged and the translated text as its text.\n"
+                        + "6. ONLY return the JSON object - no explanations, comments, or disclaimers.",
+                targetLanguage);
+    }
+
+    public static String getHighlightBatchPrompt() {
+        return "You receive a JSON object whose \"highlights\" array holds items with an \"id\", an English \"phrase\" "
+                + "and a translated \"text\". For every item, find the exact phrase in the translated text that corresponds "
+                + "to the English phrase. If there is no exact match, use the closest matching phrase of the translated text. "
+                + "Return a JSON object {\"translations\": [{\"id\": ..., \"text\": ...}]} with exactly one entry for every id "
+                + "you received, with the id copied unchanged and the found phrase, without quotation marks, as its text. "
+                + "ONLY return the JSON object - no explanations, comments, or disclaimers.";
+    }
 
     public static String getReviewerPrompt() {
         return "Overview:\n"
@@ -0,0 +1,161 @@
+package com.hackerx.translation.service;
+
+import java.text.Normalizer;
+
+/**
+ * Masks a segment before it is sent to a provider and unmasks the reply, in the
+ * {@link MaskingMode} configured for that provider. {@link MaskingMode#PLACEHOLDER} is the
+ * {@link TextPreprocessor} encoding; {@link MaskingMode#COMPACT} is implemented here.
+ */
+public final class TextMasker {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    private TextMasker() {
+    }
+
+    public static String mask(String text, MaskingMode mode) {
+        switch (mode) {
+            case PLACEHOLDER:
+                return TextPreprocessor.preprocessText(text, "mask");
+            case COMPACT:
+                return maskCompact(text);
+            default:
+                return text;
+        }
+    }
+
+    /**
+     * Restores a provider reply to {@code text} masked in {@code mode}. {@code service} selects
+     * the provider-specific clean-up of the placeholder mode.
+     */
+    public static String unmask(String text, MaskingMode mode, String service) {
+        switch (mode) {
+            case PLACEHOLDER:
+                return TextPreprocessor.postprocessText(text, "mask", service);
+            case COMPACT:
+                return unmaskCompact(text);
+            default:
+                return text;
+        }
+    }
+
+    /**
+     * The instruction that tells the model to keep the markers of {@code mode}, or an empty
+     * string if it has none.
+     */
+    public static String promptRule(MaskingMode mode) {
+        switch (mode) {
+            case PLACEHOLDER:
+                return "Preserve any placeholders in the format '__XXXX__' and ensure they are appropriately placed in the translated text. "
+                        + "They are postprocessed by the backend, so do not translate or change placeholders surrounded by two underscores, for example __DOT__ or __COMMA__.";
+            case COMPACT:
+                return "The markers {{n}}, {{t}}, {{r}}, {{q}}, {{b}} and {{l}} stand for special characters. "
+                        + "Copy every marker unchanged to the matching place in the translation and never add new ones.";
+            default:
+                return "";
+        }
+    }
+
+    static String maskCompact(String text) {
+        StringBuilder masked = null;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            String sentinel;
+            int consumed = 1;
+            switch (c) {
+                case '\n':
+                    sentinel = "{{n}}";
+                    break;
+                case '\t':
+                    sentinel = "{{t}}";
+                    break;
+                case '\r':
+                    sentinel = "{{r}}";
+                    break;
+                case '"':
+                    sentinel = "{{q}}";
+                    break;
+                case '\\':
+                    sentinel = "{{b}}";
+                    break;
+                case '{':
+                    // A literal "{{" is masked too, so that every "{{" in the masked text starts a sentinel
+                    sentinel = i + 1 < length && text.charAt(i + 1) == '{' ? "{{l}}" : null;
+                    consumed = 2;
+                    break;
+                default:
+                    sentinel = null;
+            }
+            if (sentinel == null) {
+                if (masked != null) {
+                    masked.append(c);
+                }
+                continue;
+            }
+            if (masked == null) {
+                masked = new StringBuilder(length + 16);
+                masked.append(text, 0, i);
+            }
+            masked.append(sentinel);
+            i += consumed - 1;
+        }
+        String result = masked == null ? text : masked.toString();
+        return Normalizer.isNormalized(result, Normalizer.Form.NFC)
+                ? result
+                : Normalizer.normalize(result, Normalizer.Form.NFC);
+    }
+
+    static String unmaskCompact(String text) {
+        text = text.strip();
+        // Quotes in the source are masked, so quotes around the whole reply were added by the model
+        if (text.length() >= 2 && text.startsWith("\"") && text.endsWith("\"")) {
+            text = text.substring(1, text.length() - 1);
+        }
+
+        int start = text.indexOf(OPEN);
+        if (start >= 0) {
+            StringBuilder unmasked = new StringBuilder(text.length());
+            int copied = 0;
+            while (start >= 0) {
+                int end = start + OPEN.length() + 1;
+                String restored = end + CLOSE.length() <= text.length() && text.startsWith(CLOSE, end)
+                        ? restore(text.charAt(start + OPEN.length()))
+                        : null;
+                if (restored == null) {
+                    start = text.indexOf(OPEN, start + 1);
+                    continue;
+                }
+                unmasked.append(text, copied, start).append(restored);
+                copied = end + CLOSE.length();
+                start = text.indexOf(OPEN, copied);
+            }
+            text = unmasked.append(text, copied, text.length()).toString();
+        }
+
+        return Normalizer.isNormalized(text, Normalizer.Form.NFC)
+                ? text
+                : Normalizer.normalize(text, Normalizer.Form.NFC);
+    }
+
+    private static String restore(char code) {
+        switch (code) {
+            case 'n':
+                return "\n";
+            case 't':
+                return "\t";
+            case 'r':
+                return "\r";
+            case 'q':
+                return "\"";
+            case 'b':
+                return "\\";
+            case 'l':
+                return OPEN;
+            default:
+                return null;
+        }
+    }
+}
@@ -1,54 +1,80 @@
 package com.hackerx.translation.service;
 import java.text.Normalizer;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Escapes the characters providers tend to mangle into {@code __NAME__} placeholders before
+ * translation, and restores them afterwards.
+ *
+ * Both directions are a single scan: the encoder looks each char up in a table, the decoder
+ * walks a trie of the placeholders. The output is the same as applying the replacements one
+ * after another in {@link #PLACEHOLDERS} order, which is what the decoder falls back to when
+ * placeholders in the text overlap and that order decides the result.
+ */
 public class TextPreprocessor {
 
     private static final Logger logger = Logger.getLogger(TextPreprocessor.class.getName());
     private static Map<String, String> urlMap = new HashMap<>();
 
+    /**
+     * Placeholder and the text it stands for, in the order the replacements have always been
+     * applied when restoring. The ones marked decode-only are never produced by the encoder.
+     */
+    private static final String[][] PLACEHOLDERS = {
+        {"__NEWLINE__", "\n"}, {"__TAB__", "\t"}, {"__BACKSLASH__", "\\"},
+        {"__SINGLEQUOTE__", "'"}, {"__CURLYSINGLEQUOTE__", "’"}, {"__LSINGLEQUOTE__", "‘"},
+        {"__AMPERSAND__", "&"}, {"__LESSTHAN__", "<"}, {"__GREATERTHAN__", ">"},
+        {"__LDOUBLEQUOTE__", "“"}, {"__RDOUBLEQUOTE__", "”"}, {"__PERCENT__", "%"},
+        {"__EXCLAMATION__", "!"}, {"__HASH__", "#"}, {"__DOLLAR__", "$"},
+        {"__LPAREN__", "("}, {"__RPAREN__", ")"}, {"__ASTERISK__", "*"},
+        {"__PLUS__", "+"}, {"__COMMA__", ","}, {"__DOT__", "."},
+        {"__SLASH__", "/"}, {"__COLON__", ":"}, {"__SEMICOLON__", ";"},
+        {"__EQUAL__", "="}, {"__QUESTION__", "?"}, {"__AT__", "@"},
+        {"__LBRACKET__", "["}, {"__RBRACKET__", "]"}, {"__CARET__", "^"},
+        {"__BACKTICK__", "`"}, {"__LBRACE__", "{"}, {"__PIPE__", "|"},
+        {"__RBRACE__", "}"}, {"__TILDE__", "~"}, {"__DOUBLEQUOTE__", "\""}
+    };
+
+    // Restored but never produced: '<' and '>' are sent as they are
+    private static final String DECODE_ONLY = "<>";
+
+    private static final String[] ENCODINGS = buildEncodings();
+    private static final TrieNode DECODINGS = buildDecodings();
+
+    private static final Pattern NUMBERING = Pattern.compile("\\s*\\d+\\s*:");
+    private static final Pattern SPACES = Pattern.compile(" +");
+
     public static String preprocessText(String text, String key) {
-       // //System.out.println("Preprocessing text for key: " + key);
-       // //System.out.println("Original text: " + text);
-
-        // Escape special characters and common escape sequences
-        text = text.replace("\n", "__NEWLINE__")
-                   .replace("\t", "__TAB__")
-                   .replace("\\", "__BACKSLASH__")
-                   .replace("'", "__SINGLEQUOTE__")
-                   .replace("’", "__CURLYSINGLEQUOTE__")
-                   .replace("‘", "__LSINGLEQUOTE__")
-                   .replace("&", "__AMPERSAND__")
-                   .replace("\"", "__DOUBLEQUOTE__")
-                   .replace("“", "__LDOUBLEQUOTE__")
-                   .replace("”", "__RDOUBLEQUOTE__")
-                   .replace("%", "__PERCENT__")
-                   .replace("!", "__EXCLAMATION__")
-                   .replace("#", "__HASH__")
-                   .replace("$", "__DOLLAR__")
-                   .replace("(", "__LPAREN__")
-                   .replace(")", "__RPAREN__")
-                   .replace("*", "__ASTERISK__")
-                   .replace("+", "__PLUS__")
-                   .replace(",", "__COMMA__")
-                  // .replace("-", "__MINUS__")
-                   .replace(".", "__DOT__")
-                   .replace("/", "__SLASH__")
-                   .replace(":", "__COLON__")
-                   .replace(";", "__SEMICOLON__")
-                   .replace("=", "__EQUAL__")
-                   .replace("?", "__QUESTION__")
-                   .replace("@", "__AT__")
-                   .replace("[", "__LBRACKET__")
-                   .replace("]", "__RBRACKET__")
-                   .replace("^", "__CARET__")
-                   .replace("`", "__BACKTICK__")
-                   .replace("{", "__LBRACE__")
-                   .replace("|", "__PIPE__")
-                   .replace("}", "__RBRACE__")
-                   .replace("~", "__TILDE__");
+        // Escape special characters and common escape sequences; runs of carriage returns
+        // become a single space
+        StringBuilder encoded = null;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            String placeholder = c < ENCODINGS.length ? ENCODINGS[c] : null;
+            if (placeholder == null && c != '\r') {
+                if (encoded != null) {
+                    encoded.append(c);
+                }
+                continue;
+            }
+            if (encoded == null) {
+                encoded = new StringBuilder(length + 64);
+                encoded.append(text, 0, i);
+            }
+            if (c == '\r') {
+                encoded.append(' ');
+                while (i + 1 < length && text.charAt(i + 1) == '\r') {
+                    i++;
+                }
+            } else {
+                encoded.append(placeholder);
+            }
+        }
+        text = encoded == null ? text : encoded.toString();
 
 //        // Handle URLs
 //        if (text.contains("\nhttps://") || text.contains("\nhttp://")) {
@@ -58,34 +84,22 @@ public class TextPreprocessor {
 //        }
 
         // Normalize text to NFC form
-        text = Normalizer.normalize(text, Normalizer.Form.NFC);
+        if (!Normalizer.isNormalized(text, Normalizer.Form.NFC)) {
+            text = Normalizer.normalize(text, Normalizer.Form.NFC);
+        }
 
-      //  //System.out.println("Text after preprocessing: " + text);
-        return text.replaceAll("[\\n\\r]+", " ").trim();
+        return text.trim();
     }
 
     public static String postprocessText(String text, String key, String service) {
-       // //System.out.println("Postprocessing text for key: " + key + " using service: " + service);
-        ////System.out.println("Text before postprocessing: " + text);
         text = text.trim();
 
         // Restore special characters and common escape sequences
-        text = text.replace("__NEWLINE__", "\n").replace("__TAB__", "\t").replace("__BACKSLASH__", "\\")
-                   .replace("__SINGLEQUOTE__", "'").replace("__CURLYSINGLEQUOTE__", "’").replace("__LSINGLEQUOTE__", "‘")
-                   .replace("__AMPERSAND__", "&").replace("__LESSTHAN__", "<").replace("__GREATERTHAN__", ">")
-                   .replace("__LDOUBLEQUOTE__", "“").replace("__RDOUBLEQUOTE__", "”").replace("__PERCENT__", "%")
-                   .replace("__EXCLAMATION__", "!").replace("__HASH__", "#").replace("__DOLLAR__", "$")
-                   .replace("__LPAREN__", "(").replace("__RPAREN__", ")").replace("__ASTERISK__", "*")
-                   .replace("__PLUS__", "+").replace("__COMMA__", ",")/*.replace("__MINUS__", "-")*/.replace("__DOT__", ".")
-                   .replace("__SLASH__", "/").replace("__COLON__", ":").replace("__SEMICOLON__", ";")
-                   .replace("__EQUAL__", "=").replace("__QUESTION__", "?").replace("__AT__", "@")
-                   .replace("__LBRACKET__", "[").replace("__RBRACKET__", "]").replace("__CARET__", "^")
-                   .replace("__BACKTICK__", "`").replace("__LBRACE__", "{").replace("__PIPE__", "|")
-                   .replace("__RBRACE__", "}").replace("__TILDE__", "~").replace("__DOUBLEQUOTE__", "\"");
+        text = restorePlaceholders(text);
 
         // Manually handle specific issues for ChatGPT service
         if ("ChatGPT".equalsIgnoreCase(service)) {
-            text = text.replace("\\\"", "\"").replace("\\“", "“").replace("\\”", "”").replace("\"", " ");
+            text = unescapeQuotes(text);
         }
 
         // Specific logic to remove outer quotes from translated JSON-like strings
@@ -94,12 +108,19 @@ public class TextPreprocessor {
         }
 
         // Normalize text to NFC form
-        text = Normalizer.normalize(text, Normalizer.Form.NFC);
+        if (!Normalizer.isNormalized(text, Normalizer.Form.NFC)) {
+            text = Normalizer.normalize(text, Normalizer.Form.NFC);
+        }
        // text = text.replaceAll("__URL__(https?://\\S+)__URL__", "$1");
 
-      //  //System.out.println("Text after postprocessing: " + text);
-        text = text.replaceAll("\\s*\\d+\\s*:", "").trim(); // Remove unwanted numbering
-        return text.replaceAll(" +", " ").trim();
+        if (text.indexOf(':') >= 0) {
+            text = NUMBERING.matcher(text).replaceAll(""); // Remove unwanted numbering
+        }
+        text = text.trim();
+        if (text.contains("  ")) {
+            text = SPACES.matcher(text).replaceAll(" ");
+        }
+        return text.trim();
     }
 
     public static Map<String, String> getUrlMap() {
@@ -109,5 +130,130 @@ public class TextPreprocessor {
     public static void clearUrlMap() {
         urlMap.clear();
     }
-}
 
+    /**
+     * Replaces every placeholder in one pass. Restored characters are never part of a
+     * placeholder, so as long as no two placeholders overlap this is what replacing them one
+     * kind at a time gives; when they do, the replacements are applied in order instead.
+     */
+    static String restorePlaceholders(String text) {
+        if (!text.contains("__")) {
+            return text;
+        }
+        StringBuilder restored = null;
+        int length = text.length();
+        int copied = 0;
+        for (int start = 0; start < length; start++) {
+            if (text.charAt(start) != '_') {
+                continue;
+            }
+            TrieNode node = DECODINGS;
+            int end = start;
+            while (end < length && node != null && node.replacement == null) {
+                node = node.next(text.charAt(end++));
+            }
+            if (node == null || node.replacement == null) {
+                continue;
+            }
+            if (start < copied) {
+                return restorePlaceholdersInOrder(text);
+            }
+            if (restored == null) {
+                restored = new StringBuilder(length);
+            }
+            restored.append(text, copied, start).append(node.replacement);
+            copied = end;
+        }
+        if (restored == null) {
+            return text;
+        }
+        return restored.append(text, copied, length).toString();
+    }
+
+    private static String restorePlaceholdersInOrder(String text) {
+        for (String[] placeholder : PLACEHOLDERS) {
+            text = text.replace(placeholder[0], placeholder[1]);
+        }
+        return text;
+    }
+
+    /**
+     * ChatGPT escapes quotes: {@code \"} and plain quotes become spaces, {@code \“} and
+     * {@code \”} lose their backslash.
+     */
+    private static String unescapeQuotes(String text) {
+        if (text.indexOf('"') < 0 && !text.contains("\\“") && !text.contains("\\”")) {
+            return text;
+        }
+        StringBuilder unescaped = new StringBuilder(text.length());
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < length) {
+                char next = text.charAt(i + 1);
+                if (next == '"' || next == '“' || next == '”') {
+                    unescaped.append(next == '"' ? ' ' : next);
+                    i++;
+                    continue;
+                }
+            }
+            unescaped.append(c == '"' ? ' ' : c);
+        }
+        return unescaped.toString();
+    }
+
+    private static String[] buildEncodings() {
+        char max = 0;
+        for (String[] placeholder : PLACEHOLDERS) {
+            max = (char) Math.max(max, placeholder[1].charAt(0));
+        }
+        String[] encodings = new String[max + 1];
+        for (String[] placeholder : PLACEHOLDERS) {
+            char c = placeholder[1].charAt(0);
+            if (DECODE_ONLY.indexOf(c) < 0) {
+                encodings[c] = placeholder[0];
+            }
+        }
+        return encodings;
+    }
+
+    private static TrieNode buildDecodings() {
+        TrieNode root = new TrieNode();
+        for (String[] placeholder : PLACEHOLDERS) {
+            TrieNode node = root;
+            for (char c : placeholder[0].toCharArray()) {
+                node = node.child(c);
+            }
+            node.replacement = placeholder[1];
+        }
+        return root;
+    }
+
+    /**
+     * Trie over the placeholder alphabet, {@code A-Z} and {@code _}.
+     */
+    private static final class TrieNode {
+        private final TrieNode[] children = new TrieNode[27];
+        private String replacement;
+
+        private TrieNode next(char c) {
+            int index = index(c);
+            return index < 0 ? null : children[index];
+        }
+
+        private TrieNode child(char c) {
+            int index = index(c);
+            if (children[index] == null) {
+                children[index] = new TrieNode();
+            }
+            return children[index];
+        }
+
+        private static int index(char c) {
+            if (c == '_') {
+                return 26;
+            }
+            return c >= 'A' && c <= 'Z' ? c - 'A' : -1;
+        }
+    }
+}
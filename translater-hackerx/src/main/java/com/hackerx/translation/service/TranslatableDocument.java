@@ -0,0 +1,196 @@
+package com.hackerx.translation.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * The translatable text and the highlights of a HackerX document, found in one walk over it.
+ *
+ * Every translated string is recorded as a slot pointing straight at the map entry or list
+ * element that holds it, so {@link #fill} writes the translations back by index, without a
+ * second walk or an iterator that has to stay in step with the first. OUTPUT data is never
+ * recorded, so it does not have to be set aside and restored around the translation.
+ *
+ * The walk keeps the rules of the lesson format: {@code translate_content: false} skips the
+ * next translatable key, {@code data} after {@code type: OUTPUT} is left alone, and the maps
+ * of a skipped {@code option} list are only searched for highlights.
+ */
+public final class TranslatableDocument {
+
+    static final Set<String> TRANSLATABLE_KEYS = Set.of(
+            "subject", "topic_name", "data", "question_text", "correct_explanation", "incorrect_explanation",
+            "option", "info_text", "tap_option", "rhs", "lhs", "key_title", "hint", "content", "description",
+            "title", "name", "subtopic_name");
+
+    private final List<Slot> slots = new ArrayList<>();
+    private final List<String> texts = new ArrayList<>();
+    private final List<HighlightResolver.Highlight> highlights = new ArrayList<>();
+
+    private TranslatableDocument() {
+    }
+
+    public static TranslatableDocument of(Map<String, Object> json) {
+        TranslatableDocument document = new TranslatableDocument();
+        document.visit(json, true);
+        return document;
+    }
+
+    /**
+     * The texts to translate, in document order.
+     */
+    public List<String> getTexts() {
+        return Collections.unmodifiableList(texts);
+    }
+
+    public List<HighlightResolver.Highlight> getHighlights() {
+        return Collections.unmodifiableList(highlights);
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Writes {@code translations}, in the order of {@link #getTexts()}, back into the document,
+     * each passed through {@code postprocess}. Slots beyond the end of a short list keep their
+     * source text.
+     */
+    public void fill(List<String> translations, UnaryOperator<String> postprocess) {
+        for (int i = 0; i < slots.size(); i++) {
+            slots.get(i).set(i < translations.size() ? postprocess.apply(translations.get(i)) : texts.get(i));
+        }
+    }
+
+    /**
+     * Copies of the highlights as they read now. Resolving the copies leaves the document alone,
+     * so it can be filled for another language meanwhile; {@link #restoreHighlights} puts their
+     * key titles back.
+     */
+    public List<HighlightResolver.Highlight> detachHighlights() {
+        List<HighlightResolver.Highlight> detached = new ArrayList<>(highlights.size());
+        for (HighlightResolver.Highlight highlight : highlights) {
+            Map<String, Object> owner = new HashMap<>();
+            owner.put("data", highlight.getTranslatedData());
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("key_title", highlight.getKeyTitle());
+            detached.add(new HighlightResolver.Highlight(owner, entry));
+        }
+        return detached;
+    }
+
+    /**
+     * Sets the key title of each highlight to that of its copy from {@link #detachHighlights()}.
+     */
+    public void restoreHighlights(List<HighlightResolver.Highlight> detached) {
+        for (int i = 0; i < highlights.size(); i++) {
+            String keyTitle = detached.get(i).getKeyTitle();
+            if (keyTitle != null) {
+                highlights.get(i).setKeyTitle(keyTitle);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void visit(Map<String, Object> json, boolean translate) {
+        if (json.containsKey("data") && json.get("highlight") instanceof List) {
+            for (Object highlight : (List<Object>) json.get("highlight")) {
+                if (highlight instanceof Map) {
+                    highlights.add(new HighlightResolver.Highlight(json, (Map<String, Object>) highlight));
+                }
+            }
+        }
+
+        boolean output = "OUTPUT".equals(json.get("type"));
+        boolean afterOutputType = false;
+        boolean translateNext = true;
+        for (Map.Entry<String, Object> entry : json.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+
+            if ("type".equals(key) && "OUTPUT".equals(value)) {
+                afterOutputType = true;
+                continue;
+            }
+
+            if (afterOutputType && "data".equals(key)) {
+                continue;
+            }
+
+            if ("translate_content".equals(key)) {
+                translateNext = !Boolean.FALSE.toString().equalsIgnoreCase(String.valueOf(value));
+                continue;
+            }
+
+            boolean listVisited = false;
+            if (TRANSLATABLE_KEYS.contains(key)) {
+                // OUTPUT data ahead of its type key is not translated either, but still uses up translate_content
+                if (translate && translateNext && !(output && "data".equals(key))) {
+                    if (value instanceof String) {
+                        if (!((String) value).isEmpty()) {
+                            add(new Slot(entry, null, -1), (String) value);
+                        }
+                    } else if (value instanceof List) {
+                        List<Object> list = (List<Object>) value;
+                        for (int i = 0; i < list.size(); i++) {
+                            Object item = list.get(i);
+                            if (item instanceof String) {
+                                if (!((String) item).isEmpty()) {
+                                    add(new Slot(null, list, i), (String) item);
+                                }
+                            } else if (item instanceof Map) {
+                                visit((Map<String, Object>) item, true);
+                            }
+                        }
+                        listVisited = true;
+                    }
+                }
+                translateNext = true; // Reset for the next key
+            }
+
+            if (value instanceof Map) {
+                visit((Map<String, Object>) value, translate);
+            } else if (value instanceof List && !listVisited) {
+                // The maps of a skipped option list are walked for their highlights only
+                boolean translateItems = translate && !"option".equals(key);
+                for (Object item : (List<Object>) value) {
+                    if (item instanceof Map) {
+                        visit((Map<String, Object>) item, translateItems);
+                    }
+                }
+            }
+        }
+    }
+
+    private void add(Slot slot, String text) {
+        slots.add(slot);
+        texts.add(text);
+    }
+
+    /**
+     * A map entry or a list element holding a translated string.
+     */
+    private static final class Slot {
+        private final Map.Entry<String, Object> entry;
+        private final List<Object> list;
+        private final int index;
+
+        Slot(Map.Entry<String, Object> entry, List<Object> list, int index) {
+            this.entry = entry;
+            this.list = list;
+            this.index = index;
+        }
+
+        void set(String text) {
+            if (entry != null) {
+                entry.setValue(text);
+            } else {
+                list.set(index, text);
+            }
+        }
+    }
+}
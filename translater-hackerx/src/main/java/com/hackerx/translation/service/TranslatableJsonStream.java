@@ -0,0 +1,315 @@
+package com.hackerx.translation.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * {@link TranslatableDocument} for documents too large to hold as a tree: the same rules,
+ * applied to the token stream of the document, which is read twice.
+ *
+ * {@link #scan} reads the document once and keeps only the strings that change, each with the
+ * ordinal of its string token, and the data and key titles of the highlights. {@link #write}
+ * reads it again and copies every token to the output, swapping in the translation of each
+ * recorded string. Heap use grows with the number of segments, not with the document.
+ */
+public final class TranslatableJsonStream {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final Set<String> TRANSLATABLE_KEYS = TranslatableDocument.TRANSLATABLE_KEYS;
+
+    /** The strings to rewrite, in document order. */
+    private final List<Leaf> leaves = new ArrayList<>();
+    private final List<Leaf[]> highlightLeaves = new ArrayList<>();
+    private final List<Map<String, Object>> highlightEntries = new ArrayList<>();
+    private long ordinal;
+
+    private TranslatableJsonStream() {
+    }
+
+    /**
+     * The first pass: finds the translatable strings and the highlights of the JSON object
+     * read from {@code input}.
+     */
+    public static TranslatableJsonStream scan(InputStream input) throws IOException {
+        TranslatableJsonStream stream = new TranslatableJsonStream();
+        try (JsonParser parser = JSON_FACTORY.createParser(input)) {
+            if (stream.next(parser) != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object");
+            }
+            stream.visitObject(parser, true, null);
+        }
+        return stream;
+    }
+
+    /**
+     * The texts to translate, in document order.
+     */
+    public List<String> getTexts() {
+        List<String> texts = new ArrayList<>();
+        for (Leaf leaf : leaves) {
+            if (leaf.translate) {
+                texts.add(leaf.source);
+            }
+        }
+        return texts;
+    }
+
+    /**
+     * Takes {@code translations}, in the order of {@link #getTexts()}, each passed through
+     * {@code postprocess}.
+     */
+    public void fill(List<String> translations, UnaryOperator<String> postprocess) {
+        int i = 0;
+        for (Leaf leaf : leaves) {
+            if (leaf.translate && i < translations.size()) {
+                leaf.result = postprocess.apply(translations.get(i++));
+            }
+        }
+    }
+
+    /**
+     * The highlights, pointing into the translated data; call after {@link #fill}. Their key
+     * titles are written as they are when {@link #write} is called.
+     */
+    public List<HighlightResolver.Highlight> getHighlights() {
+        highlightEntries.clear();
+        List<HighlightResolver.Highlight> highlights = new ArrayList<>(highlightLeaves.size());
+        for (Leaf[] pair : highlightLeaves) {
+            Map<String, Object> owner = new HashMap<>();
+            owner.put("data", pair[0].value());
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("key_title", pair[1].value());
+            highlightEntries.add(entry);
+            highlights.add(new HighlightResolver.Highlight(owner, entry));
+        }
+        return highlights;
+    }
+
+    /**
+     * The second pass: copies the document read from {@code input}, which must be the one
+     * scanned, to {@code output} with the translations in place.
+     */
+    public void write(InputStream input, OutputStream output) throws IOException {
+        for (int i = 0; i < highlightEntries.size(); i++) {
+            Object keyTitle = highlightEntries.get(i).get("key_title");
+            if (keyTitle instanceof String) {
+                highlightLeaves.get(i)[1].result = (String) keyTitle;
+            }
+        }
+
+        try (JsonParser parser = JSON_FACTORY.createParser(input);
+                JsonGenerator generator = JSON_FACTORY.createGenerator(output, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            long strings = 0;
+            int next = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.VALUE_STRING) {
+                    Leaf leaf = next < leaves.size() && leaves.get(next).ordinal == strings ? leaves.get(next++) : null;
+                    strings++;
+                    if (leaf != null) {
+                        generator.writeString(leaf.value());
+                        continue;
+                    }
+                }
+                if (token.isNumeric()) {
+                    // Numbers are copied as written, without a round trip through double
+                    generator.writeNumber(parser.getText());
+                } else {
+                    generator.copyCurrentEvent(parser);
+                }
+            }
+            if (next < leaves.size()) {
+                throw new IOException("The document changed between the two passes");
+            }
+        }
+    }
+
+    private void visitObject(JsonParser parser, boolean translate, List<Leaf> highlightTitles) throws IOException {
+        boolean afterOutputType = false;
+        boolean translateNext = true;
+        Leaf data = null;
+        List<Leaf> pendingData = new ArrayList<>();
+        List<Leaf> titles = null;
+
+        while (next(parser) == JsonToken.FIELD_NAME) {
+            String key = parser.currentName();
+            JsonToken token = next(parser);
+
+            if ("type".equals(key) && token == JsonToken.VALUE_STRING && "OUTPUT".equals(parser.getText())) {
+                afterOutputType = true;
+                // OUTPUT data ahead of its type key is not translated either
+                for (Leaf leaf : pendingData) {
+                    leaf.translate = false;
+                }
+                continue;
+            }
+
+            if (afterOutputType && "data".equals(key)) {
+                data = token == JsonToken.VALUE_STRING ? new Leaf(parser.getText(), -1) : null;
+                skip(parser, token);
+                continue;
+            }
+
+            if ("translate_content".equals(key)) {
+                String value = token.isScalarValue() ? parser.getText() : "";
+                translateNext = !Boolean.FALSE.toString().equalsIgnoreCase(value);
+                skip(parser, token);
+                continue;
+            }
+
+            boolean translateValue = false;
+            if (TRANSLATABLE_KEYS.contains(key)) {
+                translateValue = translate && translateNext;
+                translateNext = true; // Reset for the next key
+            }
+            List<Leaf> pending = "data".equals(key) ? pendingData : null;
+
+            if (token == JsonToken.VALUE_STRING) {
+                Leaf leaf = new Leaf(parser.getText(), ordinal - 1);
+                if (translateValue && !leaf.source.isEmpty()) {
+                    leaf.translate = true;
+                    record(leaf);
+                    if (pending != null) {
+                        pending.add(leaf);
+                    }
+                }
+                if ("data".equals(key)) {
+                    data = leaf;
+                }
+                if ("key_title".equals(key) && highlightTitles != null) {
+                    record(leaf);
+                    highlightTitles.add(leaf);
+                }
+            } else {
+                if ("data".equals(key)) {
+                    data = null;
+                }
+                if (token == JsonToken.START_OBJECT) {
+                    visitObject(parser, translate, null);
+                } else if (token == JsonToken.START_ARRAY) {
+                    if (translateValue) {
+                        visitTranslatableArray(parser, pending);
+                    } else {
+                        // The maps of a skipped option list are walked for their highlights only
+                        boolean highlight = "highlight".equals(key);
+                        if (highlight) {
+                            titles = new ArrayList<>();
+                        }
+                        visitArray(parser, translate && !"option".equals(key), highlight ? titles : null);
+                    }
+                }
+            }
+        }
+
+        if (data != null && titles != null) {
+            for (Leaf title : titles) {
+                highlightLeaves.add(new Leaf[] {data, title});
+            }
+        }
+    }
+
+    private void visitTranslatableArray(JsonParser parser, List<Leaf> pending) throws IOException {
+        JsonToken token;
+        while ((token = next(parser)) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.VALUE_STRING) {
+                Leaf leaf = new Leaf(parser.getText(), ordinal - 1);
+                if (!leaf.source.isEmpty()) {
+                    leaf.translate = true;
+                    record(leaf);
+                    if (pending != null) {
+                        pending.add(leaf);
+                    }
+                }
+            } else if (token == JsonToken.START_OBJECT) {
+                visitObject(parser, true, null);
+            } else {
+                skip(parser, token);
+            }
+        }
+    }
+
+    private void visitArray(JsonParser parser, boolean translate, List<Leaf> highlightTitles) throws IOException {
+        JsonToken token;
+        while ((token = next(parser)) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.START_OBJECT) {
+                visitObject(parser, translate, highlightTitles);
+            } else {
+                skip(parser, token);
+            }
+        }
+    }
+
+    /**
+     * Skips the value starting at {@code token}, still counting its strings.
+     */
+    private void skip(JsonParser parser, JsonToken token) throws IOException {
+        if (!token.isStructStart()) {
+            return;
+        }
+        int depth = 1;
+        while (depth > 0) {
+            JsonToken skipped = next(parser);
+            if (skipped == null) {
+                throw new IOException("Unexpected end of JSON");
+            }
+            if (skipped.isStructStart()) {
+                depth++;
+            } else if (skipped.isStructEnd()) {
+                depth--;
+            }
+        }
+    }
+
+    private JsonToken next(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.VALUE_STRING) {
+            ordinal++;
+        }
+        return token;
+    }
+
+    /**
+     * Adds {@code leaf} to the strings to rewrite, once, keeping them in document order.
+     */
+    private void record(Leaf leaf) {
+        if (!leaf.recorded) {
+            leaf.recorded = true;
+            leaves.add(leaf);
+        }
+    }
+
+    /**
+     * A string of the document, by the ordinal of its string token.
+     */
+    private static final class Leaf {
+        private final String source;
+        private final long ordinal;
+        private boolean translate;
+        private boolean recorded;
+        private String result;
+
+        Leaf(String source, long ordinal) {
+            this.source = source;
+            this.ordinal = ordinal;
+        }
+
+        String value() {
+            return result != null ? result : source;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.hackerx.translation.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+
+/**
+ * A translation submitted through the job API: its files, state, progress and, once done,
+ * its result. Progress comes from the job's {@link TranslationReport}.
+ */
+public class TranslationJob {
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+
+    private final String id;
+    private final String fileType;
+    private final String language;
+    private final String service;
+    private final int fileCount;
+    private final Instant createdAt = Instant.now();
+    private final TranslationReport report = new TranslationReport();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private volatile Result result;
+    private volatile CompletableFuture<?> future;
+    private volatile TranslationJobExecutor.Retention retention;
+
+    public TranslationJob(String id, String fileType, String language, String service, int fileCount) {
+        this.id = id;
+        this.fileType = fileType;
+        this.language = language;
+        this.service = service;
+        this.fileCount = fileCount;
+    }
+
+    void start(CompletableFuture<?> future) {
+        this.future = future;
+    }
+
+    void markRunning() {
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    void retain(TranslationJobExecutor.Retention retention) {
+        this.retention = retention;
+    }
+
+    /**
+     * Gives the memory held by the result back to the admission budget, once the job is purged.
+     */
+    void release() {
+        TranslationJobExecutor.Retention held = retention;
+        if (held != null) {
+            held.release();
+        }
+    }
+
+    /**
+     * The bytes of the result counted against the admission budget, 0 without a result.
+     */
+    long getRetainedBytes() {
+        TranslationJobExecutor.Retention held = retention;
+        return held != null ? held.getBytes() : 0;
+    }
+
+    void finish(Result result, Throwable failure) {
+        finishedAt = Instant.now();
+        if (failure == null) {
+            this.result = result;
+            status = Status.COMPLETED;
+        } else if (failure instanceof CancellationException) {
+            status = Status.CANCELLED;
+        } else {
+            error = failure.getMessage();
+            status = Status.FAILED;
+        }
+    }
+
+    /**
+     * Cancels the job and the provider calls it is waiting on. Returns whether it was still
+     * in progress.
+     */
+    public boolean cancel() {
+        CompletableFuture<?> running = future;
+        return running != null && running.cancel(true);
+    }
+
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public TranslationReport getReport() {
+        return report;
+    }
+
+    public Result getResult() {
+        return result;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("jobId", id);
+        map.put("status", status);
+        map.put("fileType", fileType);
+        map.put("language", language);
+        map.put("service", service);
+        map.put("files", fileCount);
+        map.put("createdAt", createdAt.toString());
+        map.put("startedAt", startedAt != null ? startedAt.toString() : null);
+        map.put("finishedAt", finishedAt != null ? finishedAt.toString() : null);
+
+        long total = report.getSegmentsTotal();
+        long done = Math.min(report.getSegmentsDone(), total);
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("segmentsTotal", total);
+        progress.put("segmentsDone", done);
+        progress.put("percent", total == 0 ? (isFinished() ? 100.0 : 0.0) : Math.round(1000.0 * done / total) / 10.0);
+        progress.put("calls", report.getCalls());
+        progress.put("dedupRatio", report.getDedupRatio());
+        progress.put("etaSeconds", etaSeconds(done, total));
+        map.put("progress", progress);
+
+        if (isFinished()) {
+            map.put("report", report.toMap());
+        }
+        if (error != null) {
+            map.put("error", error);
+        }
+        return map;
+    }
+
+    /**
+     * Remaining time at the rate segments have been done since the job started, or
+     * {@code null} while there is nothing to extrapolate from.
+     */
+    private Long etaSeconds(long done, long total) {
+        Instant started = startedAt;
+        if (isFinished()) {
+            return 0L;
+        }
+        if (started == null || done == 0 || total == 0) {
+            return null;
+        }
+        long elapsedMillis = Duration.between(started, Instant.now()).toMillis();
+        return elapsedMillis * (total - done) / done / 1000;
+    }
+
+    /**
+     * The translated output of a job, ready for download.
+     */
+    public static class Result {
+        private final byte[] content;
+        private final String contentType;
+        private final String fileName;
+
+        public Result(byte[] content, String contentType, String fileName) {
+            this.content = content;
+            this.contentType = contentType;
+            this.fileName = fileName;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+    }
+
+    /**
+     * One uploaded file, read in full before the request that submitted it returns.
+     */
+    public static class Upload {
+        private final String fileName;
+        private final byte[] content;
+
+        public Upload(String fileName, byte[] content) {
+            this.fileName = fileName;
+            this.content = content;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.hackerx.translation.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs translation jobs on a dedicated, bounded pool and decides which jobs the instance
+ * accepts at all.
+ *
+ * A job is admitted only while the number of jobs in progress and their estimated
+ * in-memory size stay under the configured limits; beyond that it is rejected with a
+ * {@link JobRejectedException}, which the controller turns into a 503 with
+ * {@code Retry-After}. An admitted job holds its place until its result future completes,
+ * not just while it runs on the pool, since most of its life is spent waiting for providers.
+ * The results that finished jobs keep in memory until they are downloaded or purged count
+ * against the same in-memory budget through their {@link Retention}.
+ */
+@Component
+public class TranslationJobExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TranslationJobExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+    private final int maxJobs;
+    private final long maxInMemoryBytes;
+    private final int memoryFactor;
+    private final long retryAfterSeconds;
+
+    private final AtomicInteger jobsInProgress = new AtomicInteger();
+    private final AtomicLong inMemoryBytes = new AtomicLong();
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public TranslationJobExecutor(@Value("${translation.jobs.threads:8}") int threads,
+            @Value("${translation.jobs.queue-capacity:32}") int queueCapacity,
+            @Value("${translation.jobs.max-jobs:32}") int maxJobs,
+            @Value("${translation.jobs.max-in-memory-bytes:268435456}") long maxInMemoryBytes,
+            @Value("${translation.jobs.memory-factor:8}") int memoryFactor,
+            @Value("${translation.jobs.retry-after-seconds:30}") long retryAfterSeconds) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "translation-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.maxJobs = maxJobs;
+        this.maxInMemoryBytes = maxInMemoryBytes;
+        this.memoryFactor = Math.max(1, memoryFactor);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Admits a job whose upload is {@code uploadBytes} long, or throws
+     * {@link JobRejectedException} if the instance is at capacity. The returned admission must
+     * be released once the job is done.
+     */
+    public Admission admit(long uploadBytes) {
+        long estimate = Math.max(0, uploadBytes) * memoryFactor;
+        if (jobsInProgress.incrementAndGet() > maxJobs) {
+            jobsInProgress.decrementAndGet();
+            throw reject("at most " + maxJobs + " jobs in progress");
+        }
+        long total = inMemoryBytes.addAndGet(estimate) + retainedBytes.get();
+        if (total > maxInMemoryBytes && total > estimate) {
+            // A single job larger than the budget is still let through when nothing else is running
+            inMemoryBytes.addAndGet(-estimate);
+            jobsInProgress.decrementAndGet();
+            throw reject("estimated in-memory size of the jobs over " + maxInMemoryBytes + " bytes");
+        }
+        admitted.incrementAndGet();
+        return new Admission(estimate);
+    }
+
+    /**
+     * Admits a job and runs {@code job} on the pool. The returned future completes with the
+     * job's result; the admission is released when it does.
+     */
+    public <T> CompletableFuture<T> submit(long uploadBytes, Futures.IOSupplier<T> job) {
+        Admission admission = admit(uploadBytes);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                CompletableFuture<T> translation = Futures.start(job);
+                Futures.propagateCancel(result, translation);
+                translation.whenComplete((value, failure) -> {
+                    if (failure != null) {
+                        result.completeExceptionally(Futures.unwrap(failure));
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            admission.release();
+            throw reject("job queue is full");
+        }
+        result.whenComplete((value, failure) -> admission.release());
+        return result;
+    }
+
+    /**
+     * Counts a finished job's result of {@code resultBytes} against the in-memory budget until
+     * the returned retention is released.
+     */
+    public Retention retain(long resultBytes) {
+        long bytes = Math.max(0, resultBytes);
+        retainedBytes.addAndGet(bytes);
+        return new Retention(bytes);
+    }
+
+    /**
+     * How many bytes of retained results must be released to admit a job whose upload is
+     * {@code uploadBytes} long, or 0 if it fits as is or would not fit even without them.
+     */
+    public long retainedBytesToFree(long uploadBytes) {
+        long running = inMemoryBytes.get() + Math.max(0, uploadBytes) * memoryFactor;
+        if (running > maxInMemoryBytes) {
+            return 0;
+        }
+        return Math.max(0, running + retainedBytes.get() - maxInMemoryBytes);
+    }
+
+    public int getJobsInProgress() {
+        return jobsInProgress.get();
+    }
+
+    public int getQueuedJobs() {
+        return executor.getQueue().size();
+    }
+
+    public long getInMemoryBytes() {
+        return inMemoryBytes.get();
+    }
+
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("jobsInProgress", jobsInProgress.get());
+        stats.put("maxJobs", maxJobs);
+        stats.put("queued", executor.getQueue().size());
+        stats.put("queueRemainingCapacity", executor.getQueue().remainingCapacity());
+        stats.put("runningOnPool", executor.getActiveCount());
+        stats.put("poolSize", executor.getPoolSize());
+        stats.put("estimatedInMemoryBytes", inMemoryBytes.get());
+        stats.put("retainedResultBytes", retainedBytes.get());
+        stats.put("maxInMemoryBytes", maxInMemoryBytes);
+        stats.put("admitted", admitted.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private JobRejectedException reject(String reason) {
+        rejected.incrementAndGet();
+        LOGGER.warn("Rejecting translation job: {}", reason);
+        return new JobRejectedException("Translation capacity exhausted: " + reason, retryAfterSeconds);
+    }
+
+    /**
+     * The place of one admitted job. Releasing it more than once has no effect.
+     */
+    public final class Admission {
+        private final long estimatedBytes;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Admission(long estimatedBytes) {
+            this.estimatedBytes = estimatedBytes;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                inMemoryBytes.addAndGet(-estimatedBytes);
+                jobsInProgress.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * The share of the in-memory budget held by one retained result. Releasing it more than
+     * once has no effect.
+     */
+    public final class Retention {
+        private final long bytes;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Retention(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                retainedBytes.addAndGet(-bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.hackerx.translation.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hackerx.translation.service.StageTimer.Stage;
+
+/**
+ * Runs translations as jobs that outlive the request that submitted them. A submitted job is
+ * admitted and run by the {@link TranslationJobExecutor}; clients poll its progress and
+ * download the result when it is done. Finished jobs are kept for
+ * {@code translation.jobs.result-ttl-minutes} and then purged.
+ *
+ * Jobs and their results live in this instance's heap only: they are lost on restart and
+ * unknown to any other instance. Deploy a single instance, or route every request for a job
+ * to the instance that took it (session affinity on the job ID), or a poll will get a 404.
+ * Retained results count against the {@link TranslationJobExecutor}'s in-memory budget; when
+ * they alone stand in the way of a new job, the oldest ones are purged early to admit it.
+ */
+@Service
+public class TranslationJobService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TranslationJobService.class);
+
+    private final TranslationService translationService;
+    private final TranslationJobExecutor jobExecutor;
+    private final TranslationMetrics metrics;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, TranslationJob> jobs = new ConcurrentHashMap<>();
+    private final Duration resultTtl;
+    private final int maxRetainedJobs;
+
+    public TranslationJobService(TranslationService translationService, TranslationJobExecutor jobExecutor,
+            TranslationMetrics metrics,
+            @Value("${translation.jobs.result-ttl-minutes:60}") long resultTtlMinutes,
+            @Value("${translation.jobs.max-retained:200}") int maxRetainedJobs) {
+        this.translationService = translationService;
+        this.jobExecutor = jobExecutor;
+        this.metrics = metrics;
+        this.resultTtl = Duration.ofMinutes(resultTtlMinutes);
+        this.maxRetainedJobs = maxRetainedJobs;
+    }
+
+    /**
+     * Submits the translation of {@code uploads} and returns the job at once. Throws
+     * {@link JobRejectedException} if the instance is at capacity.
+     */
+    public TranslationJob submit(List<TranslationJob.Upload> uploads, String fileType, String language,
+            String service) {
+        return submit(uploads, fileType, List.of(language), service);
+    }
+
+    public TranslationJob submit(List<TranslationJob.Upload> uploads, String fileType, List<String> languages,
+            String service) {
+        return submit(uploads, fileType, languages, service, false);
+    }
+
+    /**
+     * Submits the translation of {@code uploads} into each of {@code languages}; see
+     * {@link #translate(List, String, List, String, TranslationReport)}. With {@code failover}
+     * its calls may go to another provider while {@code service} is unhealthy.
+     */
+    public TranslationJob submit(List<TranslationJob.Upload> uploads, String fileType, List<String> languages,
+            String service, boolean failover) {
+        purgeExpired();
+        String language = String.join(",", languages);
+
+        long totalBytes = 0;
+        for (TranslationJob.Upload upload : uploads) {
+            totalBytes += upload.getContent().length;
+        }
+        makeRoomFor(totalBytes);
+        TranslationJob job = new TranslationJob(UUID.randomUUID().toString(), fileType, language, service,
+                uploads.size());
+        job.getReport().setFailoverAllowed(failover);
+
+        CompletableFuture<TranslationJob.Result> future = jobExecutor.submit(totalBytes, () -> {
+            job.markRunning();
+            return translate(uploads, fileType, languages, service, job.getReport());
+        });
+        job.start(future);
+        jobs.put(job.getId(), job);
+
+        future.whenComplete((result, failure) -> {
+            Throwable cause = failure == null ? null : Futures.unwrap(failure);
+            if (result != null) {
+                job.retain(jobExecutor.retain(result.getContent().length));
+            }
+            job.finish(result, cause);
+            metrics.recordJob(job.getStatus().name(), Duration.between(job.getCreatedAt(), job.getFinishedAt()));
+            if (cause == null) {
+                LOGGER.info("Job {} completed: {}", job.getId(), job.getReport().toMap());
+            } else {
+                LOGGER.warn("Job {} ended with {}: {}", job.getId(), job.getStatus(), cause.getMessage());
+            }
+        });
+        LOGGER.info("Submitted job {} with {} {} files to {} via {}", job.getId(), uploads.size(), fileType,
+                language, service);
+        return job;
+    }
+
+    /**
+     * The job with this ID, or {@code null} if it is unknown or has been purged.
+     */
+    public TranslationJob get(String id) {
+        purgeExpired();
+        return jobs.get(id);
+    }
+
+    /**
+     * Splits a comma-separated list of language codes such as {@code es,fr,de}, dropping blanks
+     * and repeats.
+     */
+    public static List<String> parseLanguages(String languages) {
+        Set<String> parsed = new LinkedHashSet<>();
+        for (String language : languages.split(",")) {
+            if (!language.isBlank()) {
+                parsed.add(language.trim());
+            }
+        }
+        return new ArrayList<>(parsed);
+    }
+
+    /**
+     * Translates {@code uploads} into each of {@code languages}. With one language the result is
+     * the translated file, or a zip of the translated files. With several, each upload is parsed
+     * and segmented once and its languages are translated concurrently; the result is a zip with
+     * a folder per language.
+     */
+    public CompletableFuture<TranslationJob.Result> translate(List<TranslationJob.Upload> uploads, String fileType,
+            List<String> languages, String service, TranslationReport report) throws IOException {
+        if (languages.size() > 1) {
+            return translateToLanguages(uploads, fileType, languages, service, report);
+        }
+        String language = languages.get(0);
+        if (uploads.size() == 1) {
+            TranslationJob.Upload upload = uploads.get(0);
+            return Futures.map(translateFile(upload, fileType, language, service, report),
+                    content -> new TranslationJob.Result(content, contentType(fileType), upload.getFileName()));
+        }
+
+        List<CompletableFuture<byte[]>> files = new ArrayList<>(uploads.size());
+        for (TranslationJob.Upload upload : uploads) {
+            files.add(translateFile(upload, fileType, language, service, report));
+        }
+        return Futures.map(Futures.allOf(files), contents -> {
+            StageTimer reassemble = StageTimer.start(Stage.REASSEMBLE, report);
+            ByteArrayOutputStream zip = new ByteArrayOutputStream();
+            try (ZipOutputStream zos = new ZipOutputStream(zip)) {
+                for (int i = 0; i < uploads.size(); i++) {
+                    zos.putNextEntry(new ZipEntry(uploads.get(i).getFileName()));
+                    zos.write(contents.get(i));
+                    zos.closeEntry();
+                }
+            }
+            reassemble.stop(uploads.size());
+            return new TranslationJob.Result(zip.toByteArray(), "application/octet-stream", "translated_files.zip");
+        });
+    }
+
+    private CompletableFuture<TranslationJob.Result> translateToLanguages(List<TranslationJob.Upload> uploads,
+            String fileType, List<String> languages, String service, TranslationReport report) throws IOException {
+        List<CompletableFuture<Map<String, byte[]>>> files = new ArrayList<>(uploads.size());
+        for (TranslationJob.Upload upload : uploads) {
+            files.add(translateFile(upload, fileType, languages, service, report));
+        }
+        return Futures.map(Futures.allOf(files), contents -> {
+            StageTimer reassemble = StageTimer.start(Stage.REASSEMBLE, report);
+            ByteArrayOutputStream zip = new ByteArrayOutputStream();
+            try (ZipOutputStream zos = new ZipOutputStream(zip)) {
+                for (String language : languages) {
+                    for (int i = 0; i < uploads.size(); i++) {
+                        zos.putNextEntry(new ZipEntry(language + "/" + uploads.get(i).getFileName()));
+                        zos.write(contents.get(i).get(language));
+                        zos.closeEntry();
+                    }
+                }
+            }
+            reassemble.stop(uploads.size() * languages.size());
+            return new TranslationJob.Result(zip.toByteArray(), "application/octet-stream", "translated_files.zip");
+        });
+    }
+
+    private CompletableFuture<Map<String, byte[]>> translateFile(TranslationJob.Upload upload, String fileType,
+            List<String> languages, String service, TranslationReport report) throws IOException {
+        if ("ndjson".equalsIgnoreCase(fileType)) {
+            String content = new String(upload.getContent(), StandardCharsets.UTF_8);
+            return translationService.translateNDJsonBatchAsync(content, languages, service, report);
+        }
+        if ("app-json".equalsIgnoreCase(fileType)) {
+            // A flat map of strings: parsed once, its values go to every language at once
+            Map<String, String> json = parse(upload, new TypeReference<Map<String, String>>() {}, report);
+            List<CompletableFuture<byte[]>> translations = new ArrayList<>(languages.size());
+            for (String language : languages) {
+                translations.add(Futures.map(translationService.translateAppJsonAsync(json, language, service, report),
+                        translated -> write(translated, report)));
+            }
+            return Futures.map(Futures.allOf(translations), contents -> {
+                Map<String, byte[]> outputs = new LinkedHashMap<>();
+                for (int i = 0; i < languages.size(); i++) {
+                    outputs.put(languages.get(i), contents.get(i));
+                }
+                return outputs;
+            });
+        }
+        Map<String, Object> json = parse(upload, new TypeReference<Map<String, Object>>() {}, report);
+        return translationService.translateJsonAsync(json, languages, service, report);
+    }
+
+    private CompletableFuture<byte[]> translateFile(TranslationJob.Upload upload, String fileType, String language,
+            String service, TranslationReport report) throws IOException {
+        if ("ndjson".equalsIgnoreCase(fileType)) {
+            String content = new String(upload.getContent(), StandardCharsets.UTF_8);
+            return Futures.map(translationService.translateNDJsonBatchAsync(content, language, service, report),
+                    results -> {
+                        StageTimer reassemble = StageTimer.start(Stage.REASSEMBLE, report);
+                        ByteArrayOutputStream output = new ByteArrayOutputStream();
+                        for (Map<String, Object> json : results) {
+                            output.write(objectMapper.writeValueAsBytes(json));
+                            output.write('\n');
+                        }
+                        reassemble.stop(results.size());
+                        return output.toByteArray();
+                    });
+        }
+        if ("app-json".equalsIgnoreCase(fileType)) {
+            Map<String, String> json = parse(upload, new TypeReference<Map<String, String>>() {}, report);
+            return Futures.map(translationService.translateAppJsonAsync(json, language, service, report),
+                    translated -> write(translated, report));
+        }
+        Map<String, Object> json = parse(upload, new TypeReference<Map<String, Object>>() {}, report);
+        return Futures.map(translationService.translateJsonAsync(json, language, service, report),
+                translated -> write(translated, report));
+    }
+
+    private <T> T parse(TranslationJob.Upload upload, TypeReference<T> type, TranslationReport report)
+            throws IOException {
+        StageTimer parse = StageTimer.start(Stage.PARSE, report);
+        T json = objectMapper.readValue(upload.getContent(), type);
+        parse.stop(1);
+        return json;
+    }
+
+    private byte[] write(Object json, TranslationReport report) throws IOException {
+        StageTimer reassemble = StageTimer.start(Stage.REASSEMBLE, report);
+        byte[] content = objectMapper.writeValueAsBytes(json);
+        reassemble.stop(1);
+        return content;
+    }
+
+    private static String contentType(String fileType) {
+        return "ndjson".equalsIgnoreCase(fileType) ? "application/x-ndjson" : "application/json";
+    }
+
+    /**
+     * Drops finished jobs older than the result TTL, then the oldest finished jobs beyond the
+     * number of jobs kept.
+     */
+    private void purgeExpired() {
+        Instant cutoff = Instant.now().minus(resultTtl);
+        jobs.values().stream()
+                .filter(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff))
+                .toList()
+                .forEach(this::remove);
+
+        int excess = jobs.size() - maxRetainedJobs;
+        if (excess > 0) {
+            finishedOldestFirst().stream()
+                    .limit(excess)
+                    .forEach(this::remove);
+        }
+    }
+
+    /**
+     * Purges the oldest finished jobs whose results keep a job of {@code uploadBytes} from being
+     * admitted. Nothing is purged if the job would be rejected anyway.
+     */
+    private void makeRoomFor(long uploadBytes) {
+        long toFree = jobExecutor.retainedBytesToFree(uploadBytes);
+        if (toFree <= 0) {
+            return;
+        }
+        int purged = 0;
+        for (TranslationJob job : finishedOldestFirst()) {
+            if (toFree <= 0) {
+                break;
+            }
+            if (job.getRetainedBytes() > 0) {
+                toFree -= job.getRetainedBytes();
+                remove(job);
+                purged++;
+            }
+        }
+        LOGGER.info("Purged {} finished jobs early to free memory for a new job", purged);
+    }
+
+    private List<TranslationJob> finishedOldestFirst() {
+        return jobs.values().stream()
+                .filter(TranslationJob::isFinished)
+                .sorted(Comparator.comparing(TranslationJob::getFinishedAt))
+                .toList();
+    }
+
+    private void remove(TranslationJob job) {
+        if (jobs.remove(job.getId(), job)) {
+            job.release();
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.hackerx.translation.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Two-tier translation memory. A size-bounded in-heap tier (W-TinyLFU) sits in front of
+ * an MVStore file on local disk that survives restarts.
+ *
+ * Entries are keyed by the hash of the normalized source text, the target language, the
+ * provider, its {@link MaskingMode} and {@link SystemPrompts#PROMPT_VERSION}, so a prompt
+ * change, or a provider switched to another masking, never serves translations produced by an
+ * older prompt.
+ */
+@Component
+public class TranslationMemory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TranslationMemory.class);
+    private static final String MAP_NAME = "translations";
+
+    /**
+     * Translates the segments that missed the memory. Must complete with one translation per input.
+     */
+    @FunctionalInterface
+    public interface MissTranslator {
+        CompletableFuture<List<String>> translate(List<String> misses) throws IOException;
+    }
+
+    private final boolean enabled;
+    private final String diskPath;
+    private final Cache<String, String> heapTier;
+    private MVStore store;
+    private MVMap<String, String> diskTier;
+
+    private final AtomicLong heapHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong repeatedSegments = new AtomicLong();
+
+    public TranslationMemory(@Value("${translation.memory.enabled:true}") boolean enabled,
+            @Value("${translation.memory.max-entries:100000}") long maxEntries,
+            @Value("${translation.memory.path:}") String diskPath) {
+        this.enabled = enabled;
+        this.diskPath = diskPath;
+        this.heapTier = Caffeine.newBuilder().maximumSize(maxEntries).build();
+    }
+
+    @PostConstruct
+    public void open() {
+        if (!enabled || diskPath == null || diskPath.isBlank()) {
+            LOGGER.info("Translation memory disk tier disabled, using heap tier only");
+            return;
+        }
+        try {
+            Path path = Paths.get(diskPath).toAbsolutePath();
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            store = new MVStore.Builder().fileName(path.toString()).compress().open();
+            diskTier = store.openMap(MAP_NAME);
+            LOGGER.info("Opened translation memory at {} with {} entries", path, diskTier.size());
+        } catch (Exception e) {
+            LOGGER.warn("Could not open translation memory at {}, using heap tier only: {}", diskPath, e.getMessage());
+            store = null;
+            diskTier = null;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (store != null && !store.isClosed()) {
+            store.close();
+        }
+    }
+
+    /**
+     * Returns the stored translation of {@code text}, or {@code null} if there is none.
+     */
+    public String get(String text, String language, String provider, MaskingMode masking) {
+        if (!enabled) {
+            return null;
+        }
+        String key = key(text, language, provider, masking);
+        String translation = heapTier.getIfPresent(key);
+        if (translation != null) {
+            heapHits.incrementAndGet();
+            return translation;
+        }
+        if (diskTier != null) {
+            translation = diskTier.get(key);
+            if (translation != null) {
+                diskHits.incrementAndGet();
+                heapTier.put(key, translation);
+                return translation;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String text, String language, String provider, MaskingMode masking, String translation) {
+        if (!enabled || translation == null || translation.isEmpty()) {
+            return;
+        }
+        String key = key(text, language, provider, masking);
+        heapTier.put(key, translation);
+        if (diskTier != null) {
+            diskTier.put(key, translation);
+        }
+        writes.incrementAndGet();
+    }
+
+    /**
+     * Serves every segment it can from the memory and hands only the misses to
+     * {@code translator}. New translations are stored before the future completes with the
+     * merged list, in input order.
+     */
+    public CompletableFuture<List<String>> translateThrough(List<String> texts, String language, String provider,
+            MaskingMode masking, MissTranslator translator) {
+        return translateThrough(texts, language, provider, masking, null, translator);
+    }
+
+    /**
+     * Same as {@link #translateThrough(List, String, String, MaskingMode, MissTranslator)}, counting the
+     * segments, repeats and memory hits in {@code report}; segments that {@code report} lists
+     * as failed keep their source text and are not stored.
+     *
+     * Segments that repeat within {@code texts} once normalized, such as option labels or a
+     * shared hint, are looked up and translated once and the translation is copied to every
+     * repeat. This is done whether or not the memory is enabled.
+     */
+    public CompletableFuture<List<String>> translateThrough(List<String> texts, String language, String provider,
+            MaskingMode masking, TranslationReport report, MissTranslator translator) {
+        if (report != null) {
+            report.recordSegmentsTotal(texts.size());
+        }
+
+        Map<String, Integer> uniqueIndices = new HashMap<>();
+        List<String> uniqueTexts = new ArrayList<>();
+        int[] slots = new int[texts.size()];
+        for (int i = 0; i < texts.size(); i++) {
+            Integer index = uniqueIndices.putIfAbsent(normalize(texts.get(i)), uniqueTexts.size());
+            if (index == null) {
+                index = uniqueTexts.size();
+                uniqueTexts.add(texts.get(i));
+            }
+            slots[i] = index;
+        }
+        int repeats = texts.size() - uniqueTexts.size();
+        if (repeats == 0) {
+            return translateUnique(texts, language, provider, masking, report, translator);
+        }
+
+        repeatedSegments.addAndGet(repeats);
+        if (report != null) {
+            report.recordRepeatedSegments(repeats);
+        }
+        LOGGER.info("{} of {} segments repeat within the job and are translated once", repeats, texts.size());
+        CompletableFuture<List<String>> unique = translateUnique(uniqueTexts, language, provider, masking, report,
+                translator);
+        return Futures.map(unique, translated -> {
+            if (translated.size() != uniqueTexts.size()) {
+                throw new IOException("Expected " + uniqueTexts.size() + " translations but got " + translated.size());
+            }
+            List<String> results = new ArrayList<>(texts.size());
+            for (int slot : slots) {
+                results.add(translated.get(slot));
+            }
+            if (report != null) {
+                report.recordSegmentsDone(repeats);
+            }
+            return results;
+        });
+    }
+
+    private CompletableFuture<List<String>> translateUnique(List<String> texts, String language, String provider,
+            MaskingMode masking, TranslationReport report, MissTranslator translator) {
+        if (!enabled || texts.isEmpty()) {
+            return Futures.start(() -> translator.translate(texts));
+        }
+
+        List<String> results = new ArrayList<>(texts.size());
+        List<String> missTexts = new ArrayList<>();
+        List<Integer> missIndices = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String cached = get(texts.get(i), language, provider, masking);
+            results.add(cached);
+            if (cached == null) {
+                missTexts.add(texts.get(i));
+                missIndices.add(i);
+            }
+        }
+
+        if (report != null) {
+            report.recordSegmentsDone(texts.size() - missTexts.size());
+        }
+        if (missTexts.isEmpty()) {
+            LOGGER.info("All {} segments served from translation memory", texts.size());
+            return CompletableFuture.completedFuture(results);
+        }
+        if (missTexts.size() < texts.size()) {
+            LOGGER.info("Translation memory served {} of {} segments", texts.size() - missTexts.size(), texts.size());
+        }
+
+        return Futures.map(Futures.start(() -> translator.translate(missTexts)), translated -> {
+            if (translated.size() != missTexts.size()) {
+                throw new IOException("Expected " + missTexts.size() + " translations but got " + translated.size());
+            }
+            for (int i = 0; i < translated.size(); i++) {
+                String translation = translated.get(i);
+                results.set(missIndices.get(i), translation);
+                boolean failed = report != null && report.isFailed(missTexts.get(i));
+                if (!failed && !TranslationService.SAFETY_BLOCKED_TEXT.equals(translation)) {
+                    put(missTexts.get(i), language, provider, masking, translation);
+                }
+            }
+            return results;
+        });
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("heapHits", heapHits.get());
+        stats.put("diskHits", diskHits.get());
+        stats.put("misses", misses.get());
+        stats.put("writes", writes.get());
+        stats.put("repeatedSegments", repeatedSegments.get());
+        stats.put("heapEntries", heapTier.estimatedSize());
+        stats.put("diskEntries", diskTier != null ? (long) diskTier.size() : 0L);
+        return stats;
+    }
+
+    public double hitRatio() {
+        long hits = heapHits.get() + diskHits.get();
+        long total = hits + misses.get();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * Source text as it is compared in the memory: NFC normalized. Leading and trailing
+     * whitespace is kept, since the prompts carry it over into the translation; stripping it
+     * would hand the newlines of whichever variant came first to every other one.
+     */
+    public static String normalize(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFC);
+    }
+
+    static String key(String text, String language, String provider, MaskingMode masking) {
+        return sha256(normalize(text)) + ':' + language.toLowerCase(Locale.ROOT) + ':'
+                + provider.toLowerCase(Locale.ROOT) + ':' + masking.name() + ':' + SystemPrompts.PROMPT_VERSION;
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hexString = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hexString.append(String.format("%02x", b));
+            }
+            return hexString.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.hackerx.translation.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * The Micrometer meters of the translation pipeline, scraped from {@code /actuator/prometheus}.
+ * Endpoint timings are Spring's own {@code http.server.requests}; the gauges of the job pool and
+ * the translation memory are bound in {@link com.hackerx.translation.config.MetricsConfig}.
+ *
+ * Every meter but the job timer is tagged with the provider. Provider call timers, batch sizes
+ * and job durations publish histograms, so percentiles can be aggregated across instances.
+ */
+@Component
+public class TranslationMetrics {
+
+    private final MeterRegistry registry;
+
+    public TranslationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * One HTTP exchange with a provider, from the moment its dispatcher sends it until the
+     * response headers are in; {@code status} is the HTTP status, or 0 if no response came.
+     */
+    public void recordProviderCall(String provider, int status, long nanos) {
+        Timer.builder("translation.provider.requests")
+                .description("HTTP calls to translation providers")
+                .tag("provider", provider)
+                .tag("status", status == 0 ? "IO_ERROR" : String.valueOf(status))
+                .tag("outcome", outcome(status))
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordBatchSize(String provider, int segments) {
+        DistributionSummary.builder("translation.batch.segments")
+                .description("Segments per provider batch")
+                .baseUnit("segments")
+                .tag("provider", provider)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(segments);
+    }
+
+    /**
+     * Segments translated by provider calls, not counting translation memory hits.
+     */
+    public void recordSegments(String provider, String language, int segments) {
+        counter("translation.segments", "Segments translated by a provider", provider, "language", language)
+                .increment(segments);
+    }
+
+    /**
+     * Tokens from the {@code usage} of an OpenAI reply or the {@code usageMetadata} of a
+     * Gemini reply; other replies are ignored.
+     */
+    @SuppressWarnings("unchecked")
+    public void recordUsage(String provider, Map<String, Object> responseBody) {
+        Object usage = responseBody.get("usage");
+        if (usage instanceof Map) {
+            recordTokens(provider, "prompt", ((Map<String, Object>) usage).get("prompt_tokens"));
+            recordTokens(provider, "completion", ((Map<String, Object>) usage).get("completion_tokens"));
+            return;
+        }
+        Object usageMetadata = responseBody.get("usageMetadata");
+        if (usageMetadata instanceof Map) {
+            recordTokens(provider, "prompt", ((Map<String, Object>) usageMetadata).get("promptTokenCount"));
+            recordTokens(provider, "completion", ((Map<String, Object>) usageMetadata).get("candidatesTokenCount"));
+        }
+    }
+
+    /**
+     * A fallback from the normal path: {@code recovery} of the segments missing from a batch
+     * reply, or {@code failover} to another provider.
+     */
+    public void recordFallback(String provider, String type) {
+        counter("translation.fallbacks", "Fallbacks from the normal translation path", provider, "type", type)
+                .increment();
+    }
+
+    /**
+     * A reply that did not hold one translation per segment sent.
+     */
+    public void recordCountMismatch(String provider) {
+        counter("translation.count.mismatches", "Replies without one translation per segment", provider, null, null)
+                .increment();
+    }
+
+    /**
+     * A reply refused by the provider's safety filters; {@code call} is {@code batch} or
+     * {@code segment}.
+     */
+    public void recordSafetyBlock(String provider, String call) {
+        counter("translation.safety.blocks", "Replies blocked by safety filters", provider, "call", call)
+                .increment();
+    }
+
+    /**
+     * A job of the job API, from submission until it finished with {@code status}.
+     */
+    public void recordJob(String status, Duration duration) {
+        Timer.builder("translation.jobs")
+                .description("Translation jobs from submission to result")
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(duration);
+    }
+
+    private void recordTokens(String provider, String type, Object tokens) {
+        if (tokens instanceof Number) {
+            counter("translation.tokens", "Tokens billed by the provider", provider, "type", type)
+                    .increment(((Number) tokens).doubleValue());
+        }
+    }
+
+    private Counter counter(String name, String description, String provider, String tag, String value) {
+        Counter.Builder builder = Counter.builder(name).description(description).tag("provider", provider);
+        if (tag != null) {
+            builder.tag(tag, value);
+        }
+        return builder.register(registry);
+    }
+
+    private static String outcome(int status) {
+        if (status == 0) {
+            return "IO_ERROR";
+        }
+        if (status == 429) {
+            return "RATE_LIMITED";
+        }
+        if (status >= 500) {
+            return "SERVER_ERROR";
+        }
+        return status >= 400 ? "CLIENT_ERROR" : "SUCCESS";
+    }
+}
@@ -0,0 +1,289 @@
+package com.hackerx.translation.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * What happened while translating one job: progress, batch calls made, recoveries and the
+ * segments that could not be translated. Shared by every thread working on the job, it also
+ * carries whether the caller lets the job fail over to another provider.
+ *
+ * The time spent in each {@link StageTimer.Stage} is summed over the job. Stages of windows and
+ * languages in flight together overlap, so the sum can exceed the job's wall time.
+ */
+public class TranslationReport {
+
+    /** Response header carrying {@link #getServerTiming()}. */
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    private final AtomicLong segmentsTotal = new AtomicLong();
+    private final AtomicLong segmentsDone = new AtomicLong();
+    private final AtomicLong repeatedSegments = new AtomicLong();
+    private final AtomicInteger segmentCalls = new AtomicInteger();
+    private final AtomicInteger batchCalls = new AtomicInteger();
+    private final AtomicInteger recoveryCalls = new AtomicInteger();
+    private final AtomicInteger failovers = new AtomicInteger();
+    private final List<Recovery> recoveries = Collections.synchronizedList(new ArrayList<>());
+    private final List<SegmentError> segmentErrors = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> failedSources = ConcurrentHashMap.newKeySet();
+    private final Set<String> blockedSources = ConcurrentHashMap.newKeySet();
+    private volatile boolean failoverAllowed;
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong lastStageEndNanos = new AtomicLong(startNanos);
+    private final AtomicLongArray stageNanos = new AtomicLongArray(StageTimer.Stage.values().length);
+
+    public void recordSegmentsTotal(long count) {
+        segmentsTotal.addAndGet(count);
+    }
+
+    public void recordSegmentsDone(long count) {
+        segmentsDone.addAndGet(count);
+    }
+
+    /**
+     * Records segments that repeat an earlier segment of the job and are not sent again.
+     */
+    public void recordRepeatedSegments(long count) {
+        repeatedSegments.addAndGet(count);
+    }
+
+    public void recordSegmentCall() {
+        segmentCalls.incrementAndGet();
+    }
+
+    public void recordBatchCall() {
+        batchCalls.incrementAndGet();
+    }
+
+    /**
+     * Lets the job's calls go to another provider while the one it chose is unhealthy.
+     */
+    public void setFailoverAllowed(boolean failoverAllowed) {
+        this.failoverAllowed = failoverAllowed;
+    }
+
+    public boolean isFailoverAllowed() {
+        return failoverAllowed;
+    }
+
+    /**
+     * Records a call sent to another provider than the one the job chose.
+     */
+    public void recordFailover() {
+        failovers.incrementAndGet();
+    }
+
+    /**
+     * Adds {@code nanos} spent in {@code stage}, ending now.
+     */
+    public void recordStage(StageTimer.Stage stage, long nanos) {
+        stageNanos.addAndGet(stage.ordinal(), nanos);
+        lastStageEndNanos.accumulateAndGet(System.nanoTime(), Math::max);
+    }
+
+    public long getStageNanos(StageTimer.Stage stage) {
+        return stageNanos.get(stage.ordinal());
+    }
+
+    /**
+     * The stages the job spent time in, in milliseconds, as a {@code Server-Timing} header
+     * value such as {@code parse;dur=3.1, provider;dur=5210.4, total;dur=5290.0}. The total runs
+     * from the start of the job to the end of its last stage.
+     */
+    public String getServerTiming() {
+        StringBuilder timing = new StringBuilder();
+        for (StageTimer.Stage stage : StageTimer.Stage.values()) {
+            long nanos = getStageNanos(stage);
+            if (nanos > 0) {
+                timing.append(stage.label()).append(";dur=").append(millis(nanos)).append(", ");
+            }
+        }
+        return timing.append("total;dur=").append(millis(lastStageEndNanos.get() - startNanos)).toString();
+    }
+
+    public Recovery startRecovery(String service, int batchSize, int failedSegments) {
+        Recovery recovery = new Recovery(service, batchSize, failedSegments);
+        recoveries.add(recovery);
+        return recovery;
+    }
+
+    /**
+     * Records a segment that keeps its source text because every attempt to translate it failed.
+     */
+    public void recordSegmentError(String sourceText, String reason) {
+        segmentErrors.add(new SegmentError(sourceText, reason));
+        failedSources.add(sourceText);
+    }
+
+    /**
+     * Records a segment the provider refused to translate on safety grounds.
+     */
+    public void recordSafetyBlock(String sourceText) {
+        blockedSources.add(sourceText);
+    }
+
+    public boolean isSafetyBlocked(String sourceText) {
+        return blockedSources.contains(sourceText);
+    }
+
+    /**
+     * Whether {@code sourceText} was left untranslated, in which case it must not be stored
+     * in the translation memory.
+     */
+    public boolean isFailed(String sourceText) {
+        return failedSources.contains(sourceText);
+    }
+
+    public long getSegmentsTotal() {
+        return segmentsTotal.get();
+    }
+
+    public long getSegmentsDone() {
+        return segmentsDone.get();
+    }
+
+    public long getRepeatedSegments() {
+        return repeatedSegments.get();
+    }
+
+    /**
+     * Share of the segments that repeated an earlier one and cost no provider work.
+     */
+    public double getDedupRatio() {
+        long total = segmentsTotal.get();
+        return total == 0 ? 0.0 : Math.round(repeatedSegments.get() * 1000.0 / total) / 1000.0;
+    }
+
+    /**
+     * Provider calls made so far, of every kind.
+     */
+    public int getCalls() {
+        return segmentCalls.get() + batchCalls.get() + recoveryCalls.get();
+    }
+
+    public int getBatchCalls() {
+        return batchCalls.get();
+    }
+
+    public int getRecoveryCalls() {
+        return recoveryCalls.get();
+    }
+
+    public int getFailovers() {
+        return failovers.get();
+    }
+
+    public List<SegmentError> getSegmentErrors() {
+        synchronized (segmentErrors) {
+            return new ArrayList<>(segmentErrors);
+        }
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("segmentsTotal", segmentsTotal.get());
+        map.put("segmentsDone", segmentsDone.get());
+        map.put("repeatedSegments", repeatedSegments.get());
+        map.put("dedupRatio", getDedupRatio());
+        map.put("segmentCalls", segmentCalls.get());
+        map.put("batchCalls", batchCalls.get());
+        map.put("recoveryCalls", recoveryCalls.get());
+        map.put("failovers", failovers.get());
+        Map<String, Object> timings = new LinkedHashMap<>();
+        for (StageTimer.Stage stage : StageTimer.Stage.values()) {
+            timings.put(stage.label() + "Ms", Double.valueOf(millis(getStageNanos(stage))));
+        }
+        map.put("timings", timings);
+        List<Map<String, Object>> recoveryList = new ArrayList<>();
+        synchronized (recoveries) {
+            for (Recovery recovery : recoveries) {
+                recoveryList.add(recovery.toMap());
+            }
+        }
+        map.put("recoveries", recoveryList);
+        List<Map<String, Object>> errorList = new ArrayList<>();
+        for (SegmentError error : getSegmentErrors()) {
+            errorList.add(Map.of("source", error.getSourceText(), "error", error.getReason()));
+        }
+        map.put("segmentErrors", errorList);
+        return map;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0);
+    }
+
+    /**
+     * One recovery of a failed batch and the calls it cost.
+     */
+    public class Recovery {
+        private final String service;
+        private final int batchSize;
+        private final int failedSegments;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger unrecovered = new AtomicInteger();
+
+        private Recovery(String service, int batchSize, int failedSegments) {
+            this.service = service;
+            this.batchSize = batchSize;
+            this.failedSegments = failedSegments;
+        }
+
+        public void recordCall() {
+            calls.incrementAndGet();
+            recoveryCalls.incrementAndGet();
+        }
+
+        public void recordUnrecovered() {
+            unrecovered.incrementAndGet();
+        }
+
+        public int getCalls() {
+            return calls.get();
+        }
+
+        public int getUnrecovered() {
+            return unrecovered.get();
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("service", service);
+            map.put("batchSize", batchSize);
+            map.put("failedSegments", failedSegments);
+            map.put("calls", calls.get());
+            map.put("unrecovered", unrecovered.get());
+            return map;
+        }
+    }
+
+    /**
+     * A segment that kept its source text, with the reason it could not be translated.
+     */
+    public static class SegmentError {
+        private final String sourceText;
+        private final String reason;
+
+        public SegmentError(String sourceText, String reason) {
+            this.sourceText = sourceText;
+            this.reason = reason;
+        }
+
+        public String getSourceText() {
+            return sourceText;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+}
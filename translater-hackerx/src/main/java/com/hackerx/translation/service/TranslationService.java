@@ -1,179 +1,78 @@
 package com.hackerx.translation.service;
 
-import java.io.FileInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
 import org.slf4j.Logger; 
 import org.slf4j.LoggerFactory;
-import javax.annotation.PostConstruct;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
-import java.util.UUID;
-import java.util.regex.Pattern;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.auth.oauth2.GoogleCredentials;
-import com.google.cloud.aiplatform.v1.HarmCategory;
-import com.google.cloud.aiplatform.v1.SafetySetting.HarmBlockThreshold;
-import com.google.cloud.translate.Translate;
-import com.google.cloud.translate.TranslateOptions;
-import com.hackerx.translation.config.CustomSafetySetting;
-
-import okhttp3.HttpUrl;
-import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.RequestBody;
-import okhttp3.Response;
+import com.hackerx.translation.service.StageTimer.Stage;
+import com.hackerx.translation.service.provider.ProviderCapabilities;
+import com.hackerx.translation.service.provider.ProviderRouter;
+import com.hackerx.translation.service.provider.RequestHedger;
+import com.hackerx.translation.service.provider.TranslationProvider;
+import com.hackerx.translation.service.provider.TranslationProviderRegistry;
 
 @Service
 public class TranslationService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TranslationService.class);
 
-    @Value("${openai.api.key}")
-    private String openaiApiKey;
+    /** Returned by Gemini in place of a translation when the response was blocked. */
+    public static final String SAFETY_BLOCKED_TEXT = "Translation blocked due to safety filters.";
 
-    @Value("${gemini.api.key}")
-    private String geminiApiKey;
+    private static final Pattern REPEATED_QUESTION_MARKS = Pattern.compile("\\?{2,}");
 
-    @Value("${gemini.api.url}")
-    private String geminiApiUrl;
+    @Value("${translation.ndjson.window-size:50}")
+    private int ndjsonWindowSize;
 
-    @Value("${google.cloud.credentials.file-path}")
-    private String googleCredentialsFilePath;
-
-    private Translate translate;
-    private final OkHttpClient httpClient;
+    private final TranslationProviderRegistry providerRegistry;
+    private final RequestHedger requestHedger;
+    private final ProviderRouter providerRouter;
     private final ObjectMapper objectMapper;
-    private String targetLanguage;
-    private List<String> outputDataList = new ArrayList<>();
-
-    public TranslationService() {
-    this.httpClient = new OkHttpClient.Builder()
-            .connectTimeout(500, TimeUnit.SECONDS)
-            .writeTimeout(500, TimeUnit.SECONDS)
-            .readTimeout(500, TimeUnit.SECONDS)
-            .build();
+    private final TranslationMemory translationMemory;
+    private final BatchPacker batchPacker;
+    private final NDJsonCheckpointJournal checkpointJournal;
+    private final HighlightResolver highlightResolver;
+    private final TranslationMetrics metrics;
+
+    public TranslationService(TranslationMemory translationMemory, BatchPacker batchPacker,
+            TranslationProviderRegistry providerRegistry, RequestHedger requestHedger, ProviderRouter providerRouter,
+            NDJsonCheckpointJournal checkpointJournal, HighlightResolver highlightResolver,
+            TranslationMetrics metrics) {
+    this.providerRegistry = providerRegistry;
+    this.requestHedger = requestHedger;
+    this.providerRouter = providerRouter;
+    this.checkpointJournal = checkpointJournal;
+    this.highlightResolver = highlightResolver;
+    this.metrics = metrics;
     // Initialize objectMapper only once
     this.objectMapper = new ObjectMapper();
-}
-
-    @PostConstruct
-    public void initialize() throws IOException {
-        GoogleCredentials credentials = GoogleCredentials.fromStream(new FileInputStream(googleCredentialsFilePath))
-                .createScoped(List.of("https://www.googleapis.com/auth/cloud-platform"));
-        this.translate = TranslateOptions.newBuilder().setCredentials(credentials).build().getService();
-    }
-
-    public String translateTextWithGemini(String text, String targetLanguage) throws IOException {
-        if (text.isEmpty()) {
-            return text;
-        }
-        text = TextPreprocessor.preprocessText(text, "Gemini");
-
-        String requestBody = String.format(
-                "{\"contents\":[{\"parts\":[{\"text\":\"JUST GIVE TRANSLATED TEXT IN OUTPUT,NOTHING ELSE ,DONT ADD ANY EXTRA CHARACTERS OR SPECIAL CHARACTERS(keep weblinks as they are)You are a highly skilled translation model specializing in translating technical educational content. "
-                        + "The following text contains educational material for an online learning platform called HackerX. "
-                        + "HackerX helps users learn ethical hacking through real-life examples, Python code, and bits of code. "
-                        + "Currently, the tutorials are only available in English, and we need to translate them into various languages "
-                        + "to make the content accessible to a broader audience. "
-                        + "Your task is to translate the following text into the specified language, ensuring the following guidelines are strictly followed:\\n"
-                        + "1. Maintain the original context and meaning of the text.\\n"
-                        + "2. Preserve any placeholders in the format '__XXXX__' and ensure they are appropriately placed in the translated text.\\n"
-                        + "3. Handle special characters, escape sequences, and formatting marks correctly to avoid any loss of information or formatting issues.\\n"
-                        + "4. Translate technical terms accurately and consistently, referring to common terminology in the target language.\\n"
-                        + "5. Ensure the translated text is clear, natural, and grammatically correct in the target language.\\n"
-                        + "6. Do not include any gibberish or nonsensical content in the translation.\\n"
-                        + "7. If any text seems out of context or unclear, translate it to the best of your ability while preserving the original intent,placeholders are supposed to be postprocessed by the backend,so please dont try to translate or do anything with placeholders which are surrounded by two underscores for example (__DOT__ , __COMMA__)Dont try to translate these.\\n"
-                        + "Translate the following text to %s: %s\"}]}],\"safetySettings\": %s}",
-                targetLanguage, text, objectMapper.writeValueAsString(getSafetySettings()));
-
-        HttpUrl.Builder urlBuilder = HttpUrl.parse(geminiApiUrl).newBuilder();
-        urlBuilder.addQueryParameter("key", geminiApiKey);
-
-        Request request = new Request.Builder().url(urlBuilder.build())
-                .post(RequestBody.create(requestBody, MediaType.parse("application/json"))).build();
-
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Unexpected code " + response);
-            }
-
-            String responseBodyStr = response.body().string();
-
-            Map<String, Object> responseBody = objectMapper.readValue(responseBodyStr, Map.class);
-            List<Map<String, Object>> candidates = (List<Map<String, Object>>) responseBody.get("candidates");
-            if (candidates != null && !candidates.isEmpty()) {
-                Map<String, Object> candidate = candidates.get(0);
-                Map<String, Object> content = (Map<String, Object>) candidate.get("content");
-                if (content != null) {
-                    List<Map<String, Object>> parts = (List<Map<String, Object>>) content.get("parts");
-                    if (parts != null && !parts.isEmpty()) {
-                        String translatedText = (String) parts.get(0).get("text");
-                        if (translatedText != null) {
-                            return TextPreprocessor.postprocessText(translatedText.strip(), "Gemini", "Gemini");
-                        }
-                    }
-                }
-                String finishReason = (String) candidate.get("finishReason");
-                if ("SAFETY".equals(finishReason)) {
-                    return "Translation blocked due to safety filters.";
-                }
-            }
-            throw new IOException("No translated text found in the response");
-        }
-    }
-
-    private List<CustomSafetySetting> getSafetySettings() {
-        return List.of(
-                new CustomSafetySetting(HarmCategory.HARM_CATEGORY_SEXUALLY_EXPLICIT.name(),
-                        HarmBlockThreshold.BLOCK_NONE.name()),
-                new CustomSafetySetting(HarmCategory.HARM_CATEGORY_HATE_SPEECH.name(),
-                        HarmBlockThreshold.BLOCK_NONE.name()),
-                new CustomSafetySetting(HarmCategory.HARM_CATEGORY_HARASSMENT.name(),
-                        HarmBlockThreshold.BLOCK_NONE.name()),
-                new CustomSafetySetting(HarmCategory.HARM_CATEGORY_DANGEROUS_CONTENT.name(),
-                        HarmBlockThreshold.BLOCK_NONE.name()));
-    }
-
-    public String translateTextWithChatGPT(String text, String targetLanguage) throws IOException {
-    if (text.isEmpty()) {
-        return text;
-    }
-    System.out.println("Received in translateTextWithChatGPT");
-
-    String systemPrompt = SystemPrompts.getChatGPTTranslationPrompt(targetLanguage, text);
-
-    String requestBody = objectMapper.writeValueAsString(Map.of("model", "gpt-4o-mini-2024-07-18", "messages",
-            List.of(Map.of("role", "system", "content", systemPrompt), Map.of("role", "user", "content", text))));
-
-    Request request = new Request.Builder().url("https://api.openai.com/v1/chat/completions")
-            .post(RequestBody.create(requestBody, MediaType.parse("application/json")))
-            .addHeader("Authorization", "Bearer " + openaiApiKey).build();
-
-    try (Response response = httpClient.newCall(request).execute()) {
-        if (!response.isSuccessful()) {
-            throw new IOException("Unexpected code " + response);
-        }
-
-        String responseBodyStr = response.body().string();
-        Map<String, Object> responseBody = objectMapper.readValue(responseBodyStr, Map.class);
-        List<Map<String, Object>> choices = (List<Map<String, Object>>) responseBody.get("choices");
-        Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
-        String translatedText = (String) message.get("content");
-        System.out.println("Received Translated Text");
-        return translatedText;
-    }
+    this.translationMemory = translationMemory;
+    this.batchPacker = batchPacker;
 }
 
     public List<Map<String, Object>> translateNDJson(String content, String language, String service) throws IOException {
         List<Map<String, Object>> results = new ArrayList<>();
-        		System.out.println("Received  in translateNDJSON");
+        LOGGER.debug("Translating NDJSON line by line into {} with {}", language, service);
 
         if (content == null || content.trim().isEmpty()) {
             return results;
@@ -209,287 +108,194 @@ public class TranslationService {
 
     public Map<String, Object> translateJson(Map<String, Object> json, String targetLanguage, String service)
         throws IOException {
-        this.targetLanguage = targetLanguage;
-        System.out.println("Received  in translatejson");
-
-
-        Map<String, Object> originalJson = new LinkedHashMap<>(json);
-        outputDataList.clear();
-        saveOutputData(originalJson);  // Use originalJson instead of json
-
-        List<String> textList = new ArrayList<>();
-        List<String> keysList = new ArrayList<>();
-
-        collectTextToTranslate(originalJson, textList, keysList, false);
-
-        List<String> translatedTextList = translateTextList(textList, targetLanguage, service);
-        Iterator<String> translatedTextIterator = translatedTextList.iterator();
-
-        putTranslatedTextBack(originalJson, keysList, translatedTextIterator);
-        restoreOutputData(originalJson);
-
-        // Process highlights after translation
-        processHighlights(originalJson);
-
-        return originalJson;  // Return originalJson instead of json
-    }
-
-
-    private void processHighlights(Map<String, Object> json) throws IOException {
-        if (json.containsKey("data") && json.containsKey("highlight")) {
-            String translatedData = (String) json.get("data");
-            List<Map<String, Object>> highlights = (List<Map<String, Object>>) json.get("highlight");
-
-            for (Map<String, Object> highlight : highlights) {
-                String originalKeyTitle = (String) highlight.get("key_title");
-                String translatedKeyTitle = findCorrespondingText(translatedData, originalKeyTitle);
-                highlight.put("key_title", translatedKeyTitle);
-            }
-        }
-
-        // Recursively process nested structures
-        for (Map.Entry<String, Object> entry : json.entrySet()) {
-            if (entry.getValue() instanceof Map) {
-                processHighlights((Map<String, Object>) entry.getValue());
-            } else if (entry.getValue() instanceof List) {
-                for (Object item : (List<Object>) entry.getValue()) {
-                    if (item instanceof Map) {
-                        processHighlights((Map<String, Object>) item);
-                    }
-                }
-            }
-        }
+        return Futures.await(translateJsonAsync(json, targetLanguage, service));
     }
 
-    private String findCorrespondingText(String translatedData, String originalKeyTitle) throws IOException {
-        if (translatedData == null || originalKeyTitle == null) {
-            LOGGER.warn("Null data received in findCorrespondingText. TranslatedData: {}, OriginalKeyTitle: {}", 
-                translatedData, originalKeyTitle);
-            return originalKeyTitle; // Return original if either is null
-        }
-        
-        String prompt = String.format(
-            "Original highlighted text: \"%s\"\n" +
-            "Translated text: \"%s\"\n\n" +
-            "Find the exact phrase in the translated text that corresponds to the original highlighted text. " +
-            "Return only the found phrase, nothing else. If there's no exact match, return the closest matching phrase. " +
-            "Do not include quotation marks in your response.",
-            originalKeyTitle,
-            translatedData
-        );
-
-        try {
-            String response = callChatGPTAPI(prompt);
-            return response.replaceAll("^[\"']|[\"']$", "").trim();
-        } catch (IOException e) {
-            LOGGER.error("Error finding corresponding text. Returning original key title.", e);
-            return originalKeyTitle;
-        }
+    /**
+     * Translates a JSON document without holding a thread while the provider works; the
+     * future completes once every segment and highlight has been translated.
+     */
+    public CompletableFuture<Map<String, Object>> translateJsonAsync(Map<String, Object> json, String targetLanguage,
+            String service) {
+        return translateJsonAsync(json, targetLanguage, service, new TranslationReport());
     }
 
-    private String callChatGPTAPI(String prompt) throws IOException {
-        String requestBody = objectMapper.writeValueAsString(Map.of(
-            "model", "gpt-4o-mini-2024-07-18",
-            "messages", List.of(Map.of("role", "user", "content", prompt)),
-            "temperature", 0.7
-        ));
-
-        Request request = new Request.Builder()
-            .url("https://api.openai.com/v1/chat/completions")
-            .post(RequestBody.create(requestBody, MediaType.parse("application/json")))
-            .addHeader("Authorization", "Bearer " + openaiApiKey)
-            .build();
-
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Unexpected code " + response);
-            }
+    /**
+     * Same as {@link #translateJsonAsync(Map, String, String)}, recording progress and calls in
+     * {@code report}.
+     */
+    public CompletableFuture<Map<String, Object>> translateJsonAsync(Map<String, Object> json, String targetLanguage,
+            String service, TranslationReport report) {
+        LOGGER.debug("Translating JSON document into {} with {}", targetLanguage, service);
 
-            String responseBodyStr = response.body().string();
-            Map<String, Object> responseBody = objectMapper.readValue(responseBodyStr, Map.class);
-            List<Map<String, Object>> choices = (List<Map<String, Object>>) responseBody.get("choices");
-            Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
-            return ((String) message.get("content")).trim();
-        }
-    }
-
-    private List<String> translateTextList(List<String> textList, String targetLanguage, String service)
+        Map<String, Object> originalJson = new LinkedHashMap<>(json);
+        StageTimer extract = StageTimer.start(Stage.EXTRACT, report);
+        TranslatableDocument document = TranslatableDocument.of(originalJson);
+        extract.stop(document.size());
+
+        return Futures.compose(translateTextList(document.getTexts(), targetLanguage, service, report), translatedTextList -> {
+            StageTimer postprocess = StageTimer.start(Stage.POSTPROCESS, report);
+            document.fill(translatedTextList, text -> TextPreprocessor.postprocessText(text, "", "service"));
+            postprocess.stop(document.size());
+
+            // Process highlights after translation
+            return resolveHighlights(document.getHighlights(), report).thenApply(done -> originalJson);  // Return originalJson instead of json
+        });
+    }
+
+    /**
+     * Translates the JSON document of {@code source} into {@code output} without building it as a
+     * tree: the source is read once to find the segments and once more to write the translated
+     * copy, so a large upload is never held in memory.
+     */
+    public void translateJsonStream(InputStreamSource source, OutputStream output, String language, String service)
             throws IOException {
-        List<String> translatedTextList = new ArrayList<>();
-        for (String text : textList) {
-            String translatedText;
-            if ("ChatGPT".equalsIgnoreCase(service)) {
-                translatedText = translateTextWithChatGPT(text, targetLanguage);
-            } else if ("Gemini".equalsIgnoreCase(service)) {
-                translatedText = translateTextWithGemini(text, targetLanguage);
-            } else {
-                throw new IllegalArgumentException("Unsupported translation service: " + service);
-            }
-            translatedTextList.add(translatedText);
-        }
-        return translatedTextList;
-    }
-
-    public void collectTextToTranslate(Map<String, Object> json, List<String> textList, List<String> keysList,
-            boolean skipTranslation) {
-        boolean isOutputType = false;
-        boolean shouldTranslateNext = true;
-
-        List<Map.Entry<String, Object>> entries = new ArrayList<>(json.entrySet());
-        for (int i = 0; i < entries.size(); i++) {
-            Map.Entry<String, Object> entry = entries.get(i);
-            String key = entry.getKey();
-            Object value = entry.getValue();
-
-            if ("type".equals(key) && "OUTPUT".equals(value)) {
-                isOutputType = true;
-                continue;
-            }
-
-            if (isOutputType && "data".equals(key)) {
-                continue;
-            }
-
-            if ("translate_content".equals(key)) {
-                shouldTranslateNext = !Boolean.FALSE.toString().equalsIgnoreCase(value.toString());
-                continue;
-            }
-
-            if (!skipTranslation && shouldTranslate(key)) {
-                if (shouldTranslateNext) {
-                    if (value instanceof String) {
-                        String stringValue = (String) value;
-                        if (!stringValue.isEmpty()) {
-                            textList.add(stringValue);
-                            keysList.add(key);
-                        }
-                    } else if (value instanceof List) {
-                        List<Object> list = (List<Object>) value;
-                        for (int j = 0; j < list.size(); j++) {
-                            Object item = list.get(j);
-                            if (item instanceof String) {
-                                String stringItem = (String) item;
-                                if (!stringItem.isEmpty()) {
-                                    textList.add(stringItem);
-                                    keysList.add(key + "_" + j);
-                                }
-                            } else if (item instanceof Map) {
-                                collectTextToTranslate((Map<String, Object>) item, textList, keysList, skipTranslation);
-                            }
-                        }
-                    }
-                }
-                shouldTranslateNext = true; // Reset for the next key
-            }
-
-            if (value instanceof Map) {
-                collectTextToTranslate((Map<String, Object>) value, textList, keysList, skipTranslation);
-            } else if (value instanceof List && !"option".equals(key)) {
-                for (Object item : (List<Object>) value) {
-                    if (item instanceof Map) {
-                        collectTextToTranslate((Map<String, Object>) item, textList, keysList, skipTranslation);
-                    }
-                }
-            }
-        }
-    }
-
-    private void putTranslatedTextBack(Map<String, Object> json, List<String> keysList, Iterator<String> iterator) {
-        boolean isOutputType = false;
-        boolean shouldTranslateNext = true;
-
-        List<Map.Entry<String, Object>> entries = new ArrayList<>(json.entrySet());
-        for (int i = 0; i < entries.size(); i++) {
-            Map.Entry<String, Object> entry = entries.get(i);
-            String key = entry.getKey();
-            Object value = entry.getValue();
-
-            if ("type".equals(key) && "OUTPUT".equals(value)) {
-                isOutputType = true;
-                continue;
-            }
-
-            if (isOutputType && "data".equals(key)) {
-                continue;
-            }
-
-            if ("translate_content".equals(key)) {
-                shouldTranslateNext = !Boolean.FALSE.toString().equalsIgnoreCase(value.toString());
-                continue;
-            }
-
-            if (shouldTranslate(key)) {
-                if (shouldTranslateNext) {
-                    if (value instanceof String) {
-                        if (iterator.hasNext() && !((String) value).isEmpty()) {
-                            String newValue = iterator.next();
-                            entry.setValue(TextPreprocessor.postprocessText(newValue, key, "service"));
-                        }
-                    } else if (value instanceof List) {
-                        List<Object> list = (List<Object>) value;
-                        for (int j = 0; j < list.size(); j++) {
-                            Object item = list.get(j);
-                            if (item instanceof String) {
-                                if (iterator.hasNext() && !((String) item).isEmpty()) {
-                                    String newValue = iterator.next();
-                                    list.set(j, TextPreprocessor.postprocessText(newValue, key + "_" + j, "service"));
-                                }
-                            } else if (item instanceof Map) {
-                                putTranslatedTextBack((Map<String, Object>) item, keysList, iterator);
-                            }
-                        }
-                    }
-                }
-                shouldTranslateNext = true; // Reset for the next key
-            }
-
-            if (value instanceof Map) {
-                putTranslatedTextBack((Map<String, Object>) value, keysList, iterator);
-            } else if (value instanceof List && !"option".equals(key)) {
-                for (Object item : (List<Object>) value) {
-                    if (item instanceof Map) {
-                        putTranslatedTextBack((Map<String, Object>) item, keysList, iterator);
-                    }
-                }
-            }
-        }
-    }
-
-    private void saveOutputData(Map<String, Object> json) {
-        for (Map.Entry<String, Object> entry : json.entrySet()) {
-            if ("type".equals(entry.getKey()) && "OUTPUT".equals(entry.getValue())) {
-                if (json.containsKey("data")) {
-                    outputDataList.add((String) json.get("data"));
-                    json.put("data", ""); // Clear the data field
-                }
-            } else if (entry.getValue() instanceof Map) {
-                saveOutputData((Map<String, Object>) entry.getValue());
-            } else if (entry.getValue() instanceof List) {
-                for (Object item : (List<Object>) entry.getValue()) {
-                    if (item instanceof Map) {
-                        saveOutputData((Map<String, Object>) item);
-                    }
+        TranslationReport report = new TranslationReport();
+        TranslatableJsonStream stream;
+        // Parsing and extraction are one pass over the stream, timed as extraction
+        StageTimer extract = StageTimer.start(Stage.EXTRACT, report);
+        try (InputStream input = source.getInputStream()) {
+            stream = TranslatableJsonStream.scan(input);
+        }
+
+        List<String> texts = stream.getTexts();
+        extract.stop(texts.size());
+        LOGGER.info("Streaming translation of a JSON document with {} segments to {}", texts.size(), language);
+        List<String> translations = Futures.await(translateTextList(texts, language, service, report));
+        StageTimer postprocess = StageTimer.start(Stage.POSTPROCESS, report);
+        stream.fill(translations, text -> TextPreprocessor.postprocessText(text, "", "service"));
+        postprocess.stop(texts.size());
+        Futures.await(resolveHighlights(stream.getHighlights(), report));
+
+        StageTimer reassemble = StageTimer.start(Stage.REASSEMBLE, report);
+        try (InputStream input = source.getInputStream()) {
+            stream.write(input, output);
+        }
+        output.flush();
+        reassemble.stop(texts.size());
+        logReport(report);
+    }
+
+    /**
+     * Translates a JSON document into each of {@code languages} at once and returns it written
+     * out as JSON per language, in the order of {@code languages}. The document is segmented
+     * once; see {@link #translateToLanguages}. {@code json} itself is the working copy.
+     */
+    public CompletableFuture<Map<String, byte[]>> translateJsonAsync(Map<String, Object> json,
+            List<String> languages, String service, TranslationReport report) {
+        StageTimer extract = StageTimer.start(Stage.EXTRACT, report);
+        TranslatableDocument document = TranslatableDocument.of(json);
+        extract.stop(document.size());
+        LOGGER.info("Translating a JSON document with {} segments to {}", document.size(), languages);
+        return translateToLanguages(List.of(document), languages,
+                language -> translateTextList(document.getTexts(), language, service, report),
+                text -> TextPreprocessor.postprocessText(text, "", "service"),
+                language -> objectMapper.writeValueAsBytes(json), report);
+    }
+
+    private CompletableFuture<List<String>> translateTextList(List<String> textList, String targetLanguage,
+            String service, TranslationReport report) {
+        return timeDispatch(textList.size(), report,
+                () -> withProvider(service, provider -> translateTextList(textList, targetLanguage, provider, report)));
+    }
+
+    /**
+     * Times {@code dispatch}, which sends the calls for {@code segments} segments without waiting
+     * for them, as preprocessing, and the wait for its translations as provider time.
+     */
+    private static CompletableFuture<List<String>> timeDispatch(int segments, TranslationReport report,
+            Supplier<CompletableFuture<List<String>>> dispatch) {
+        StageTimer preprocess = StageTimer.start(Stage.PREPROCESS, report);
+        CompletableFuture<List<String>> translations = dispatch.get();
+        preprocess.stop(segments);
+        return StageTimer.start(Stage.PROVIDER, report).stopWhenDone(translations, segments);
+    }
+
+    private CompletableFuture<Void> resolveHighlights(List<HighlightResolver.Highlight> highlights,
+            TranslationReport report) {
+        return StageTimer.start(Stage.HIGHLIGHTS, report).stopWhenDone(highlightResolver.resolve(highlights),
+                highlights.size());
+    }
+
+    /**
+     * Applies {@code translate} to the provider named {@code service}; an unknown service fails
+     * the returned future instead of throwing.
+     */
+    private CompletableFuture<List<String>> withProvider(String service,
+            Function<TranslationProvider, CompletableFuture<List<String>>> translate) {
+        TranslationProvider provider;
+        try {
+            provider = providerRegistry.get(service);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return translate.apply(provider);
+    }
+
+    /**
+     * Translates every segment that is not already in the translation memory with one call
+     * per segment. The result keeps the order of {@code textList}.
+     */
+    private CompletableFuture<List<String>> translateTextList(List<String> textList, String targetLanguage,
+            TranslationProvider provider, TranslationReport report) {
+        return translateRouted(textList, provider, (texts, target) -> translationMemory.translateThrough(texts,
+                targetLanguage, target.getName(), target.getMaskingMode(), report, misses -> translateEachText(misses, targetLanguage, target, report)));
+    }
+
+    /**
+     * Splits {@code texts} by the provider each of them goes to, see
+     * {@link TranslationProviderRegistry#forSegment}, translates each share with
+     * {@code translate} and puts the translations back in the order of {@code texts}.
+     */
+    private CompletableFuture<List<String>> translateRouted(List<String> texts, TranslationProvider provider,
+            BiFunction<List<String>, TranslationProvider, CompletableFuture<List<String>>> translate) {
+        Map<TranslationProvider, List<Integer>> routes = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            routes.computeIfAbsent(providerRegistry.forSegment(provider, texts.get(i)), p -> new ArrayList<>()).add(i);
+        }
+        if (routes.size() <= 1) {
+            return translate.apply(texts, routes.isEmpty() ? provider : routes.keySet().iterator().next());
+        }
+
+        List<List<Integer>> shares = new ArrayList<>(routes.values());
+        List<CompletableFuture<List<String>>> translations = new ArrayList<>(shares.size());
+        routes.forEach((target, indices) -> {
+            List<String> share = new ArrayList<>(indices.size());
+            for (int index : indices) {
+                share.add(texts.get(index));
+            }
+            translations.add(translate.apply(share, target));
+        });
+        return Futures.allOf(translations).thenApply(translated -> {
+            List<String> result = new ArrayList<>(texts);
+            for (int s = 0; s < shares.size(); s++) {
+                List<Integer> indices = shares.get(s);
+                for (int j = 0; j < indices.size() && j < translated.get(s).size(); j++) {
+                    result.set(indices.get(j), translated.get(s).get(j));
                 }
             }
-        }
+            return result;
+        });
     }
 
-    private void restoreOutputData(Map<String, Object> json) {
-        for (Map.Entry<String, Object> entry : json.entrySet()) {
-            if ("type".equals(entry.getKey()) && "OUTPUT".equals(entry.getValue())) {
-                if (json.containsKey("data") && !outputDataList.isEmpty()) {
-                    json.put("data", outputDataList.remove(0));
-                }
-            } else if (entry.getValue() instanceof Map) {
-                restoreOutputData((Map<String, Object>) entry.getValue());
-            } else if (entry.getValue() instanceof List) {
-                for (Object item : (List<Object>) entry.getValue()) {
-                    if (item instanceof Map) {
-                        restoreOutputData((Map<String, Object>) item);
-                    }
-                }
-            }
+    /**
+     * Sends one call per segment, all at once, through the {@link ProviderRouter}; the
+     * provider's dispatcher bounds how many are in flight.
+     */
+    private CompletableFuture<List<String>> translateEachText(List<String> textList, String targetLanguage,
+            TranslationProvider provider, TranslationReport report) {
+        List<CompletableFuture<String>> translations = new ArrayList<>(textList.size());
+        for (String text : textList) {
+            report.recordSegmentCall();
+            translations.add(providerRouter.call(provider, List.of(text), targetLanguage, report,
+                    target -> Futures.start(() -> Futures.map(target.translate(text, targetLanguage), List::of)))
+                    .thenApply(translated -> {
+                        report.recordSegmentsDone(1);
+                        metrics.recordSegments(provider.getName(), targetLanguage, 1);
+                        return translated.get(0);
+                    }));
         }
+        return Futures.allOf(translations);
     }
 
     // Add these methods to your TranslationService class
@@ -499,15 +305,33 @@ public class TranslationService {
  * 
  * @param json The app JSON with keys and values to translate
  * @param targetLanguage The target language code (e.g., "es", "fr")
- * @param service The translation service to use ("Google", "ChatGPT", "Gemini")
+ * @param service The translation service to use ("ChatGPT", "Gemini", "GoogleTranslate")
  * @return The JSON with translated values
  * @throws IOException If translation fails
  */
 public Map<String, String> translateAppJson(Map<String, String> json, String targetLanguage, String service) 
         throws IOException {
+    return Futures.await(translateAppJsonAsync(json, targetLanguage, service));
+}
+
+/**
+ * Same as {@link #translateAppJson(Map, String, String)}, without holding a thread while the
+ * provider works.
+ */
+public CompletableFuture<Map<String, String>> translateAppJsonAsync(Map<String, String> json, String targetLanguage,
+        String service) {
+    return translateAppJsonAsync(json, targetLanguage, service, new TranslationReport());
+}
+
+/**
+ * Same as {@link #translateAppJsonAsync(Map, String, String)}, recording progress and calls in
+ * {@code report}.
+ */
+public CompletableFuture<Map<String, String>> translateAppJsonAsync(Map<String, String> json, String targetLanguage,
+        String service, TranslationReport report) {
     // Skip translation if empty
     if (json == null || json.isEmpty()) {
-        return new LinkedHashMap<>();
+        return CompletableFuture.completedFuture(new LinkedHashMap<>());
     }
     
     LOGGER.info("Translating App JSON with {} keys to {}", json.size(), targetLanguage);
@@ -524,674 +348,510 @@ public Map<String, String> translateAppJson(Map<String, String> json, String tar
         }
     }
     
-    // Translate all values
-    List<String> translatedValues = translateTextList(valuesToTranslate, targetLanguage, service);
-    
-    // Create new JSON with translated values
-    Map<String, String> translatedJson = new LinkedHashMap<>();
-    for (int i = 0; i < keys.size(); i++) {
-        translatedJson.put(keys.get(i), translatedValues.get(i));
-    }
-    
-    // Copy any untranslated entries (should be rare)
-    for (Map.Entry<String, String> entry : json.entrySet()) {
-        if (!translatedJson.containsKey(entry.getKey())) {
-            translatedJson.put(entry.getKey(), entry.getValue());
+    // Translate all values, on the machine-translation tier if app JSON goes there
+    return timeDispatch(valuesToTranslate.size(), report, () -> withProvider(service,
+            provider -> translateTextList(valuesToTranslate, targetLanguage, providerRegistry.forAppJson(provider),
+                    report))).thenApply(translatedValues -> {
+        // Create new JSON with translated values
+        Map<String, String> translatedJson = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            translatedJson.put(keys.get(i), translatedValues.get(i));
         }
-    }
-    
-    return translatedJson;
+        
+        // Copy any untranslated entries (should be rare)
+        for (Map.Entry<String, String> entry : json.entrySet()) {
+            if (!translatedJson.containsKey(entry.getKey())) {
+                translatedJson.put(entry.getKey(), entry.getValue());
+            }
+        }
+        
+        return translatedJson;
+    });
 }
 
 
 
-    private boolean shouldTranslate(String key) {
-        return key.equals("subject") || key.equals("topic_name") || key.equals("data") || key.equals("question_text")
-               || key.equals("correct_explanation") || key.equals("incorrect_explanation") || key.equals("option")
-                || key.equals("info_text") || key.equals("tap_option") || key.equals("rhs") || key.equals("lhs")
-                || key.equals("key_title") || key.equals("hint") || key.equals("content") || key.equals("description") || key.equals("title") || key.equals("name") || key.equals("subtopic_name");
-    }
-
 /**
  * Translates a batch of NDJSON lines received from the frontend (typically 50 lines)
- * by extracting all translatable content, sending it as a single batch to the translation
- * service, and reconstructing the translated JSON objects.
+ * by extracting all translatable content, sending it in token-budgeted batches to the
+ * translation service, and reconstructing the translated JSON objects.
  * 
  * @param content The NDJSON content as a string (multiple JSON objects, one per line)
  * @param language Target language code (e.g., "es", "fr")
- * @param service Translation service to use ("ChatGPT", "Gemini")
+ * @param service Translation service to use ("ChatGPT", "Gemini", "GoogleTranslate")
  * @return List of translated JSON objects
  * @throws IOException If translation fails
  */
 public List<Map<String, Object>> translateNDJsonBatch(String content, String language, String service) 
         throws IOException {
-    List<Map<String, Object>> results = new ArrayList<>();
-    LOGGER.info("Starting batch translation of NDJSON to {}", language);
-    
+    return Futures.await(translateNDJsonBatchAsync(content, language, service));
+}
+
+/**
+ * Same as {@link #translateNDJsonBatch(String, String, String)}, without holding a thread
+ * while the provider works.
+ */
+public CompletableFuture<List<Map<String, Object>>> translateNDJsonBatchAsync(String content, String language,
+        String service) {
+    TranslationReport report = new TranslationReport();
+    return translateNDJsonBatchAsync(content, language, service, report)
+            .whenComplete((results, failure) -> logReport(report));
+}
+
+/**
+ * Same as {@link #translateNDJsonBatchAsync(String, String, String)}, recording calls,
+ * recoveries and untranslated segments in {@code report}.
+ *
+ * The lines are translated in windows of {@code translation.ndjson.window-size}, all in flight
+ * at once, and each finished window is written to the job's {@link NDJsonCheckpointJournal}.
+ * If the same content was partly translated by a run that did not complete, the windows in
+ * its journal are replayed instead of translated again.
+ */
+public CompletableFuture<List<Map<String, Object>>> translateNDJsonBatchAsync(String content, String language,
+        String service, TranslationReport report) {
     // Handle empty content
     if (content == null || content.trim().isEmpty()) {
-        return results;
+        return CompletableFuture.completedFuture(new ArrayList<>());
     }
     
-    // Step 1: Parse each NDJSON line into a separate JSON object
-    List<Object[]> documentData = new ArrayList<>(); // Will hold: [originalJson, textToTranslate, keys, outputData]
+    List<String> lines = new ArrayList<>();
+    for (String line : content.split("\n")) {
+        if (!line.trim().isEmpty()) {
+            lines.add(line);
+        }
+    }
     
-    String[] lines = content.split("\n");
-    for (String line : lines) {
-        if (line.trim().isEmpty()) {
+    NDJsonCheckpointJournal.Checkpoint checkpoint;
+    try {
+        checkpoint = checkpointJournal.open(content, language, service);
+    } catch (IOException e) {
+        LOGGER.warn("Could not open the checkpoint journal, translating without it: {}", e.getMessage());
+        checkpoint = checkpointJournal.disabled();
+    }
+    
+    List<CompletableFuture<List<Map<String, Object>>>> windows = new ArrayList<>();
+    int line = 0;
+    while (line < lines.size()) {
+        NDJsonCheckpointJournal.Window replayed = checkpoint.replayed(line);
+        if (replayed != null && line + replayed.getLineCount() <= lines.size()) {
+            windows.add(Futures.start(() -> CompletableFuture.completedFuture(readNDJson(replayed.getOutput()))));
+            line += replayed.getLineCount();
             continue;
         }
         
+        int end = Math.min(lines.size(), Math.min(line + ndjsonWindowSize, checkpoint.nextReplayedLine(line)));
+        windows.add(translateNDJsonWindow(lines.subList(line, end), line, checkpoint, language, service, report));
+        line = end;
+    }
+    
+    CompletableFuture<List<Map<String, Object>>> results = Futures.map(Futures.allOf(windows), translatedWindows -> {
+        List<Map<String, Object>> all = new ArrayList<>(lines.size());
+        translatedWindows.forEach(all::addAll);
+        return all;
+    });
+    NDJsonCheckpointJournal.Checkpoint journal = checkpoint;
+    results.whenComplete((all, failure) -> {
         try {
-            // Parse single JSON line
-            Map<String, Object> json = objectMapper.readValue(line, LinkedHashMap.class);
-            
-            // Create a working copy
-            Map<String, Object> originalJson = new LinkedHashMap<>(json);
-            
-            // Create collections to store data for this document
-            List<String> outputDataList = new ArrayList<>();
-            List<String> textList = new ArrayList<>();
-            List<String> keysList = new ArrayList<>();
-            
-            // Save OUTPUT data
-            saveNDJsonOutputData(originalJson, outputDataList);
-            
-            // Collect text to translate
-            collectNDJsonTextToTranslate(originalJson, textList, keysList, false);
-            
-            // Store everything related to this document
-            documentData.add(new Object[] {
-                originalJson,
-                textList,
-                keysList,
-                outputDataList
-            });
-            
-        } catch (Exception e) {
-            LOGGER.error("Error processing JSON line: " + line, e);
-            
-            // Add error information to results
-            Map<String, Object> errorJson = new LinkedHashMap<>();
-            errorJson.put("error", "Failed to process line: " + e.getMessage());
-            errorJson.put("original_line", line);
-            results.add(errorJson);
+            if (failure == null) {
+                journal.complete();
+            } else {
+                journal.close();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not close the checkpoint journal: {}", e.getMessage());
         }
-    }
-    
-    // Step 2: Combine all text to translate into a single batch
-    List<String> allTextsToTranslate = new ArrayList<>();
-    List<Integer> documentIndices = new ArrayList<>();
-    List<Integer> textIndices = new ArrayList<>();
-    
-    for (int docIndex = 0; docIndex < documentData.size(); docIndex++) {
-        Object[] docData = documentData.get(docIndex);
-        @SuppressWarnings("unchecked")
-        List<String> docTexts = (List<String>) docData[1];
-        
-        for (int textIndex = 0; textIndex < docTexts.size(); textIndex++) {
-            allTextsToTranslate.add(docTexts.get(textIndex));
-            documentIndices.add(docIndex);
-            textIndices.add(textIndex);
+    });
+    return results;
+}
+
+/**
+ * Translates NDJSON content into each of {@code languages} at once and returns it written out
+ * as NDJSON per language, in the order of {@code languages}. The lines are parsed and
+ * segmented once; see {@link #translateToLanguages}. A line that does not parse is written as
+ * an error object in its place. Unlike {@link #translateNDJsonBatchAsync(String, String,
+ * String, TranslationReport)}, no checkpoint journal is kept.
+ */
+public CompletableFuture<Map<String, byte[]>> translateNDJsonBatchAsync(String content, List<String> languages,
+        String service, TranslationReport report) {
+    List<String> lines = new ArrayList<>();
+    for (String line : content == null ? new String[0] : content.split("\n")) {
+        if (!line.trim().isEmpty()) {
+            lines.add(line);
         }
     }
-    
-    // Step 3: Translate all text in batch
-    LOGGER.info("Translating batch of {} text segments from {} NDJSON objects", 
-            allTextsToTranslate.size(), documentData.size());
-    
-    List<String> allTranslatedTexts;
-    
-    if (!allTextsToTranslate.isEmpty()) {
-        if ("ChatGPT".equalsIgnoreCase(service)) {
-            allTranslatedTexts = translateBatchWithChatGPT(allTextsToTranslate, language);
-        } else if ("Gemini".equalsIgnoreCase(service)) {
-            allTranslatedTexts = translateBatchWithGemini(allTextsToTranslate, language);
-        } else {
-            throw new IllegalArgumentException("Unsupported translation service: " + service);
+
+    StageTimer parse = StageTimer.start(Stage.PARSE, report);
+    List<Map<String, Object>> documents = new ArrayList<>(lines.size());
+    List<Map<String, Object>> parsed = new ArrayList<>(lines.size());
+    for (String line : lines) {
+        try {
+            Map<String, Object> json = objectMapper.readValue(line, LinkedHashMap.class);
+            parsed.add(json);
+            documents.add(json);
+        } catch (Exception e) {
+            parsed.add(null);
+            documents.add(lineError(line, e));
         }
-    } else {
-        allTranslatedTexts = new ArrayList<>();
     }
-    
-    // Step 4: Distribute translated text back to their source documents
-    if (allTranslatedTexts.size() == allTextsToTranslate.size()) {
-        for (int i = 0; i < allTranslatedTexts.size(); i++) {
-            int docIndex = documentIndices.get(i);
-            int textIndex = textIndices.get(i);
-            
-            Object[] docData = documentData.get(docIndex);
-            @SuppressWarnings("unchecked")
-            List<String> docTexts = (List<String>) docData[1];
-            
-            docTexts.set(textIndex, allTranslatedTexts.get(i));
-        }
-    } else {
-        LOGGER.error("Translation count mismatch: expected {}, got {}. Falling back to individual translation.", 
-                allTextsToTranslate.size(), allTranslatedTexts.size());
-        
-        // If there's a count mismatch, fall back to individual translation
-        for (Object[] docData : documentData) {
-            @SuppressWarnings("unchecked")
-            List<String> docTexts = (List<String>) docData[1];
-            
-            for (int i = 0; i < docTexts.size(); i++) {
-                String text = docTexts.get(i);
-                String translatedText;
-                
-                if ("ChatGPT".equalsIgnoreCase(service)) {
-                    translatedText = translateTextWithChatGPT(text, language);
-                } else if ("Gemini".equalsIgnoreCase(service)) {
-                    translatedText = translateTextWithGemini(text, language);
-                } else {
-                    throw new IllegalArgumentException("Unsupported translation service: " + service);
-                }
-                
-                docTexts.set(i, translatedText);
-            }
+    parse.stop(lines.size());
+
+    StageTimer extract = StageTimer.start(Stage.EXTRACT, report);
+    List<TranslatableDocument> translatables = new ArrayList<>();
+    List<String> texts = new ArrayList<>();
+    for (int i = 0; i < lines.size(); i++) {
+        if (parsed.get(i) == null) {
+            continue;
         }
-    }
-    
-    // Step 5: Reconstruct all translated documents
-    for (Object[] docData : documentData) {
-        @SuppressWarnings("unchecked")
-        Map<String, Object> originalJson = (Map<String, Object>) docData[0];
-        
-        @SuppressWarnings("unchecked")
-        List<String> textList = (List<String>) docData[1];
-        
-        @SuppressWarnings("unchecked")
-        List<String> keysList = (List<String>) docData[2];
-        
-        @SuppressWarnings("unchecked")
-        List<String> outputDataList = (List<String>) docData[3];
-        
-        // Put translated text back in the document
-        Iterator<String> translatedTextIterator = textList.iterator();
-        putNDJsonTranslatedTextBack(originalJson, keysList, translatedTextIterator, service);
-        
-        // Restore OUTPUT data
-        restoreNDJsonOutputData(originalJson, outputDataList);
-        
-        // Process highlights if needed
         try {
-            processNDJsonHighlights(originalJson);
+            TranslatableDocument translatable = TranslatableDocument.of(parsed.get(i));
+            translatables.add(translatable);
+            texts.addAll(translatable.getTexts());
         } catch (Exception e) {
-            LOGGER.error("Error processing highlights: {}", e.getMessage());
+            documents.set(i, lineError(lines.get(i), e));
         }
-        
-        // Add the fully translated document to results
-        results.add(originalJson);
     }
-    
-    return results;
-}
+    extract.stop(texts.size());
 
+    LOGGER.info("Translating {} text segments from {} NDJSON lines to {}", texts.size(), documents.size(),
+            languages);
+    return translateToLanguages(translatables, languages,
+            language -> translateSegments(texts, language, service, report),
+            text -> REPEATED_QUESTION_MARKS.matcher(text).replaceAll("?"),
+            language -> writeNDJson(documents), report);
+}
 
+/**
+ * The error object written in place of an NDJSON line that could not be processed.
+ */
+private static Map<String, Object> lineError(String line, Exception e) {
+    LOGGER.error("Error processing JSON line: " + line, e);
+    Map<String, Object> errorJson = new LinkedHashMap<>();
+    errorJson.put("error", "Failed to process line: " + e.getMessage());
+    errorJson.put("original_line", line);
+    return errorJson;
+}
 
 /**
- * Saves OUTPUT type data before translation (for a single NDJSON object)
+ * Translates the segments of {@code documents} into each of {@code languages} concurrently,
+ * under the provider limits shared by every job, and writes the documents once per language
+ * with {@code write}.
+ *
+ * The documents are never copied: as the translations of a language arrive they are filled
+ * in and the highlights are detached to be resolved, and once every language is done the
+ * documents are filled again and written one language at a time.
  */
-private void saveNDJsonOutputData(Map<String, Object> json, List<String> outputDataList) {
-    for (Map.Entry<String, Object> entry : json.entrySet()) {
-        if ("type".equals(entry.getKey()) && "OUTPUT".equals(entry.getValue())) {
-            if (json.containsKey("data")) {
-                outputDataList.add((String) json.get("data"));
-                json.put("data", ""); // Clear the data field
+private CompletableFuture<Map<String, byte[]>> translateToLanguages(List<TranslatableDocument> documents,
+        List<String> languages, Function<String, CompletableFuture<List<String>>> translate,
+        UnaryOperator<String> postprocess, Futures.IOFunction<String, byte[]> write, TranslationReport report) {
+    List<CompletableFuture<LanguageFill>> fills = new ArrayList<>(languages.size());
+    for (String language : languages) {
+        fills.add(Futures.compose(translate.apply(language), translations -> {
+            List<List<HighlightResolver.Highlight>> highlights = new ArrayList<>(documents.size());
+            List<HighlightResolver.Highlight> all = new ArrayList<>();
+            synchronized (documents) {
+                StageTimer fill = StageTimer.start(Stage.POSTPROCESS, report);
+                fillDocuments(documents, translations, postprocess);
+                fill.stop(translations.size());
+                for (TranslatableDocument document : documents) {
+                    highlights.add(document.detachHighlights());
+                    all.addAll(highlights.get(highlights.size() - 1));
+                }
             }
-        } else if (entry.getValue() instanceof Map) {
-            saveNDJsonOutputData((Map<String, Object>) entry.getValue(), outputDataList);
-        } else if (entry.getValue() instanceof List) {
-            for (Object item : (List<Object>) entry.getValue()) {
-                if (item instanceof Map) {
-                    saveNDJsonOutputData((Map<String, Object>) item, outputDataList);
+            return resolveHighlights(all, report).thenApply(done -> new LanguageFill(translations, highlights));
+        }));
+    }
+
+    return Futures.map(Futures.allOf(fills), done -> {
+        Map<String, byte[]> outputs = new LinkedHashMap<>();
+        synchronized (documents) {
+            for (int i = 0; i < languages.size(); i++) {
+                LanguageFill fill = done.get(i);
+                StageTimer refill = StageTimer.start(Stage.POSTPROCESS, report);
+                fillDocuments(documents, fill.translations, postprocess);
+                for (int d = 0; d < documents.size(); d++) {
+                    documents.get(d).restoreHighlights(fill.highlights.get(d));
                 }
+                refill.stop(fill.translations.size());
+                StageTimer reassemble = StageTimer.start(Stage.REASSEMBLE, report);
+                outputs.put(languages.get(i), write.apply(languages.get(i)));
+                reassemble.stop(documents.size());
             }
         }
-    }
+        return outputs;
+    });
 }
 
 /**
- * Restores OUTPUT type data after translation (for a single NDJSON object)
+ * Writes {@code translations} into {@code documents}, each taking its share in order.
  */
-private void restoreNDJsonOutputData(Map<String, Object> json, List<String> outputDataList) {
-    if (outputDataList.isEmpty()) {
-        return;
-    }
-    
-    for (Map.Entry<String, Object> entry : json.entrySet()) {
-        if ("type".equals(entry.getKey()) && "OUTPUT".equals(entry.getValue())) {
-            if (json.containsKey("data") && !outputDataList.isEmpty()) {
-                json.put("data", outputDataList.remove(0));
-            }
-        } else if (entry.getValue() instanceof Map) {
-            restoreNDJsonOutputData((Map<String, Object>) entry.getValue(), outputDataList);
-        } else if (entry.getValue() instanceof List) {
-            for (Object item : (List<Object>) entry.getValue()) {
-                if (item instanceof Map) {
-                    restoreNDJsonOutputData((Map<String, Object>) item, outputDataList);
-                }
-            }
-        }
+private static void fillDocuments(List<TranslatableDocument> documents, List<String> translations,
+        UnaryOperator<String> postprocess) {
+    int offset = 0;
+    for (TranslatableDocument document : documents) {
+        int end = Math.min(translations.size(), offset + document.size());
+        document.fill(translations.subList(Math.min(offset, end), end), postprocess);
+        offset += document.size();
     }
 }
 
 /**
- * Collects text that needs to be translated from a JSON object
+ * The translations of one language, and its resolved highlights per document.
  */
-private void collectNDJsonTextToTranslate(Map<String, Object> json, List<String> textList, 
-        List<String> keysList, boolean skipTranslation) {
-    boolean isOutputType = false;
-    boolean shouldTranslateNext = true;
-
-    List<Map.Entry<String, Object>> entries = new ArrayList<>(json.entrySet());
-    for (int i = 0; i < entries.size(); i++) {
-        Map.Entry<String, Object> entry = entries.get(i);
-        String key = entry.getKey();
-        Object value = entry.getValue();
-
-        if ("type".equals(key) && "OUTPUT".equals(value)) {
-            isOutputType = true;
-            continue;
-        }
+private static final class LanguageFill {
+    private final List<String> translations;
+    private final List<List<HighlightResolver.Highlight>> highlights;
 
-        if (isOutputType && "data".equals(key)) {
-            continue;
-        }
+    LanguageFill(List<String> translations, List<List<HighlightResolver.Highlight>> highlights) {
+        this.translations = translations;
+        this.highlights = highlights;
+    }
+}
 
-        if ("translate_content".equals(key)) {
-            shouldTranslateNext = !Boolean.FALSE.toString().equalsIgnoreCase(value.toString());
-            continue;
-        }
+private CompletableFuture<List<Map<String, Object>>> translateNDJsonWindow(List<String> window, int firstLine,
+        NDJsonCheckpointJournal.Checkpoint checkpoint, String language, String service, TranslationReport report) {
+    return Futures.map(translateNDJsonLines(window, language, service, report), results -> {
+        checkpoint.append(firstLine, window.size(), writeNDJson(results));
+        return results;
+    });
+}
 
-        if (!skipTranslation && shouldTranslate(key)) {
-            if (shouldTranslateNext) {
-                if (value instanceof String) {
-                    String stringValue = (String) value;
-                    if (!stringValue.isEmpty()) {
-                        // Add text directly without preprocessing
-                        textList.add(stringValue);
-                        keysList.add(key);
-                    }
-                } else if (value instanceof List) {
-                    List<Object> list = (List<Object>) value;
-                    for (int j = 0; j < list.size(); j++) {
-                        Object item = list.get(j);
-                        if (item instanceof String) {
-                            String stringItem = (String) item;
-                            if (!stringItem.isEmpty()) {
-                                // Add text directly without preprocessing
-                                textList.add(stringItem);
-                                keysList.add(key + "_" + j);
-                            }
-                        } else if (item instanceof Map) {
-                            collectNDJsonTextToTranslate((Map<String, Object>) item, textList, keysList, skipTranslation);
-                        }
-                    }
-                }
-            }
-            shouldTranslateNext = true;
-        }
+private byte[] writeNDJson(List<Map<String, Object>> results) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    for (Map<String, Object> json : results) {
+        output.write(objectMapper.writeValueAsBytes(json));
+        output.write('\n');
+    }
+    return output.toByteArray();
+}
 
-        if (value instanceof Map) {
-            collectNDJsonTextToTranslate((Map<String, Object>) value, textList, keysList, skipTranslation);
-        } else if (value instanceof List && !"option".equals(key)) {
-            for (Object item : (List<Object>) value) {
-                if (item instanceof Map) {
-                    collectNDJsonTextToTranslate((Map<String, Object>) item, textList, keysList, skipTranslation);
-                }
-            }
+@SuppressWarnings("unchecked")
+private List<Map<String, Object>> readNDJson(byte[] ndjson) throws IOException {
+    List<Map<String, Object>> results = new ArrayList<>();
+    for (String line : new String(ndjson, StandardCharsets.UTF_8).split("\n")) {
+        if (!line.isEmpty()) {
+            results.add(objectMapper.readValue(line, LinkedHashMap.class));
         }
     }
+    return results;
 }
 
 /**
- * Puts translated text back into the JSON object
+ * Translates an NDJSON upload window by window: lines are read incrementally from
+ * {@code input}, translated in windows of {@code translation.ndjson.window-size} lines and
+ * written to {@code output} as soon as their window is done. Only one window is held in
+ * memory at a time, whatever the size of the upload.
+ *
+ * @param input The NDJSON content (one JSON object per line)
+ * @param output Receives the translated NDJSON, one JSON object per line
+ * @param language Target language code (e.g., "es", "fr")
+ * @param service Translation service to use ("ChatGPT", "Gemini", "GoogleTranslate")
+ * @throws IOException If reading, translating or writing fails
  */
-private void putNDJsonTranslatedTextBack(Map<String, Object> json, List<String> keysList, 
-        Iterator<String> iterator, String serviceType) {
-    boolean isOutputType = false;
-    boolean shouldTranslateNext = true;
-
-    List<Map.Entry<String, Object>> entries = new ArrayList<>(json.entrySet());
-    for (int i = 0; i < entries.size(); i++) {
-        Map.Entry<String, Object> entry = entries.get(i);
-        String key = entry.getKey();
-        Object value = entry.getValue();
-
-        if ("type".equals(key) && "OUTPUT".equals(value)) {
-            isOutputType = true;
-            continue;
-        }
-
-        if (isOutputType && "data".equals(key)) {
-            continue;
-        }
+public void translateNDJsonStream(InputStream input, OutputStream output, String language, String service)
+        throws IOException {
+    TranslationReport report = new TranslationReport();
+    translateNDJsonStream(input, output, language, service, report);
+    logReport(report);
+}
 
-        if ("translate_content".equals(key)) {
-            shouldTranslateNext = !Boolean.FALSE.toString().equalsIgnoreCase(value.toString());
+/**
+ * Same as {@link #translateNDJsonStream(InputStream, OutputStream, String, String)}, recording
+ * calls, recoveries and untranslated segments in {@code report}.
+ */
+public void translateNDJsonStream(InputStream input, OutputStream output, String language, String service,
+        TranslationReport report) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    List<String> window = new ArrayList<>(ndjsonWindowSize);
+    int windowCount = 0;
+    
+    String line;
+    while ((line = reader.readLine()) != null) {
+        if (line.trim().isEmpty()) {
             continue;
         }
-
-        if (shouldTranslate(key)) {
-            if (shouldTranslateNext) {
-                if (value instanceof String) {
-                    if (iterator.hasNext() && !((String) value).isEmpty()) {
-                        String newValue = iterator.next();
-                        // Fix double question marks directly here
-                        newValue = newValue.replaceAll("\\?{2,}", "?");
-                        // Set value directly without postprocessing
-                        entry.setValue(newValue);
-                    }
-                } else if (value instanceof List) {
-                    List<Object> list = (List<Object>) value;
-                    for (int j = 0; j < list.size(); j++) {
-                        Object item = list.get(j);
-                        if (item instanceof String) {
-                            if (iterator.hasNext() && !((String) item).isEmpty()) {
-                                String newValue = iterator.next();
-                                // Fix double question marks directly here
-                                newValue = newValue.replaceAll("\\?{2,}", "?");
-                                // Set value directly without postprocessing
-                                list.set(j, newValue);
-                            }
-                        } else if (item instanceof Map) {
-                            putNDJsonTranslatedTextBack((Map<String, Object>) item, keysList, iterator, serviceType);
-                        }
-                    }
-                }
-            }
-            shouldTranslateNext = true;
+        window.add(line);
+        if (window.size() >= ndjsonWindowSize) {
+            writeNDJsonWindow(window, output, language, service, report);
+            window.clear();
+            windowCount++;
         }
+    }
+    if (!window.isEmpty()) {
+        writeNDJsonWindow(window, output, language, service, report);
+        windowCount++;
+    }
+    
+    LOGGER.info("Finished streaming NDJSON translation to {} in {} windows", language, windowCount);
+}
 
-        if (value instanceof Map) {
-            putNDJsonTranslatedTextBack((Map<String, Object>) value, keysList, iterator, serviceType);
-        } else if (value instanceof List && !"option".equals(key)) {
-            for (Object item : (List<Object>) value) {
-                if (item instanceof Map) {
-                    putNDJsonTranslatedTextBack((Map<String, Object>) item, keysList, iterator, serviceType);
-                }
-            }
-        }
+private void writeNDJsonWindow(List<String> window, OutputStream output, String language, String service,
+        TranslationReport report) throws IOException {
+    List<Map<String, Object>> results = Futures.await(translateNDJsonLines(window, language, service, report));
+    StageTimer reassemble = StageTimer.start(Stage.REASSEMBLE, report);
+    for (Map<String, Object> json : results) {
+        output.write(objectMapper.writeValueAsBytes(json));
+        output.write('\n');
     }
+    output.flush();
+    reassemble.stop(results.size());
 }
 
 /**
- * Translates a batch of text segments with ChatGPT in a single API call
+ * Translates NDJSON lines by extracting all translatable content, sending it in
+ * token-budgeted batches to the translation service, and reconstructing the translated
+ * JSON objects.
  */
-private List<String> translateBatchWithChatGPT(List<String> batch, String targetLanguage) throws IOException {
-    if (batch.isEmpty()) {
-        return new ArrayList<>();
-    }
-    
-    LOGGER.info("Sending batch of {} texts to ChatGPT", batch.size());
-    
-    // If there's only one item, use the existing method
-    if (batch.size() == 1) {
-        return List.of(translateTextWithChatGPT(batch.get(0), targetLanguage));
-    }
-    
-    // Create a unique separator with UUID
-    String separator = "---TRANSLATION_SEPARATOR_" + UUID.randomUUID().toString() + "---";
-    
-    // Join all texts with the separator
-    StringBuilder combinedText = new StringBuilder();
-    for (int i = 0; i < batch.size(); i++) {
-        combinedText.append("Text ").append(i + 1).append(":\n");
-        combinedText.append(batch.get(i));
-        if (i < batch.size() - 1) {
-            combinedText.append("\n").append(separator).append("\n");
-        }
-    }
-    
-    // System prompt that emphasizes just returning translations
-    String systemPrompt = String.format(
-        "You are a translation engine that translates text from English to %s. " +
-        "ONLY RETURN THE TRANSLATED TEXT. DO NOT ADD ANY COMMENTS, EXPLANATIONS, OR NOTES. " +
-        "Multiple texts will be provided, separated by '%s'. " +
-        "Each text is preceded by 'Text N:' where N is a number. " +
-        "Translate each text separately, preserving these 'Text N:' markers and separators in your response. " +
-        "Maintain the exact format of the input in your output, just with translated content.",
-        targetLanguage, separator);
-    
-    String requestBody = objectMapper.writeValueAsString(Map.of(
-        "model", "gpt-4o-mini-2024-07-18", 
-        "messages", List.of(
-            Map.of("role", "system", "content", systemPrompt),
-            Map.of("role", "user", "content", combinedText.toString())
-        ),
-        "temperature", 0.3 // Lower temperature for more consistent translations
-    ));
-    
-    Request request = new Request.Builder()
-        .url("https://api.openai.com/v1/chat/completions")
-        .post(RequestBody.create(requestBody, MediaType.parse("application/json")))
-        .addHeader("Authorization", "Bearer " + openaiApiKey)
-        .build();
+private CompletableFuture<List<Map<String, Object>>> translateNDJsonLines(List<String> lines, String language,
+        String service, TranslationReport report) {
+    List<Map<String, Object>> results = new ArrayList<>();
+    LOGGER.info("Starting batch translation of {} NDJSON lines to {}", lines.size(), language);
     
-    try (Response response = httpClient.newCall(request).execute()) {
-        if (!response.isSuccessful()) {
-            throw new IOException("Unexpected code " + response);
-        }
-        
-        String responseBodyStr = response.body().string();
-        Map<String, Object> responseBody = objectMapper.readValue(responseBodyStr, Map.class);
-        List<Map<String, Object>> choices = (List<Map<String, Object>>) responseBody.get("choices");
-        Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
-        String translatedBatch = (String) message.get("content");
-        
-        // Split the response by the separator to get individual translations
-        List<String> translatedTexts = new ArrayList<>();
-        for (String part : translatedBatch.split(Pattern.quote(separator))) {
-            // Clean up any "Text N:" prefixes and trim whitespace
-            String cleaned = part.replaceFirst("(?i)^\\s*Text\\s+\\d+:\\s*", "").trim();
-            if (!cleaned.isEmpty()) {
-                translatedTexts.add(cleaned);
-            }
+    // Step 1: Parse each NDJSON line
+    StageTimer parse = StageTimer.start(Stage.PARSE, report);
+    List<String> parsedLines = new ArrayList<>();
+    List<Map<String, Object>> parsed = new ArrayList<>();
+    for (String line : lines) {
+        if (line.trim().isEmpty()) {
+            continue;
         }
         
-        // Ensure we have the right number of translations
-        if (translatedTexts.size() != batch.size()) {
-            LOGGER.warn("Expected {} translations but got {}. Falling back to individual translation.",
-                    batch.size(), translatedTexts.size());
-            
-            // Fall back to translating individually if the count doesn't match
-            translatedTexts.clear();
-            for (String text : batch) {
-                translatedTexts.add(translateTextWithChatGPT(text, targetLanguage));
-            }
+        try {
+            parsed.add(objectMapper.readValue(line, LinkedHashMap.class));
+            parsedLines.add(line);
+        } catch (Exception e) {
+            // Add error information to results
+            results.add(lineError(line, e));
         }
-        
-        return translatedTexts;
     }
-}
-
-/**
- * Translates a batch of text segments with Gemini in a single API call
- */
-private List<String> translateBatchWithGemini(List<String> batch, String targetLanguage) throws IOException {
-    if (batch.isEmpty()) {
-        return new ArrayList<>();
-    }
-    
-    LOGGER.info("Sending batch of {} texts to Gemini", batch.size());
-    
-    // If there's only one item, use the existing method
-    if (batch.size() == 1) {
-        return List.of(translateTextWithGemini(batch.get(0), targetLanguage));
-    }
-    
-    // Create a unique separator with UUID
-    String separator = "---TRANSLATION_SEPARATOR_" + UUID.randomUUID().toString() + "---";
+    parse.stop(lines.size());
     
-    // Join all texts with the separator
-    StringBuilder combinedText = new StringBuilder();
-    for (int i = 0; i < batch.size(); i++) {
-        combinedText.append("Text ").append(i + 1).append(":\n");
-        combinedText.append(batch.get(i));
-        if (i < batch.size() - 1) {
-            combinedText.append("\n").append(separator).append("\n");
+    // Step 2: Find the translatable text of each document, in a working copy
+    StageTimer extract = StageTimer.start(Stage.EXTRACT, report);
+    List<Map<String, Object>> documents = new ArrayList<>();
+    List<TranslatableDocument> translatables = new ArrayList<>();
+    List<String> allTextsToTranslate = new ArrayList<>();
+    for (int i = 0; i < parsed.size(); i++) {
+        try {
+            Map<String, Object> originalJson = new LinkedHashMap<>(parsed.get(i));
+            TranslatableDocument translatable = TranslatableDocument.of(originalJson);
+            translatables.add(translatable);
+            documents.add(originalJson);
+            allTextsToTranslate.addAll(translatable.getTexts());
+        } catch (Exception e) {
+            results.add(lineError(parsedLines.get(i), e));
         }
     }
+    extract.stop(allTextsToTranslate.size());
     
-    // Simple prompt focused just on translation
-    String prompt = "TRANSLATE THE FOLLOWING TEXTS TO " + targetLanguage + ". " +
-                    "ONLY RETURN THE TRANSLATED TEXT. DO NOT ADD ANY COMMENTS OR EXPLANATIONS. " +
-                    "Multiple texts are provided below, separated by '" + separator + "'. " +
-                    "Each text starts with 'Text N:' where N is a number. " +
-                    "Translate each text separately and maintain the exact same format in your response.\n\n" +
-                    combinedText.toString();
-    
-    String requestBody = String.format(
-            "{\"contents\":[{\"parts\":[{\"text\":\"%s\"}]}],\"safetySettings\": %s}",
-            prompt.replace("\"", "\\\""), 
-            objectMapper.writeValueAsString(getSafetySettings()));
-    
-    HttpUrl.Builder urlBuilder = HttpUrl.parse(geminiApiUrl).newBuilder();
-    urlBuilder.addQueryParameter("key", geminiApiKey);
-    
-    Request request = new Request.Builder().url(urlBuilder.build())
-            .post(RequestBody.create(requestBody, MediaType.parse("application/json"))).build();
+    // Step 3: Translate all text in batch
+    LOGGER.info("Translating batch of {} text segments from {} NDJSON objects", 
+            allTextsToTranslate.size(), documents.size());
     
-    try (Response response = httpClient.newCall(request).execute()) {
-        if (!response.isSuccessful()) {
-            throw new IOException("Unexpected code " + response);
-        }
+    return Futures.compose(translateSegments(allTextsToTranslate, language, service, report), allTranslatedTexts -> {
+        // Step 4: Write each document's share of the translations back into it
+        StageTimer postprocess = StageTimer.start(Stage.POSTPROCESS, report);
+        fillDocuments(translatables, allTranslatedTexts, text -> REPEATED_QUESTION_MARKS.matcher(text).replaceAll("?"));
+        postprocess.stop(allTranslatedTexts.size());
         
-        String responseBodyStr = response.body().string();
-        Map<String, Object> responseBody = objectMapper.readValue(responseBodyStr, Map.class);
-        List<Map<String, Object>> candidates = (List<Map<String, Object>>) responseBody.get("candidates");
-        
-        if (candidates != null && !candidates.isEmpty()) {
-            Map<String, Object> candidate = candidates.get(0);
-            Map<String, Object> content = (Map<String, Object>) candidate.get("content");
-            
-            if (content != null) {
-                List<Map<String, Object>> parts = (List<Map<String, Object>>) content.get("parts");
-                
-                if (parts != null && !parts.isEmpty()) {
-                    String translatedBatch = (String) parts.get(0).get("text");
-                    
-                    // Split the response by the separator to get individual translations
-                    List<String> translatedTexts = new ArrayList<>();
-                    for (String part : translatedBatch.split(Pattern.quote(separator))) {
-                        // Clean up any "Text N:" prefixes and trim whitespace
-                        String cleaned = part.replaceFirst("(?i)^\\s*Text\\s+\\d+:\\s*", "").trim();
-                        if (!cleaned.isEmpty()) {
-                            translatedTexts.add(cleaned);
-                        }
-                    }
-                    
-                    // Ensure we have the right number of translations
-                    if (translatedTexts.size() != batch.size()) {
-                        LOGGER.warn("Expected {} translations but got {}. Falling back to individual translation.",
-                                batch.size(), translatedTexts.size());
-                        
-                        // Fall back to translating individually
-                        translatedTexts.clear();
-                        for (String text : batch) {
-                            translatedTexts.add(translateTextWithGemini(text, targetLanguage));
-                        }
-                    }
-                    
-                    return translatedTexts;
-                }
-            }
-            
-            String finishReason = (String) candidate.get("finishReason");
-            if ("SAFETY".equals(finishReason)) {
-                LOGGER.warn("Translation blocked due to safety filters. Falling back to individual translation.");
-            }
+        // Highlights of every document are resolved together
+        List<HighlightResolver.Highlight> highlights = new ArrayList<>();
+        for (TranslatableDocument translatable : translatables) {
+            highlights.addAll(translatable.getHighlights());
         }
+        results.addAll(documents);
         
-        // Fall back to translating individually
-        List<String> fallbackResults = new ArrayList<>();
-        for (String text : batch) {
-            fallbackResults.add(translateTextWithGemini(text, targetLanguage));
-        }
-        return fallbackResults;
-    }
+        return resolveHighlights(highlights, report).thenApply(done -> results);
+    });
 }
 
-
 /**
- * Process highlights after translation for NDJSON objects
+ * Translates the segments of NDJSON lines in token-budgeted batches, through the translation
+ * memory. Every batch comes back with one translation per segment, see {@link BatchRecovery},
+ * and the memory fails a reply that does not line up, so the result always matches
+ * {@code texts}.
  */
-private void processNDJsonHighlights(Map<String, Object> json) throws IOException {
-    if (json.containsKey("data") && json.containsKey("highlight")) {
-        String translatedData = (String) json.get("data");
-        List<Map<String, Object>> highlights = (List<Map<String, Object>>) json.get("highlight");
-
-        for (Map<String, Object> highlight : highlights) {
-            String originalKeyTitle = (String) highlight.get("key_title");
-            String translatedKeyTitle = findNDJsonCorrespondingText(translatedData, originalKeyTitle);
-            highlight.put("key_title", translatedKeyTitle);
-        }
-    }
-
-    // Recursively process nested structures
-    for (Map.Entry<String, Object> entry : json.entrySet()) {
-        if (entry.getValue() instanceof Map) {
-            processNDJsonHighlights((Map<String, Object>) entry.getValue());
-        } else if (entry.getValue() instanceof List) {
-            for (Object item : (List<Object>) entry.getValue()) {
-                if (item instanceof Map) {
-                    processNDJsonHighlights((Map<String, Object>) item);
-                }
-            }
-        }
-    }
+private CompletableFuture<List<String>> translateSegments(List<String> texts, String language, String service,
+        TranslationReport report) {
+    if (texts.isEmpty()) {
+        return CompletableFuture.completedFuture(new ArrayList<>());
+    }
+    return timeDispatch(texts.size(), report,
+            () -> withProvider(service, provider -> translateRouted(texts, provider,
+                    (share, target) -> translationMemory.translateThrough(share, language, target.getName(),
+                            target.getMaskingMode(), report, misses -> translateInBatches(misses, language, target, report)))));
 }
 
 /**
- * Find corresponding text in translated content for highlights
+ * Packs the segments into batches under the token budget and sends all the batches at once;
+ * the provider's dispatcher bounds how many are in flight, the {@link ProviderRouter} keeps
+ * them off an unhealthy provider and the {@link RequestHedger} duplicates stragglers. The
+ * result keeps the order of {@code texts}.
  */
-private String findNDJsonCorrespondingText(String translatedData, String originalKeyTitle) throws IOException {
-    if (translatedData == null || originalKeyTitle == null) {
-        LOGGER.warn("Null data received in findNDJsonCorrespondingText");
-        return originalKeyTitle;
-    }
-    
-    String prompt = String.format(
-        "Original highlighted text: \"%s\"\n" +
-        "Translated text: \"%s\"\n\n" +
-        "Find the exact phrase in the translated text that corresponds to the original highlighted text. " +
-        "Return ONLY the found phrase, nothing else.",
-        originalKeyTitle,
-        translatedData
-    );
-
-    try {
-        String requestBody = objectMapper.writeValueAsString(Map.of(
-            "model", "gpt-4o-mini-2024-07-18",
-            "messages", List.of(Map.of("role", "user", "content", prompt)),
-            "temperature", 0.3
-        ));
-
-        Request request = new Request.Builder()
-            .url("https://api.openai.com/v1/chat/completions")
-            .post(RequestBody.create(requestBody, MediaType.parse("application/json")))
-            .addHeader("Authorization", "Bearer " + openaiApiKey)
-            .build();
+private CompletableFuture<List<String>> translateInBatches(List<String> texts, String language,
+        TranslationProvider provider, TranslationReport report) {
+    if (provider.getCapabilities().isMachineTranslation()) {
+        return translateInCalls(texts, language, provider, report);
+    }
+    
+    BatchPacker.PackingPlan plan = batchPacker.pack(texts);
+    LOGGER.info("Packed {} segments into {} batches (average size {}, largest {}, fill ratio {})",
+            texts.size(), plan.getBatchCount(), String.format("%.1f", plan.getAverageBatchSize()),
+            plan.getLargestBatchSize(), String.format("%.2f", plan.getFillRatio()));
+    
+    List<CompletableFuture<List<String>>> translatedBatches = new ArrayList<>(plan.getBatchCount());
+    for (BatchPacker.Batch batch : plan.getBatches()) {
+        metrics.recordBatchSize(provider.getName(), batch.size());
+        translatedBatches.add(providerRouter.call(provider, batch.getTexts(), language, report,
+                routed -> requestHedger.call(routed,
+                        target -> target.translateBatch(batch.getTexts(), language, report))).thenApply(translated -> {
+            report.recordSegmentsDone(batch.size());
+            metrics.recordSegments(provider.getName(), language, batch.size());
+            return translated;
+        }));
+    }
+    return Futures.allOf(translatedBatches).thenApply(plan::scatter);
+}
 
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Unexpected code " + response);
-            }
+/**
+ * Splits the segments, in order, into calls within the fixed limits of a machine-translation
+ * provider and sends them all at once.
+ */
+private CompletableFuture<List<String>> translateInCalls(List<String> texts, String language,
+        TranslationProvider provider, TranslationReport report) {
+    ProviderCapabilities capabilities = provider.getCapabilities();
+    List<CompletableFuture<List<String>>> calls = new ArrayList<>();
+    int start = 0;
+    while (start < texts.size()) {
+        int end = start;
+        int characters = 0;
+        while (end < texts.size() && end - start < capabilities.getMaxSegmentsPerCall()
+                && (end == start || characters + texts.get(end).length() <= capabilities.getMaxCharactersPerCall())) {
+            characters += texts.get(end++).length();
+        }
+        List<String> call = texts.subList(start, end);
+        metrics.recordBatchSize(provider.getName(), call.size());
+        calls.add(providerRouter.call(provider, call, language, report,
+                routed -> requestHedger.call(routed,
+                        target -> target.translateBatch(call, language, report))).thenApply(translated -> {
+            report.recordSegmentsDone(call.size());
+            metrics.recordSegments(provider.getName(), language, call.size());
+            return translated;
+        }));
+        start = end;
+    }
+    return Futures.allOf(calls).thenApply(translated -> {
+        List<String> all = new ArrayList<>(texts.size());
+        translated.forEach(all::addAll);
+        return all;
+    });
+}
 
-            String responseBodyStr = response.body().string();
-            Map<String, Object> responseBody = objectMapper.readValue(responseBodyStr, Map.class);
-            List<Map<String, Object>> choices = (List<Map<String, Object>>) responseBody.get("choices");
-            Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
-            return ((String) message.get("content")).trim();
-        }
-    } catch (IOException e) {
-        LOGGER.error("Error finding corresponding text: {}", e.getMessage());
-        return originalKeyTitle;
+private void logReport(TranslationReport report) {
+    if (report.getRecoveryCalls() > 0 || !report.getSegmentErrors().isEmpty()) {
+        LOGGER.warn("Translation report: {}", report.toMap());
+    } else {
+        LOGGER.info("Translation report: {} batch calls, no recoveries", report.getBatchCalls());
     }
 }
 
-
-
-
 }
@@ -0,0 +1,119 @@
+package com.hackerx.translation.service.provider;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hackerx.translation.service.BatchProtocol;
+import com.hackerx.translation.service.BatchRecovery;
+import com.hackerx.translation.service.Futures;
+import com.hackerx.translation.service.MaskingMode;
+import com.hackerx.translation.service.ProviderHttpClient;
+import com.hackerx.translation.service.SystemPrompts;
+import com.hackerx.translation.service.TextMasker;
+import com.hackerx.translation.service.TranslationMetrics;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+/**
+ * OpenAI chat completions with {@code gpt-4o-mini}.
+ */
+@Component
+public class ChatGptProvider extends TaggedBatchProvider {
+
+    private static final String MODEL = "gpt-4o-mini-2024-07-18";
+    private static final String URL = "https://api.openai.com/v1/chat/completions";
+
+    private final ProviderHttpClient providerHttpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String openaiApiKey;
+    private final MaskingMode masking;
+
+    public ChatGptProvider(ProviderHttpClient providerHttpClient, BatchRecovery batchRecovery,
+            TranslationMetrics metrics,
+            @Value("${openai.api.key}") String openaiApiKey,
+            @Value("${translation.masking.chatgpt:NONE}") MaskingMode masking) {
+        super(batchRecovery, metrics);
+        this.providerHttpClient = providerHttpClient;
+        this.openaiApiKey = openaiApiKey;
+        this.masking = masking;
+    }
+
+    @Override
+    public String getName() {
+        return "ChatGPT";
+    }
+
+    @Override
+    public MaskingMode getMaskingMode() {
+        return masking;
+    }
+
+    @Override
+    public CompletableFuture<String> translate(String text, String targetLanguage) throws IOException {
+        if (text.isEmpty()) {
+            return CompletableFuture.completedFuture(text);
+        }
+        String maskedText = TextMasker.mask(text, masking);
+        String systemPrompt = SystemPrompts.getChatGPTTranslationPrompt(targetLanguage, maskedText, masking);
+
+        String requestBody = objectMapper.writeValueAsString(Map.of("model", MODEL, "messages",
+                List.of(Map.of("role", "system", "content", systemPrompt), Map.of("role", "user", "content", maskedText))));
+
+        return Futures.map(providerHttpClient.executeAsync(getName(), request(requestBody)), responseBodyStr -> {
+            String translatedText = content(responseBodyStr, "segment");
+            return translatedText == null ? null : TextMasker.unmask(translatedText, masking, getName());
+        });
+    }
+
+    /**
+     * Sends one ID-tagged batch with a strict response schema.
+     */
+    @Override
+    protected CompletableFuture<Map<String, String>> requestBatch(List<BatchProtocol.Segment> segments,
+            String targetLanguage) throws IOException {
+        String requestBody = objectMapper.writeValueAsString(Map.of(
+            "model", MODEL,
+            "messages", List.of(
+                Map.of("role", "system", "content", SystemPrompts.getBatchTranslationPrompt(targetLanguage)),
+                Map.of("role", "user", "content", BatchProtocol.encodeRequest(segments))
+            ),
+            "response_format", BatchProtocol.openAiResponseFormat(),
+            "temperature", 0.3 // Lower temperature for more consistent translations
+        ));
+
+        // A refusal comes back without content, which leaves every segment missing
+        return Futures.map(providerHttpClient.executeAsync(getName(), request(requestBody)),
+                responseBodyStr -> BatchProtocol.parseReply(content(responseBodyStr, "batch")));
+    }
+
+    private Request request(String requestBody) {
+        return new Request.Builder().url(URL)
+                .post(RequestBody.create(requestBody, MediaType.parse("application/json")))
+                .addHeader("Authorization", "Bearer " + openaiApiKey)
+                .build();
+    }
+
+    /**
+     * The content of the first choice, recording the tokens used and a refusal of the
+     * {@code call}.
+     */
+    @SuppressWarnings("unchecked")
+    private String content(String responseBodyStr, String call) throws IOException {
+        Map<String, Object> responseBody = objectMapper.readValue(responseBodyStr, Map.class);
+        metrics.recordUsage(getName(), responseBody);
+        List<Map<String, Object>> choices = (List<Map<String, Object>>) responseBody.get("choices");
+        Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
+        if (message.get("refusal") != null) {
+            metrics.recordSafetyBlock(getName(), call);
+        }
+        return (String) message.get("content");
+    }
+}
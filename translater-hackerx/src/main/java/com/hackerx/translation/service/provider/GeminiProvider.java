@@ -0,0 +1,170 @@
+package com.hackerx.translation.service.provider;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.aiplatform.v1.HarmCategory;
+import com.google.cloud.aiplatform.v1.SafetySetting.HarmBlockThreshold;
+import com.hackerx.translation.config.CustomSafetySetting;
+import com.hackerx.translation.service.BatchProtocol;
+import com.hackerx.translation.service.BatchRecovery;
+import com.hackerx.translation.service.Futures;
+import com.hackerx.translation.service.MaskingMode;
+import com.hackerx.translation.service.ProviderHttpClient;
+import com.hackerx.translation.service.SystemPrompts;
+import com.hackerx.translation.service.TextMasker;
+import com.hackerx.translation.service.TranslationMetrics;
+import com.hackerx.translation.service.TranslationService;
+
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+/**
+ * Gemini {@code generateContent}, with every safety filter set to {@code BLOCK_NONE}. A
+ * segment that is blocked anyway comes back as {@link TranslationService#SAFETY_BLOCKED_TEXT}.
+ */
+@Component
+public class GeminiProvider extends TaggedBatchProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GeminiProvider.class);
+
+    private final ProviderHttpClient providerHttpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String geminiApiKey;
+    private final String geminiApiUrl;
+    private final MaskingMode masking;
+
+    public GeminiProvider(ProviderHttpClient providerHttpClient, BatchRecovery batchRecovery,
+            TranslationMetrics metrics,
+            @Value("${gemini.api.key}") String geminiApiKey,
+            @Value("${gemini.api.url}") String geminiApiUrl,
+            @Value("${translation.masking.gemini:PLACEHOLDER}") MaskingMode masking) {
+        super(batchRecovery, metrics);
+        this.providerHttpClient = providerHttpClient;
+        this.geminiApiKey = geminiApiKey;
+        this.geminiApiUrl = geminiApiUrl;
+        this.masking = masking;
+    }
+
+    @Override
+    public String getName() {
+        return "Gemini";
+    }
+
+    @Override
+    public MaskingMode getMaskingMode() {
+        return masking;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<String> translate(String text, String targetLanguage) throws IOException {
+        if (text.isEmpty()) {
+            return CompletableFuture.completedFuture(text);
+        }
+        String prompt = SystemPrompts.getGeminiTranslationPrompt(targetLanguage, TextMasker.mask(text, masking), masking);
+
+        String requestBody = objectMapper.writeValueAsString(Map.of(
+                "contents", List.of(Map.of("parts", List.of(Map.of("text", prompt)))),
+                "safetySettings", getSafetySettings()));
+
+        return Futures.map(providerHttpClient.executeAsync(getName(), request(requestBody)), responseBodyStr -> {
+            Map<String, Object> responseBody = objectMapper.readValue(responseBodyStr, Map.class);
+            metrics.recordUsage(getName(), responseBody);
+            List<Map<String, Object>> candidates = (List<Map<String, Object>>) responseBody.get("candidates");
+            if (candidates != null && !candidates.isEmpty()) {
+                Map<String, Object> candidate = candidates.get(0);
+                String translatedText = firstPart(candidate);
+                if (translatedText != null) {
+                    return TextMasker.unmask(translatedText.strip(), masking, getName());
+                }
+                String finishReason = (String) candidate.get("finishReason");
+                if ("SAFETY".equals(finishReason)) {
+                    metrics.recordSafetyBlock(getName(), "segment");
+                    return TranslationService.SAFETY_BLOCKED_TEXT;
+                }
+            }
+            throw new IOException("No translated text found in the response");
+        });
+    }
+
+    /**
+     * Sends one ID-tagged batch in JSON mode with a response schema.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected CompletableFuture<Map<String, String>> requestBatch(List<BatchProtocol.Segment> segments,
+            String targetLanguage) throws IOException {
+        String prompt = SystemPrompts.getBatchTranslationPrompt(targetLanguage) + "\n\n"
+                + BatchProtocol.encodeRequest(segments);
+
+        String requestBody = objectMapper.writeValueAsString(Map.of(
+                "contents", List.of(Map.of("parts", List.of(Map.of("text", prompt)))),
+                "safetySettings", getSafetySettings(),
+                "generationConfig", BatchProtocol.geminiGenerationConfig()));
+
+        return Futures.map(providerHttpClient.executeAsync(getName(), request(requestBody)), responseBodyStr -> {
+            Map<String, Object> responseBody = objectMapper.readValue(responseBodyStr, Map.class);
+            metrics.recordUsage(getName(), responseBody);
+            List<Map<String, Object>> candidates = (List<Map<String, Object>>) responseBody.get("candidates");
+
+            if (candidates != null && !candidates.isEmpty()) {
+                Map<String, Object> candidate = candidates.get(0);
+                String reply = firstPart(candidate);
+                if (reply != null) {
+                    return BatchProtocol.parseReply(reply);
+                }
+
+                String finishReason = (String) candidate.get("finishReason");
+                if ("SAFETY".equals(finishReason)) {
+                    LOGGER.warn("Batch of {} texts blocked due to safety filters.", segments.size());
+                    metrics.recordSafetyBlock(getName(), "batch");
+                }
+            }
+
+            return new HashMap<>();
+        });
+    }
+
+    private Request request(String requestBody) {
+        HttpUrl.Builder urlBuilder = HttpUrl.parse(geminiApiUrl).newBuilder();
+        urlBuilder.addQueryParameter("key", geminiApiKey);
+        return new Request.Builder().url(urlBuilder.build())
+                .post(RequestBody.create(requestBody, MediaType.parse("application/json"))).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String firstPart(Map<String, Object> candidate) {
+        Map<String, Object> content = (Map<String, Object>) candidate.get("content");
+        if (content != null) {
+            List<Map<String, Object>> parts = (List<Map<String, Object>>) content.get("parts");
+            if (parts != null && !parts.isEmpty()) {
+                return (String) parts.get(0).get("text");
+            }
+        }
+        return null;
+    }
+
+    private static List<CustomSafetySetting> getSafetySettings() {
+        return List.of(
+                new CustomSafetySetting(HarmCategory.HARM_CATEGORY_SEXUALLY_EXPLICIT.name(),
+                        HarmBlockThreshold.BLOCK_NONE.name()),
+                new CustomSafetySetting(HarmCategory.HARM_CATEGORY_HATE_SPEECH.name(),
+                        HarmBlockThreshold.BLOCK_NONE.name()),
+                new CustomSafetySetting(HarmCategory.HARM_CATEGORY_HARASSMENT.name(),
+                        HarmBlockThreshold.BLOCK_NONE.name()),
+                new CustomSafetySetting(HarmCategory.HARM_CATEGORY_DANGEROUS_CONTENT.name(),
+                        HarmBlockThreshold.BLOCK_NONE.name()));
+    }
+}
@@ -0,0 +1,230 @@
+package com.hackerx.translation.service.provider;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.hackerx.translation.service.BatchRecovery;
+import com.hackerx.translation.service.Futures;
+import com.hackerx.translation.service.ProviderDispatch;
+import com.hackerx.translation.service.ProviderHttpClient;
+import com.hackerx.translation.service.TranslationReport;
+
+import jakarta.annotation.PreDestroy;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+/**
+ * Google Cloud Translation (v2 REST), the machine-translation tier: much faster and cheaper
+ * than the language models, with no prompt, so it suits short UI strings rather than
+ * lesson text with code in it. Calls authenticate with the service account in
+ * {@code google.cloud.credentials.file-path}, loaded on first use. The access token is cached
+ * until shortly before it expires and refreshed on a thread of its own, so no call blocks on
+ * the OAuth round trip while holding a lock or a thread of the async pipeline.
+ *
+ * Target languages may be given as codes ({@code es}, {@code zh-CN}) or as English names
+ * ({@code Spanish}), as jobs pass them to the language models.
+ */
+@Component
+public class GoogleTranslateProvider implements TranslationProvider {
+
+    private static final Pattern LANGUAGE_CODE = Pattern.compile("[a-zA-Z]{2,3}(-[a-zA-Z0-9]{2,4})?");
+    /** A token this close to expiry is refreshed before it is used. */
+    private static final Duration MIN_TOKEN_LIFETIME = Duration.ofMinutes(1);
+    /** A token this close to expiry is still used, while a fresh one is fetched in the background. */
+    private static final Duration REFRESH_AHEAD = Duration.ofMinutes(5);
+
+    private final ProviderHttpClient providerHttpClient;
+    private final BatchRecovery batchRecovery;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String apiUrl;
+    private final String credentialsFilePath;
+    private final ProviderCapabilities capabilities;
+    private final Map<String, String> languageCodes = new LinkedHashMap<>();
+    private final ExecutorService tokenRefresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "google-token-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** Only used on the token refresher thread. */
+    private GoogleCredentials credentials;
+    private volatile AccessToken token;
+    /** The refresh in flight, if any; guarded by {@code this}. */
+    private CompletableFuture<AccessToken> refresh;
+
+    public GoogleTranslateProvider(ProviderHttpClient providerHttpClient, BatchRecovery batchRecovery,
+            @Value("${google.translate.api.url:https://translation.googleapis.com/language/translate/v2}") String apiUrl,
+            @Value("${google.cloud.credentials.file-path:}") String credentialsFilePath,
+            @Value("${translation.google-translate.max-segments-per-call:128}") int maxSegmentsPerCall,
+            @Value("${translation.google-translate.max-characters-per-call:30000}") int maxCharactersPerCall) {
+        this.providerHttpClient = providerHttpClient;
+        this.batchRecovery = batchRecovery;
+        this.apiUrl = apiUrl;
+        this.credentialsFilePath = credentialsFilePath;
+        this.capabilities = ProviderCapabilities.machineTranslation(maxSegmentsPerCall, maxCharactersPerCall);
+        for (String code : Locale.getISOLanguages()) {
+            languageCodes.putIfAbsent(new Locale(code).getDisplayLanguage(Locale.ENGLISH).toLowerCase(Locale.ROOT), code);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "GoogleTranslate";
+    }
+
+    @Override
+    public ProviderCapabilities getCapabilities() {
+        return capabilities;
+    }
+
+    @Override
+    public CompletableFuture<String> translate(String text, String targetLanguage) throws IOException {
+        if (text.isEmpty()) {
+            return CompletableFuture.completedFuture(text);
+        }
+        return Futures.map(request(List.of(text), targetLanguage), translations -> translations.get(0));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> translateBatch(List<String> texts, String targetLanguage,
+            TranslationReport report) {
+        if (texts.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        report.recordBatchCall();
+        return batchRecovery.withRetries(() -> request(texts, targetLanguage));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        tokenRefresher.shutdownNow();
+    }
+
+    private CompletableFuture<List<String>> request(List<String> texts, String targetLanguage) throws IOException {
+        String requestBody = objectMapper.writeValueAsString(Map.of(
+                "q", texts,
+                "source", "en",
+                "target", languageCode(targetLanguage),
+                "format", "text"));
+        // A token refresh ends on another thread, so the dispatch is carried over to the request
+        ProviderDispatch dispatch = ProviderDispatch.current();
+        return Futures.compose(accessToken(),
+                accessToken -> ProviderDispatch.within(dispatch, () -> request(texts, requestBody, accessToken)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<List<String>> request(List<String> texts, String requestBody, String accessToken)
+            throws IOException {
+        Request request = new Request.Builder().url(apiUrl)
+                .post(RequestBody.create(requestBody, MediaType.parse("application/json")))
+                .addHeader("Authorization", "Bearer " + accessToken)
+                .build();
+
+        return Futures.map(providerHttpClient.executeAsync(getName(), request), responseBodyStr -> {
+            Map<String, Object> responseBody = objectMapper.readValue(responseBodyStr, Map.class);
+            Map<String, Object> data = (Map<String, Object>) responseBody.get("data");
+            List<Map<String, Object>> translations = data == null ? null
+                    : (List<Map<String, Object>>) data.get("translations");
+            if (translations == null || translations.size() != texts.size()) {
+                throw new IOException("Expected " + texts.size() + " translations from " + getName() + ", got "
+                        + (translations == null ? 0 : translations.size()));
+            }
+            List<String> result = new ArrayList<>(texts.size());
+            for (Map<String, Object> translation : translations) {
+                result.add((String) translation.get("translatedText"));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * The ISO 639 code for {@code language}, given as its English name or as a code. Names are
+     * looked up first, since some of them ({@code Lao}, {@code Ewe}, {@code Twi}) are shaped
+     * like codes.
+     */
+    String languageCode(String language) throws IOException {
+        String trimmed = language.trim();
+        String code = languageCodes.get(trimmed.toLowerCase(Locale.ROOT));
+        if (code != null) {
+            return code;
+        }
+        if (LANGUAGE_CODE.matcher(trimmed).matches()) {
+            return trimmed;
+        }
+        throw new IOException("Unknown target language for " + getName() + ": " + language);
+    }
+
+    /**
+     * The cached access token, at once while it has more than {@link #MIN_TOKEN_LIFETIME} left;
+     * otherwise once the refresher thread has fetched a new one. Within {@link #REFRESH_AHEAD}
+     * of expiry the cached token is still used and a refresh starts behind it.
+     */
+    private CompletableFuture<String> accessToken() {
+        AccessToken current = token;
+        if (current != null && !expiresWithin(current, MIN_TOKEN_LIFETIME)) {
+            if (expiresWithin(current, REFRESH_AHEAD)) {
+                refreshToken();
+            }
+            return CompletableFuture.completedFuture(current.getTokenValue());
+        }
+        return Futures.map(refreshToken(), AccessToken::getTokenValue);
+    }
+
+    /**
+     * Starts a token refresh on the refresher thread, or joins the one in flight.
+     */
+    private synchronized CompletableFuture<AccessToken> refreshToken() {
+        if (refresh != null && !refresh.isDone()) {
+            return refresh;
+        }
+        CompletableFuture<AccessToken> next = new CompletableFuture<>();
+        refresh = next;
+        tokenRefresher.execute(() -> {
+            try {
+                AccessToken fetched = fetchToken();
+                token = fetched;
+                next.complete(fetched);
+            } catch (IOException | RuntimeException e) {
+                next.completeExceptionally(e);
+            }
+        });
+        return next;
+    }
+
+    private AccessToken fetchToken() throws IOException {
+        if (credentials == null) {
+            if (credentialsFilePath.isBlank()) {
+                throw new IOException("No Google Cloud credentials configured for " + getName());
+            }
+            try (InputStream input = new FileInputStream(credentialsFilePath)) {
+                credentials = GoogleCredentials.fromStream(input)
+                        .createScoped(List.of("https://www.googleapis.com/auth/cloud-translation"));
+            }
+        }
+        credentials.refresh();
+        return credentials.getAccessToken();
+    }
+
+    private static boolean expiresWithin(AccessToken token, Duration margin) {
+        Date expiration = token.getExpirationTime();
+        return expiration != null && expiration.getTime() - System.currentTimeMillis() < margin.toMillis();
+    }
+}
@@ -0,0 +1,51 @@
+package com.hackerx.translation.service.provider;
+
+/**
+ * What a {@link TranslationProvider} can take in one call.
+ */
+public final class ProviderCapabilities {
+
+    private final boolean machineTranslation;
+    private final int maxSegmentsPerCall;
+    private final int maxCharactersPerCall;
+
+    private ProviderCapabilities(boolean machineTranslation, int maxSegmentsPerCall, int maxCharactersPerCall) {
+        this.machineTranslation = machineTranslation;
+        this.maxSegmentsPerCall = maxSegmentsPerCall;
+        this.maxCharactersPerCall = maxCharactersPerCall;
+    }
+
+    /**
+     * A language model: batches are packed by the {@link com.hackerx.translation.service.BatchPacker}
+     * token budget, and masked segments and prompts are understood.
+     */
+    public static ProviderCapabilities languageModel() {
+        return new ProviderCapabilities(false, 0, 0);
+    }
+
+    /**
+     * A machine-translation API: no prompt, and fixed limits on the segments and characters of
+     * one call.
+     */
+    public static ProviderCapabilities machineTranslation(int maxSegmentsPerCall, int maxCharactersPerCall) {
+        return new ProviderCapabilities(true, Math.max(1, maxSegmentsPerCall), Math.max(1, maxCharactersPerCall));
+    }
+
+    public boolean isMachineTranslation() {
+        return machineTranslation;
+    }
+
+    /**
+     * Segments in one call, or 0 if batches are packed by token budget.
+     */
+    public int getMaxSegmentsPerCall() {
+        return maxSegmentsPerCall;
+    }
+
+    /**
+     * Characters of source text in one call, or 0 if batches are packed by token budget.
+     */
+    public int getMaxCharactersPerCall() {
+        return maxCharactersPerCall;
+    }
+}
@@ -0,0 +1,359 @@
+package com.hackerx.translation.service.provider;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.hackerx.translation.service.Futures;
+import com.hackerx.translation.service.ProviderDispatch;
+import com.hackerx.translation.service.TranslationMetrics;
+import com.hackerx.translation.service.TranslationReport;
+import com.hackerx.translation.service.TranslationService;
+
+/**
+ * Routes provider calls by the health of each provider for each target language.
+ *
+ * Every call updates exponentially weighted averages (weight {@code translation.routing.ewma-alpha})
+ * of the latency, the error rate and the share of segments blocked by safety filters. Once
+ * {@code translation.routing.min-calls} calls have been seen, an error rate of
+ * {@code translation.routing.failure-threshold} or an average latency of
+ * {@code translation.routing.slow-call-ms} opens the circuit: calls fail at once instead of
+ * waiting on the provider, and a call that takes longer than
+ * {@code translation.routing.call-timeout-ms} counts as failed. After
+ * {@code translation.routing.open-ms} one probe call is let through; it closes the circuit if
+ * it succeeds and opens it again if not.
+ *
+ * Latency and the timeout run from the moment the call's first request leaves the
+ * {@link com.hackerx.translation.service.ProviderHttpClient} queue, as its
+ * {@link ProviderDispatch} reports: time spent waiting behind other jobs' calls or for the
+ * rate limit says nothing about the provider. A call cancelled before it was sent is not
+ * counted at all.
+ *
+ * Jobs whose {@link TranslationReport} allows failover are sent to the healthiest other
+ * provider of the same kind while the circuit is open, or while the block rate is at
+ * {@code translation.routing.block-threshold}, and a failed call is tried once more there.
+ * While the block rate keeps them away, one call every {@code translation.routing.open-ms}
+ * still goes to the provider as a probe, so the rate can come down again. Other jobs stay on
+ * the provider they chose.
+ */
+@Component
+public class ProviderRouter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProviderRouter.class);
+
+    private final TranslationProviderRegistry providerRegistry;
+    private final TranslationMetrics metrics;
+    private final boolean enabled;
+    private final double alpha;
+    private final int minCalls;
+    private final double failureThreshold;
+    private final long slowCallMillis;
+    private final double blockThreshold;
+    private final long openMillis;
+    private final long callTimeoutMillis;
+
+    private final Map<String, Health> health = new ConcurrentHashMap<>();
+    private final AtomicLong failovers = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    public ProviderRouter(TranslationProviderRegistry providerRegistry, TranslationMetrics metrics,
+            @Value("${translation.routing.enabled:true}") boolean enabled,
+            @Value("${translation.routing.ewma-alpha:0.2}") double alpha,
+            @Value("${translation.routing.min-calls:5}") int minCalls,
+            @Value("${translation.routing.failure-threshold:0.5}") double failureThreshold,
+            @Value("${translation.routing.slow-call-ms:120000}") long slowCallMillis,
+            @Value("${translation.routing.block-threshold:0.3}") double blockThreshold,
+            @Value("${translation.routing.open-ms:30000}") long openMillis,
+            @Value("${translation.routing.call-timeout-ms:180000}") long callTimeoutMillis) {
+        this.providerRegistry = providerRegistry;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.alpha = Math.min(1.0, Math.max(0.01, alpha));
+        this.minCalls = Math.max(1, minCalls);
+        this.failureThreshold = failureThreshold;
+        this.slowCallMillis = slowCallMillis;
+        this.blockThreshold = blockThreshold;
+        this.openMillis = openMillis;
+        this.callTimeoutMillis = callTimeoutMillis;
+    }
+
+    /**
+     * Runs {@code call}, which translates {@code texts} into {@code language}, against
+     * {@code provider} or the provider it is routed to, and records how it went. The future
+     * fails at once if the circuit is open and there is nowhere else to go. Cancelling it
+     * cancels the call.
+     */
+    public CompletableFuture<List<String>> call(TranslationProvider provider, List<String> texts, String language,
+            TranslationReport report, Function<TranslationProvider, CompletableFuture<List<String>>> call) {
+        if (!enabled) {
+            return call.apply(provider);
+        }
+        CompletableFuture<List<String>> result = new CompletableFuture<>();
+        TranslationProvider target = route(provider, language, report, null);
+        if (target == null) {
+            rejected.incrementAndGet();
+            result.completeExceptionally(new IOException("The circuit for " + provider.getName() + " in "
+                    + language + " is open"));
+            return result;
+        }
+        attempt(target, texts, language, report, call, result, true);
+        return result;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("failovers", failovers.get());
+        stats.put("rejected", rejected.get());
+        stats.put("timeouts", timeouts.get());
+        Map<String, Object> routes = new LinkedHashMap<>();
+        health.forEach((key, route) -> routes.put(key, route.toMap()));
+        stats.put("routes", routes);
+        return stats;
+    }
+
+    private void attempt(TranslationProvider target, List<String> texts, String language, TranslationReport report,
+            Function<TranslationProvider, CompletableFuture<List<String>>> call, CompletableFuture<List<String>> result,
+            boolean first) {
+        Health route = healthOf(target, language);
+        ProviderDispatch dispatch = ProviderDispatch.open();
+        CompletableFuture<List<String>> attempt = dispatch.start(() -> call.apply(target));
+        Futures.propagateCancel(result, attempt);
+        AtomicBoolean timedOut = new AtomicBoolean();
+        if (callTimeoutMillis > 0) {
+            dispatch.whenSent(() -> CompletableFuture.delayedExecutor(callTimeoutMillis, TimeUnit.MILLISECONDS,
+                    Runnable::run).execute(() -> {
+                        if (!attempt.isDone()) {
+                            timedOut.set(true);
+                            timeouts.incrementAndGet();
+                            attempt.cancel(true);
+                        }
+                    }));
+        }
+
+        attempt.whenComplete((translated, failure) -> {
+            // A call that never went out, such as one refused before it was sent, took no time
+            long millis = Math.max(0, dispatch.millisSinceSent());
+            Throwable cause = failure == null ? null : Futures.unwrap(failure);
+            if (cause instanceof CancellationException) {
+                if (!timedOut.get()) {
+                    route.release();
+                    return;
+                }
+                cause = new IOException(target.getName() + " call timed out after " + callTimeoutMillis + " ms");
+            }
+            route.record(millis, cause != null, cause == null ? blockedShare(texts, translated, report) : 0);
+            if (cause == null) {
+                result.complete(translated);
+                return;
+            }
+
+            TranslationProvider alternate = first ? route(target, language, report, target) : null;
+            if (alternate == null || result.isDone()) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            LOGGER.warn("{} call failed, trying it on {}: {}", target.getName(), alternate.getName(), cause.getMessage());
+            attempt(alternate, texts, language, report, call, result, false);
+        });
+    }
+
+    /**
+     * The provider to send a call for {@code provider} to, holding its probe slot if its
+     * circuit is half open, or {@code null} if there is none. After a failed call
+     * {@code failed} is the provider it failed on, and only the alternates are considered.
+     */
+    private TranslationProvider route(TranslationProvider provider, String language, TranslationReport report,
+            TranslationProvider failed) {
+        boolean failover = report.isFailoverAllowed();
+        Health primary = healthOf(provider, language);
+        if (failed == null && !(failover && primary.prefersAlternate()) && primary.tryAcquire()) {
+            return provider;
+        }
+        if (!failover) {
+            return null;
+        }
+
+        List<TranslationProvider> alternates = new ArrayList<>(providerRegistry.alternativesTo(provider));
+        alternates.sort(Comparator.comparingDouble(alternate -> healthOf(alternate, language).score()));
+        for (TranslationProvider alternate : alternates) {
+            if (healthOf(alternate, language).tryAcquire()) {
+                failovers.incrementAndGet();
+                report.recordFailover();
+                metrics.recordFallback(provider.getName(), "failover");
+                LOGGER.info("Routing {} {} call to {}", provider.getName(), language, alternate.getName());
+                return alternate;
+            }
+        }
+        // A provider that only blocks too much is still better than none
+        return failed == null && primary.tryAcquire() ? provider : null;
+    }
+
+    /**
+     * Share of {@code texts} the provider refused on safety grounds: blocked outright, or
+     * recovered to their source text after a block.
+     */
+    private static double blockedShare(List<String> texts, List<String> translated, TranslationReport report) {
+        if (texts.isEmpty()) {
+            return 0;
+        }
+        int blocked = 0;
+        for (int i = 0; i < texts.size() && i < translated.size(); i++) {
+            String translation = translated.get(i);
+            if (TranslationService.SAFETY_BLOCKED_TEXT.equals(translation)
+                    || (texts.get(i).equals(translation) && report.isSafetyBlocked(translation))) {
+                blocked++;
+            }
+        }
+        return (double) blocked / texts.size();
+    }
+
+    private Health healthOf(TranslationProvider provider, String language) {
+        String key = provider.getName().toLowerCase(Locale.ROOT) + "/" + language.toLowerCase(Locale.ROOT);
+        return health.computeIfAbsent(key, k -> new Health(k));
+    }
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * The averages and the circuit of one provider for one target language.
+     */
+    private final class Health {
+        private final String key;
+        private State state = State.CLOSED;
+        private long openUntil;
+        private long nextBlockProbe;
+        private long calls;
+        private long successes;
+        private long opened;
+        private double latencyMillis;
+        private double errorRate;
+        private double blockRate;
+
+        Health(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Whether a call may go out now; the first call after the open period becomes the
+         * probe, and no other call goes out until it is back.
+         */
+        synchronized boolean tryAcquire() {
+            if (state == State.CLOSED) {
+                return true;
+            }
+            if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+                state = State.HALF_OPEN;
+                LOGGER.info("Probing {} after {} ms open", key, openMillis);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Gives the probe slot back when the probe was cancelled before it told anything.
+         */
+        synchronized void release() {
+            if (state == State.HALF_OPEN) {
+                state = State.OPEN;
+            }
+        }
+
+        synchronized void record(long millis, boolean failed, double blocked) {
+            calls++;
+            errorRate = average(errorRate, failed ? 1 : 0, calls);
+            if (!failed) {
+                successes++;
+                latencyMillis = average(latencyMillis, millis, successes);
+                blockRate = average(blockRate, blocked, successes);
+            }
+
+            if (state == State.HALF_OPEN) {
+                if (failed) {
+                    open("the probe failed");
+                } else {
+                    state = State.CLOSED;
+                    errorRate = 0;
+                    latencyMillis = millis;
+                    LOGGER.info("Closed the circuit for {}, the probe took {} ms", key, millis);
+                }
+            } else if (state == State.CLOSED && calls >= minCalls) {
+                if (errorRate >= failureThreshold) {
+                    open(String.format("error rate %.2f", errorRate));
+                } else if (latencyMillis >= slowCallMillis) {
+                    open(String.format("average latency %.0f ms", latencyMillis));
+                }
+            }
+        }
+
+        /**
+         * Whether failover calls should go elsewhere for the blocks; every
+         * {@code translation.routing.open-ms} one of them is kept here as a probe instead, as
+         * the block rate only moves with calls that reach the provider.
+         */
+        synchronized boolean prefersAlternate() {
+            if (state != State.CLOSED || calls < minCalls || blockRate < blockThreshold) {
+                nextBlockProbe = 0;
+                return false;
+            }
+            long now = System.currentTimeMillis();
+            if (nextBlockProbe == 0) {
+                nextBlockProbe = now + openMillis;
+            }
+            if (now < nextBlockProbe) {
+                return true;
+            }
+            nextBlockProbe = now + openMillis;
+            LOGGER.info("Probing {} at block rate {}", key, String.format("%.2f", blockRate));
+            return false;
+        }
+
+        /**
+         * Lower is healthier.
+         */
+        synchronized double score() {
+            return state == State.CLOSED ? latencyMillis * (1 + errorRate + blockRate) : Double.MAX_VALUE;
+        }
+
+        synchronized Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("state", state.name());
+            map.put("calls", calls);
+            map.put("opened", opened);
+            map.put("latencyMs", Math.round(latencyMillis));
+            map.put("errorRate", Math.round(errorRate * 1000) / 1000.0);
+            map.put("blockRate", Math.round(blockRate * 1000) / 1000.0);
+            return map;
+        }
+
+        private void open(String reason) {
+            state = State.OPEN;
+            openUntil = System.currentTimeMillis() + openMillis;
+            opened++;
+            LOGGER.warn("Opened the circuit for {} for {} ms: {}", key, openMillis, reason);
+        }
+
+        private double average(double average, double sample, long count) {
+            return count == 1 ? sample : alpha * sample + (1 - alpha) * average;
+        }
+    }
+}
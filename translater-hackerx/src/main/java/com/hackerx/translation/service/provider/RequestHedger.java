@@ -0,0 +1,241 @@
+package com.hackerx.translation.service.provider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.hackerx.translation.service.Futures;
+import com.hackerx.translation.service.ProviderDispatch;
+
+/**
+ * Hedges provider batches against stragglers. A batch that is still outstanding after the
+ * provider's observed {@code translation.hedging.percentile} latency (and at least
+ * {@code translation.hedging.min-delay-ms}) is sent a second time, on another connection to
+ * the same provider, or to another language model if {@code translation.hedging.cross-provider}
+ * is set. The first reply wins and the other call is cancelled.
+ *
+ * Hedges are capped at {@code translation.hedging.budget-ratio} of the batches sent, so a
+ * slow provider costs at most that much more. Latencies are kept per provider over the last
+ * {@code translation.hedging.window} successful batches; there is no hedging until
+ * {@code translation.hedging.min-samples} of them have been seen. Batch translation is
+ * idempotent, so a duplicate is always safe.
+ *
+ * Both the latencies and the hedge delay run from the moment a batch's first request leaves
+ * the {@link com.hackerx.translation.service.ProviderHttpClient} queue, as its
+ * {@link ProviderDispatch} reports. A batch still waiting there, or for the rate limit, is
+ * never hedged, since a duplicate would only queue behind it and take quota of its own.
+ */
+@Component
+public class RequestHedger {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RequestHedger.class);
+
+    private final TranslationProviderRegistry providerRegistry;
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayMillis;
+    private final double budgetRatio;
+    private final int minSamples;
+    private final int windowSize;
+    private final boolean crossProvider;
+
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong overBudget = new AtomicLong();
+
+    public RequestHedger(TranslationProviderRegistry providerRegistry,
+            @Value("${translation.hedging.enabled:true}") boolean enabled,
+            @Value("${translation.hedging.percentile:0.95}") double percentile,
+            @Value("${translation.hedging.min-delay-ms:2000}") long minDelayMillis,
+            @Value("${translation.hedging.budget-ratio:0.05}") double budgetRatio,
+            @Value("${translation.hedging.min-samples:20}") int minSamples,
+            @Value("${translation.hedging.window:200}") int windowSize,
+            @Value("${translation.hedging.cross-provider:false}") boolean crossProvider) {
+        this.providerRegistry = providerRegistry;
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayMillis = minDelayMillis;
+        this.budgetRatio = budgetRatio;
+        this.minSamples = Math.max(1, minSamples);
+        this.windowSize = Math.max(this.minSamples, windowSize);
+        this.crossProvider = crossProvider;
+    }
+
+    /**
+     * Runs {@code call} against {@code provider}, hedged as described above. Cancelling the
+     * returned future cancels every call in flight.
+     */
+    public <T> CompletableFuture<T> call(TranslationProvider provider,
+            Function<TranslationProvider, CompletableFuture<T>> call) {
+        if (!enabled) {
+            return call.apply(provider);
+        }
+        calls.incrementAndGet();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Attempts<T> attempts = new Attempts<>(result, ProviderDispatch.current());
+        ProviderDispatch first = attempts.start(provider, call, false);
+
+        first.whenSent(() -> {
+            long delay = latencyOf(provider).percentile(percentile, minSamples);
+            if (delay >= 0 && !result.isDone()) {
+                CompletableFuture.delayedExecutor(Math.max(delay, minDelayMillis), TimeUnit.MILLISECONDS,
+                        Runnable::run).execute(() -> hedge(provider, call, attempts));
+            }
+        });
+        result.whenComplete((value, failure) -> {
+            if (result.isCancelled()) {
+                attempts.cancelAll();
+            }
+        });
+        return result;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("calls", calls.get());
+        stats.put("hedges", hedges.get());
+        stats.put("hedgeWins", hedgeWins.get());
+        stats.put("overBudget", overBudget.get());
+        Map<String, Object> thresholds = new LinkedHashMap<>();
+        latencies.forEach((provider, window) -> thresholds.put(provider, window.percentile(percentile, minSamples)));
+        stats.put("hedgeAfterMs", thresholds);
+        return stats;
+    }
+
+    private <T> void hedge(TranslationProvider provider, Function<TranslationProvider, CompletableFuture<T>> call,
+            Attempts<T> attempts) {
+        if (attempts.result.isDone() || !attempts.awaitingFirst()) {
+            return;
+        }
+        if (hedges.get() + 1 > Math.max(1, budgetRatio * calls.get())) {
+            overBudget.incrementAndGet();
+            return;
+        }
+        hedges.incrementAndGet();
+        TranslationProvider target = crossProvider ? providerRegistry.alternateFor(provider) : provider;
+        LOGGER.info("{} batch outstanding past its p{} latency, hedging it to {}", provider.getName(),
+                Math.round(percentile * 100), target.getName());
+        attempts.start(target, call, true);
+    }
+
+    private LatencyWindow latencyOf(TranslationProvider provider) {
+        return latencies.computeIfAbsent(provider.getName().toLowerCase(Locale.ROOT), k -> new LatencyWindow(windowSize));
+    }
+
+    /**
+     * The calls made for one batch; the first to succeed completes {@code result}.
+     */
+    private final class Attempts<T> {
+        private final CompletableFuture<T> result;
+        /** The dispatch the batch was sent under, such as the {@link ProviderRouter}'s. */
+        private final ProviderDispatch parent;
+        private final List<CompletableFuture<T>> inFlight = new ArrayList<>();
+        private Throwable lastFailure;
+
+        Attempts(CompletableFuture<T> result, ProviderDispatch parent) {
+            this.result = result;
+            this.parent = parent;
+        }
+
+        /**
+         * Starts a call for the batch; the returned dispatch tells when it is sent.
+         */
+        ProviderDispatch start(TranslationProvider provider, Function<TranslationProvider, CompletableFuture<T>> call,
+                boolean hedge) {
+            ProviderDispatch dispatch = ProviderDispatch.open(parent);
+            CompletableFuture<T> attempt = dispatch.start(() -> call.apply(provider));
+            synchronized (this) {
+                inFlight.add(attempt);
+            }
+            if (hedge && result.isDone()) {
+                // The first call won while this one was being sent
+                attempt.cancel(true);
+            }
+            attempt.whenComplete((value, failure) -> {
+                if (failure == null) {
+                    long millis = dispatch.millisSinceSent();
+                    if (millis >= 0) {
+                        latencyOf(provider).add(millis);
+                    }
+                    if (result.complete(value)) {
+                        if (hedge) {
+                            hedgeWins.incrementAndGet();
+                        }
+                        cancelAll();
+                    }
+                    return;
+                }
+                boolean last;
+                synchronized (this) {
+                    inFlight.remove(attempt);
+                    lastFailure = Futures.unwrap(failure);
+                    last = inFlight.isEmpty();
+                }
+                // A failed call waits for the other one, if it is still running
+                if (last) {
+                    result.completeExceptionally(lastFailure);
+                }
+            });
+            return dispatch;
+        }
+
+        synchronized boolean awaitingFirst() {
+            return inFlight.size() == 1;
+        }
+
+        void cancelAll() {
+            List<CompletableFuture<T>> calls;
+            synchronized (this) {
+                calls = new ArrayList<>(inFlight);
+            }
+            calls.forEach(call -> call.cancel(true));
+        }
+    }
+
+    /**
+     * The latencies of the last successful batches of one provider.
+     */
+    private static final class LatencyWindow {
+        private final long[] samples;
+        private int count;
+        private int next;
+
+        LatencyWindow(int size) {
+            this.samples = new long[size];
+        }
+
+        synchronized void add(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        /**
+         * The latency at {@code percentile}, or -1 with fewer than {@code minSamples} samples.
+         */
+        synchronized long percentile(double percentile, int minSamples) {
+            if (count < minSamples) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.hackerx.translation.service.provider;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hackerx.translation.service.BatchProtocol;
+import com.hackerx.translation.service.BatchRecovery;
+import com.hackerx.translation.service.Futures;
+import com.hackerx.translation.service.TranslationMetrics;
+import com.hackerx.translation.service.TranslationReport;
+
+/**
+ * A language model that translates batches with the ID-tagged {@link BatchProtocol}.
+ */
+public abstract class TaggedBatchProvider implements TranslationProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaggedBatchProvider.class);
+
+    private final BatchRecovery batchRecovery;
+    protected final TranslationMetrics metrics;
+
+    protected TaggedBatchProvider(BatchRecovery batchRecovery, TranslationMetrics metrics) {
+        this.batchRecovery = batchRecovery;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public ProviderCapabilities getCapabilities() {
+        return ProviderCapabilities.languageModel();
+    }
+
+    /**
+     * Sends one ID-tagged batch; the future completes with the translations that could be
+     * parsed from the reply, by ID.
+     */
+    protected abstract CompletableFuture<Map<String, String>> requestBatch(List<BatchProtocol.Segment> segments,
+            String targetLanguage) throws IOException;
+
+    /**
+     * Sends an ID-tagged batch and maps the reply back by ID. Segments that are missing or
+     * malformed in the reply go to {@link BatchRecovery}, which re-requests them and bisects
+     * whatever keeps failing. A single segment is sent on its own through the recovery path.
+     */
+    @Override
+    public CompletableFuture<List<String>> translateBatch(List<String> texts, String targetLanguage,
+            TranslationReport report) {
+        if (texts.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        LOGGER.info("Sending batch of {} texts to {}", texts.size(), getName());
+
+        BatchProtocol.BatchCall call = segments -> requestBatch(segments, targetLanguage);
+        BatchProtocol.SegmentCall single = text -> translate(text, targetLanguage);
+        List<BatchProtocol.Segment> segments = BatchProtocol.tag(texts);
+        if (segments.size() == 1) {
+            return batchRecovery.recover(segments, 1, getName(), call, single, report)
+                    .thenApply(translated -> BatchProtocol.inOrder(segments, translated));
+        }
+
+        report.recordBatchCall();
+        return Futures.compose(batchRecovery.withRetries(() -> call.request(segments)), reply -> {
+            Map<String, String> translated = new HashMap<>(reply);
+
+            List<BatchProtocol.Segment> missing = BatchProtocol.missing(segments, translated);
+            if (missing.isEmpty()) {
+                return CompletableFuture.completedFuture(BatchProtocol.inOrder(segments, translated));
+            }
+            LOGGER.warn("{} of {} segments missing from the {} reply. Recovering them.",
+                    missing.size(), segments.size(), getName());
+            metrics.recordCountMismatch(getName());
+            metrics.recordFallback(getName(), "recovery");
+            return batchRecovery.recover(missing, segments.size(), getName(), call, single, report)
+                    .thenApply(recovered -> {
+                        translated.putAll(recovered);
+                        return BatchProtocol.inOrder(segments, translated);
+                    });
+        });
+    }
+}
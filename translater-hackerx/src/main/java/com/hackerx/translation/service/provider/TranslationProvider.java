@@ -0,0 +1,56 @@
+package com.hackerx.translation.service.provider;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.hackerx.translation.service.Futures;
+import com.hackerx.translation.service.MaskingMode;
+import com.hackerx.translation.service.TranslationReport;
+
+/**
+ * A translation backend that jobs can choose with {@code service}. Every provider is a Spring
+ * bean, found by name in the {@link TranslationProviderRegistry}.
+ *
+ * Calls are asynchronous and go through the provider's queue in the
+ * {@link com.hackerx.translation.service.ProviderHttpClient}, under its rate limit.
+ */
+public interface TranslationProvider {
+
+    /**
+     * The name jobs choose the provider by, compared ignoring case. It also keys the
+     * provider's rate limit, dispatcher and translation memory entries.
+     */
+    String getName();
+
+    ProviderCapabilities getCapabilities();
+
+    /**
+     * How the provider masks segments before sending them. The mode changes the prompt and so
+     * the output, so it is part of the translation memory key.
+     */
+    default MaskingMode getMaskingMode() {
+        return MaskingMode.NONE;
+    }
+
+    /**
+     * Translates one segment from English into {@code targetLanguage}.
+     */
+    CompletableFuture<String> translate(String text, String targetLanguage) throws IOException;
+
+    /**
+     * Translates {@code texts} in one call, or as few as the provider allows, keeping their
+     * order. The caller keeps each batch within {@link #getCapabilities()}. Segments the
+     * provider drops are recovered or left as they are; the future fails only if the batch
+     * as a whole could not be sent.
+     */
+    CompletableFuture<List<String>> translateBatch(List<String> texts, String targetLanguage,
+            TranslationReport report);
+
+    /**
+     * Same as {@link #translate(String, String)}, waiting for the translation.
+     */
+    default String translateNow(String text, String targetLanguage) throws IOException {
+        return Futures.await(translate(text, targetLanguage));
+    }
+}
@@ -0,0 +1,125 @@
+package com.hackerx.translation.service.provider;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The {@link TranslationProvider} beans by name, and the routing of segments to the
+ * machine-translation tier.
+ *
+ * When {@code translation.mt-tier.provider} names a provider, segments of at most
+ * {@code translation.mt-tier.max-characters} characters go to it instead of the provider the
+ * job chose, and so do the values of app JSON files if {@code translation.mt-tier.app-json}
+ * is set. Short UI strings gain little from a language model and cost a call slot in its
+ * much tighter quota.
+ */
+@Component
+public class TranslationProviderRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TranslationProviderRegistry.class);
+
+    private final Map<String, TranslationProvider> providers = new LinkedHashMap<>();
+    private final TranslationProvider machineTranslationTier;
+    private final int mtTierMaxCharacters;
+    private final boolean mtTierAppJson;
+
+    public TranslationProviderRegistry(List<TranslationProvider> providers,
+            @Value("${translation.mt-tier.provider:}") String mtTierProvider,
+            @Value("${translation.mt-tier.max-characters:0}") int mtTierMaxCharacters,
+            @Value("${translation.mt-tier.app-json:false}") boolean mtTierAppJson) {
+        for (TranslationProvider provider : providers) {
+            this.providers.put(provider.getName().toLowerCase(Locale.ROOT), provider);
+        }
+        this.machineTranslationTier = mtTierProvider.isBlank() ? null
+                : this.providers.get(mtTierProvider.toLowerCase(Locale.ROOT));
+        if (!mtTierProvider.isBlank() && machineTranslationTier == null) {
+            LOGGER.warn("Unknown machine-translation tier provider {}, the tier is off", mtTierProvider);
+        }
+        this.mtTierMaxCharacters = mtTierMaxCharacters;
+        this.mtTierAppJson = mtTierAppJson;
+    }
+
+    /**
+     * The provider named {@code service}, ignoring case. Throws
+     * {@link IllegalArgumentException} if there is none.
+     */
+    public TranslationProvider get(String service) {
+        TranslationProvider provider = service == null ? null : providers.get(service.toLowerCase(Locale.ROOT));
+        if (provider == null) {
+            throw new IllegalArgumentException("Unsupported translation service: " + service);
+        }
+        return provider;
+    }
+
+    public List<String> getNames() {
+        List<String> names = new ArrayList<>(providers.size());
+        for (TranslationProvider provider : providers.values()) {
+            names.add(provider.getName());
+        }
+        return names;
+    }
+
+    /**
+     * The provider {@code text} goes to when the job chose {@code provider}: the
+     * machine-translation tier for a short segment, if it is on.
+     */
+    public TranslationProvider forSegment(TranslationProvider provider, String text) {
+        if (machineTranslationTier != null && text.length() <= mtTierMaxCharacters) {
+            return machineTranslationTier;
+        }
+        return provider;
+    }
+
+    /**
+     * The provider the values of an app JSON file go to when the job chose {@code provider}.
+     */
+    public TranslationProvider forAppJson(TranslationProvider provider) {
+        return machineTranslationTier != null && mtTierAppJson ? machineTranslationTier : provider;
+    }
+
+    /**
+     * Another language model to send a batch for {@code provider} to, or {@code provider}
+     * itself if there is none or it is not a language model.
+     */
+    public TranslationProvider alternateFor(TranslationProvider provider) {
+        if (!provider.getCapabilities().isMachineTranslation()) {
+            List<TranslationProvider> alternatives = alternativesTo(provider);
+            if (!alternatives.isEmpty()) {
+                return alternatives.get(0);
+            }
+        }
+        return provider;
+    }
+
+    /**
+     * The other providers of the same kind as {@code provider}: language models or
+     * machine-translation services.
+     */
+    public List<TranslationProvider> alternativesTo(TranslationProvider provider) {
+        boolean machineTranslation = provider.getCapabilities().isMachineTranslation();
+        List<TranslationProvider> alternatives = new ArrayList<>();
+        for (TranslationProvider alternate : providers.values()) {
+            if (alternate != provider && alternate.getCapabilities().isMachineTranslation() == machineTranslation) {
+                alternatives.add(alternate);
+            }
+        }
+        return alternatives;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("providers", getNames());
+        stats.put("machineTranslationTier", machineTranslationTier == null ? null : machineTranslationTier.getName());
+        stats.put("mtTierMaxCharacters", mtTierMaxCharacters);
+        stats.put("mtTierAppJson", mtTierAppJson);
+        return stats;
+    }
+}
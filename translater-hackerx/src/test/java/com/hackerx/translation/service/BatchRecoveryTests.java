@@ -0,0 +1,129 @@
+package com.hackerx.translation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link BatchRecovery} against stub calls that translate by upper-casing: whatever fails,
+ * every segment comes back, translated or with its source text and a segment error.
+ */
+class BatchRecoveryTests {
+
+	private static final String POISONED = "poisoned";
+
+	private final BatchRecovery batchRecovery = new BatchRecovery(3, 0, 0);
+
+	@Test
+	void partialReplyRequestsOnlyTheMissingSegments() throws IOException {
+		List<List<String>> requests = new ArrayList<>();
+		List<String> singles = new ArrayList<>();
+		BatchProtocol.BatchCall call = segments -> {
+			requests.add(ids(segments));
+			Map<String, String> reply = translate(segments);
+			if (requests.size() == 1) {
+				reply.remove("s2");
+			}
+			return CompletableFuture.completedFuture(reply);
+		};
+		BatchProtocol.SegmentCall single = text -> {
+			singles.add(text);
+			return CompletableFuture.completedFuture(text.toUpperCase(Locale.ROOT));
+		};
+		TranslationReport report = new TranslationReport();
+
+		Map<String, String> translated = recover(segments("one", "two", "three", "four"), call, single, report);
+
+		assertEquals(Map.of("s1", "ONE", "s2", "TWO", "s3", "THREE", "s4", "FOUR"), translated);
+		assertEquals(List.of(List.of("s1", "s2", "s3", "s4")), requests);
+		assertEquals(List.of("two"), singles);
+		assertEquals(0, report.getSegmentErrors().size());
+	}
+
+	@Test
+	void throwingBatchIsBisectedDownToThePoisonedSegment() throws IOException {
+		BatchProtocol.BatchCall call = segments -> {
+			for (BatchProtocol.Segment segment : segments) {
+				if (POISONED.equals(segment.getText())) {
+					throw new IOException("Unparseable reply");
+				}
+			}
+			return CompletableFuture.completedFuture(translate(segments));
+		};
+		TranslationReport report = new TranslationReport();
+
+		Map<String, String> translated = recover(segments("one", "two", POISONED, "four"), call,
+				failingSegmentCall(), report);
+
+		assertEquals(Map.of("s1", "ONE", "s2", "TWO", "s3", POISONED, "s4", "FOUR"), translated);
+		assertEquals(1, report.getSegmentErrors().size());
+		assertEquals(POISONED, report.getSegmentErrors().get(0).getSourceText());
+		assertEquals(true, report.isFailed(POISONED));
+	}
+
+	@Test
+	void failingSegmentKeepsItsSourceTextAfterItsRetries() throws IOException {
+		AtomicInteger attempts = new AtomicInteger();
+		BatchProtocol.SegmentCall single = text -> {
+			attempts.incrementAndGet();
+			throw new IOException("No translated text found");
+		};
+		TranslationReport report = new TranslationReport();
+
+		Map<String, String> translated = recover(segments(POISONED), segments -> {
+			throw new AssertionError("A single segment is not sent as a batch");
+		}, single, report);
+
+		assertEquals(Map.of("s1", POISONED), translated);
+		assertEquals(3, attempts.get());
+		assertEquals(List.of("No translated text found"),
+				report.getSegmentErrors().stream().map(TranslationReport.SegmentError::getReason).toList());
+	}
+
+	private Map<String, String> recover(List<BatchProtocol.Segment> segments, BatchProtocol.BatchCall call,
+			BatchProtocol.SegmentCall single, TranslationReport report) throws IOException {
+		return Futures.await(batchRecovery.recover(segments, segments.size(), "Stub", call, single, report));
+	}
+
+	private static BatchProtocol.SegmentCall failingSegmentCall() {
+		return text -> {
+			if (POISONED.equals(text)) {
+				throw new IOException("Refused");
+			}
+			return CompletableFuture.completedFuture(text.toUpperCase(Locale.ROOT));
+		};
+	}
+
+	private static List<BatchProtocol.Segment> segments(String... texts) {
+		List<BatchProtocol.Segment> segments = new ArrayList<>();
+		for (int i = 0; i < texts.length; i++) {
+			segments.add(new BatchProtocol.Segment("s" + (i + 1), texts[i]));
+		}
+		return segments;
+	}
+
+	private static Map<String, String> translate(List<BatchProtocol.Segment> segments) {
+		Map<String, String> reply = new LinkedHashMap<>();
+		for (BatchProtocol.Segment segment : segments) {
+			reply.put(segment.getId(), segment.getText().toUpperCase(Locale.ROOT));
+		}
+		return reply;
+	}
+
+	private static List<String> ids(List<BatchProtocol.Segment> segments) {
+		List<String> ids = new ArrayList<>();
+		for (BatchProtocol.Segment segment : segments) {
+			ids.add(segment.getId());
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,81 @@
+package com.hackerx.translation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Local matching of the {@link HighlightResolver}: verbatim, folded, fuzzy and not at all.
+ * Without a provider client, a highlight it had to ask the model for would fail the test.
+ */
+class HighlightResolverTests {
+
+	private final HighlightResolver resolver = new HighlightResolver(null, null, "", 0.8, 100);
+
+	@Test
+	void exactMatchIsTheKeyTitle() {
+		assertEquals("segunda ley", resolver.findLocally("La segunda ley de Newton", "segunda ley"));
+		assertEquals(1L, resolver.stats().get("exactMatches"));
+	}
+
+	@Test
+	void foldedMatchMapsBackToTheOriginalText() {
+		assertEquals("Segunda\n  ley", resolver.findLocally("La  Segunda\n  ley de Newton", "segunda ley."));
+		assertEquals("Ley\tde Newton", resolver.findLocally("\n\t Ley\tde Newton", "  LEY DE NEWTON "));
+		assertEquals("x", resolver.findLocally("a x b", "X"));
+		assertEquals(3L, resolver.stats().get("normalizedMatches"));
+	}
+
+	@Test
+	void fuzzyMatchAbsorbsInflection() {
+		assertEquals("leyes de Newton",
+				resolver.findLocally("Las leyes de Newton describen el movimiento.", "ley de Newton"));
+		assertEquals("leyes de Newton",
+				resolver.findLocally("Describen el movimiento: leyes de Newton.", "«Ley de Newton»"));
+		assertEquals(2L, resolver.stats().get("fuzzyMatches"));
+	}
+
+	@Test
+	void unrelatedTextHasNoMatch() {
+		assertNull(resolver.findLocally("Completely unrelated text", "segunda ley"));
+		assertNull(resolver.findLocally("Some text", "!!!"));
+		assertEquals(0L, resolver.stats().get("fuzzyMatches"));
+	}
+
+	@Test
+	void bigramSimilarityCountsRepeatsOnce() {
+		HighlightResolver.KeyBigrams key = new HighlightResolver.KeyBigrams("aaaa");
+		assertEquals(0.8, key.similarity("aaa"), 1e-9);
+		assertEquals(1.0, key.similarity("aaaa"), 1e-9);
+		assertEquals(0.0, key.similarity("bbbb"), 1e-9);
+		assertEquals(22.0 / 26, new HighlightResolver.KeyBigrams("ley de newton").similarity("leyes de newton"), 1e-9);
+		assertEquals(1.0, new HighlightResolver.KeyBigrams("a").similarity("a"), 1e-9);
+	}
+
+	@Test
+	void localMatchesResolveWithoutTheModel() {
+		List<HighlightResolver.Highlight> highlights = new ArrayList<>();
+		List<Map<String, Object>> entries = new ArrayList<>();
+		for (String keyTitle : new String[] {"segunda ley", "SEGUNDA LEY", "ley de Newton"}) {
+			Map<String, Object> owner = new LinkedHashMap<>();
+			owner.put("data", "Las leyes de Newton y la segunda ley");
+			Map<String, Object> entry = new LinkedHashMap<>();
+			entry.put("key_title", keyTitle);
+			entries.add(entry);
+			highlights.add(new HighlightResolver.Highlight(owner, entry));
+		}
+
+		resolver.resolve(highlights).join();
+
+		assertEquals("segunda ley", entries.get(0).get("key_title"));
+		assertEquals("segunda ley", entries.get(1).get("key_title"));
+		assertEquals("leyes de Newton", entries.get(2).get("key_title"));
+		assertEquals(0L, resolver.stats().get("modelCalls"));
+	}
+}
@@ -0,0 +1,142 @@
+package com.hackerx.translation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Crash recovery of the {@link NDJsonCheckpointJournal}: a journal cut or corrupted in the
+ * middle of a record replays the windows before it, drops the rest and takes new windows
+ * after them.
+ */
+class NDJsonCheckpointJournalTests {
+
+	private static final String CONTENT = "{\"title\":\"one\"}\n{\"title\":\"two\"}\n";
+	private static final int HEADER_BYTES = 8;
+	private static final int RECORD_OVERHEAD_BYTES = 16;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void tornRecordIsTruncatedAndAppendsContinue() throws IOException {
+		NDJsonCheckpointJournal journal = journal();
+		writeWindows(journal, "first", "second", "third");
+		Path file = file();
+		long intact = HEADER_BYTES + record("first") + record("second");
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(Files.size(file) - 5);
+		}
+
+		NDJsonCheckpointJournal.Checkpoint checkpoint = journal.open(CONTENT, "es", "Gemini");
+		assertReplayed(checkpoint, 0, "first");
+		assertReplayed(checkpoint, 2, "second");
+		assertNull(checkpoint.replayed(4));
+		assertEquals(intact, Files.size(file));
+
+		checkpoint.append(4, 2, bytes("third again"));
+		checkpoint.close();
+		assertEquals(intact + record("third again"), Files.size(file));
+
+		NDJsonCheckpointJournal.Checkpoint resumed = journal.open(CONTENT, "es", "Gemini");
+		assertReplayed(resumed, 0, "first");
+		assertReplayed(resumed, 2, "second");
+		assertReplayed(resumed, 4, "third again");
+		resumed.close();
+	}
+
+	@Test
+	void corruptRecordDropsItAndEverythingAfterIt() throws IOException {
+		NDJsonCheckpointJournal journal = journal();
+		writeWindows(journal, "first", "second", "third");
+		Path file = file();
+		long intact = HEADER_BYTES + record("first");
+		// Flip a byte of the second window's output, so that its CRC no longer matches
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer flipped = ByteBuffer.allocate(1);
+			long position = intact + 12;
+			channel.read(flipped, position);
+			flipped.put(0, (byte) (flipped.get(0) ^ 0x20)).rewind();
+			channel.write(flipped, position);
+		}
+
+		NDJsonCheckpointJournal.Checkpoint checkpoint = journal.open(CONTENT, "es", "Gemini");
+		assertReplayed(checkpoint, 0, "first");
+		assertNull(checkpoint.replayed(2));
+		assertNull(checkpoint.replayed(4));
+		assertEquals(intact, Files.size(file));
+
+		checkpoint.append(2, 2, bytes("second again"));
+		checkpoint.close();
+
+		NDJsonCheckpointJournal.Checkpoint resumed = journal.open(CONTENT, "es", "Gemini");
+		assertReplayed(resumed, 0, "first");
+		assertReplayed(resumed, 2, "second again");
+		assertEquals(Integer.MAX_VALUE, resumed.nextReplayedLine(2));
+		resumed.close();
+	}
+
+	@Test
+	void unknownHeaderStartsOver() throws IOException {
+		NDJsonCheckpointJournal journal = journal();
+		writeWindows(journal, "first");
+		Path file = file();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 0}), 0);
+		}
+
+		NDJsonCheckpointJournal.Checkpoint checkpoint = journal.open(CONTENT, "es", "Gemini");
+		assertNull(checkpoint.replayed(0));
+		assertEquals(HEADER_BYTES, Files.size(file));
+		checkpoint.append(0, 2, bytes("first again"));
+		checkpoint.close();
+
+		NDJsonCheckpointJournal.Checkpoint resumed = journal.open(CONTENT, "es", "Gemini");
+		assertReplayed(resumed, 0, "first again");
+		resumed.close();
+	}
+
+	private NDJsonCheckpointJournal journal() {
+		return new NDJsonCheckpointJournal(true, directory.toString(), 0, 24);
+	}
+
+	private Path file() {
+		return directory.resolve(NDJsonCheckpointJournal.jobKey(CONTENT, "es", "Gemini") + ".journal");
+	}
+
+	/**
+	 * Appends one two-line window per output, then closes the journal as a stopped job would.
+	 */
+	private static void writeWindows(NDJsonCheckpointJournal journal, String... outputs) throws IOException {
+		NDJsonCheckpointJournal.Checkpoint checkpoint = journal.open(CONTENT, "es", "Gemini");
+		for (int i = 0; i < outputs.length; i++) {
+			checkpoint.append(2 * i, 2, bytes(outputs[i]));
+		}
+		checkpoint.close();
+	}
+
+	private static void assertReplayed(NDJsonCheckpointJournal.Checkpoint checkpoint, int firstLine, String output) {
+		NDJsonCheckpointJournal.Window window = checkpoint.replayed(firstLine);
+		assertEquals(firstLine, window.getFirstLine());
+		assertEquals(2, window.getLineCount());
+		assertEquals(output, new String(window.getOutput(), StandardCharsets.UTF_8));
+	}
+
+	private static long record(String output) {
+		return RECORD_OVERHEAD_BYTES + bytes(output).length;
+	}
+
+	private static byte[] bytes(String output) {
+		return output.getBytes(StandardCharsets.UTF_8);
+	}
+}
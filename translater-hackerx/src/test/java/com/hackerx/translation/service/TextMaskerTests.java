@@ -0,0 +1,98 @@
+package com.hackerx.translation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trips of the {@link MaskingMode#COMPACT} masking: whatever the text holds, unmasking
+ * the masked text gives it back. Only surrounding spaces are not kept, since the reply is
+ * stripped, so the generated texts start and end with a letter.
+ */
+class TextMaskerTests {
+
+	private static final String[] FRAGMENTS = {
+		"{", "{{", "{{{", "}", "}}", "{{n}}", "{{l}}", "{{x}}", "{{}}", "{n}", "\n", "\r", "\r\n", "\t", "\\",
+		"\\\\", "\\\"", "\\n", "\"", "'", "“", "”", " ", "text", "é", "e\u0301", "日本語", "\uD83D\uDE00"
+	};
+
+	@Test
+	void literalBracesSurvive() {
+		assertRoundTrip("{{");
+		assertRoundTrip("a {{name}} b");
+		assertRoundTrip("{{{x}}}");
+		assertRoundTrip("{{n}} is not a newline");
+		assertRoundTrip("{{l}}{{q}}{{b}}");
+		assertRoundTrip("ends with {");
+		assertEquals("{{l}}n}}", TextMasker.maskCompact("{{n}}"));
+	}
+
+	@Test
+	void nestedQuotesSurvive() {
+		assertRoundTrip("He said \"she said \\\"hi\\\"\"");
+		assertRoundTrip("\"quoted\"");
+		assertRoundTrip("\"\"\"");
+		assertRoundTrip("'single \"double\" single'");
+	}
+
+	@Test
+	void backslashesSurvive() {
+		assertRoundTrip("C:\\path\\to\\file.txt");
+		assertRoundTrip("\\");
+		assertRoundTrip("\\\\n is not a newline\\");
+		assertRoundTrip("regex \\d+\\.\\d*");
+	}
+
+	@Test
+	void controlCharactersSurvive() {
+		assertRoundTrip("Line one\r\nLine two\r\r\rLine three\n");
+		assertRoundTrip("\tindented\t");
+	}
+
+	@Test
+	void maskedTextHoldsNoSpecialCharacters() {
+		for (String text : corpus()) {
+			String masked = TextMasker.maskCompact(text);
+			for (char c : new char[] {'\n', '\r', '\t', '"', '\\'}) {
+				assertFalse(masked.indexOf(c) >= 0, () -> "Input: " + text);
+			}
+		}
+	}
+
+	@Test
+	void generatedTextsSurvive() {
+		for (String text : corpus()) {
+			assertRoundTrip(text);
+		}
+	}
+
+	@Test
+	void quotesAddedAroundTheReplyAreDropped() {
+		assertEquals("a \"b\"", TextMasker.unmaskCompact("\"" + TextMasker.maskCompact("a \"b\"") + "\""));
+	}
+
+	private static void assertRoundTrip(String text) {
+		String expected = Normalizer.normalize(text, Normalizer.Form.NFC);
+		assertEquals(expected, TextMasker.unmaskCompact(TextMasker.maskCompact(text)), () -> "Input: " + text);
+	}
+
+	private static List<String> corpus() {
+		List<String> corpus = new ArrayList<>();
+		Random random = new Random(20241018L);
+		for (int i = 0; i < 20000; i++) {
+			StringBuilder text = new StringBuilder("a");
+			int parts = random.nextInt(12);
+			for (int j = 0; j < parts; j++) {
+				text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+			}
+			corpus.add(text.append('z').toString());
+		}
+		return corpus;
+	}
+}
@@ -0,0 +1,169 @@
+package com.hackerx.translation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Differential tests: the single-pass {@link TextPreprocessor} must give exactly what the
+ * original chain of replacements gave, which is kept here as the reference.
+ */
+class TextPreprocessorTests {
+
+	private static final String[] SERVICES = {"Gemini", "ChatGPT", "service"};
+
+	private static final String[] FRAGMENTS = {
+		"\n", "\r", "\r\n", "\t", "\\", "'", "’", "‘", "&", "\"", "“", "”", "%", "!", "#", "$", "(", ")",
+		"*", "+", ",", "-", ".", "/", ":", ";", "=", "?", "@", "[", "]", "^", "`", "{", "|", "}", "~",
+		"<", ">", "_", "__", "___", " ", "  ", "0", "12", " 3 :", "A", "AT", "DOT", "HASH", "TAB",
+		"__AT__", "__DOT__", "__HASH__", "__NEWLINE__", "__SINGLEQUOTE__", "__CURLYSINGLEQUOTE__",
+		"__LESSTHAN__", "__DOUBLEQUOTE__", "__TAB", "TAB__", "__AT__HASH__", "__DOT__DOT__", "\\\"",
+		"\\“", "\\”", "e", "\u0301", "\u0327", "\u1100", "\u1161", "\u11a8", "é", "ﬁ", "Å", "Ω",
+		"text", "Torque", "Schraube", "日本語", "\uD83D\uDE00"
+	};
+
+	@Test
+	void preprocessMatchesReference() {
+		for (String text : corpus()) {
+			assertSame(() -> reference(text), () -> TextPreprocessor.preprocessText(text, "key"), text);
+		}
+	}
+
+	@Test
+	void postprocessMatchesReference() {
+		for (String text : corpus()) {
+			for (String service : SERVICES) {
+				assertSame(() -> referencePostprocess(text, service),
+						() -> TextPreprocessor.postprocessText(text, "key", service), text);
+			}
+		}
+	}
+
+	@Test
+	void roundTripMatchesReference() {
+		for (String text : corpus()) {
+			for (String service : SERVICES) {
+				assertSame(() -> referencePostprocess(reference(text), service),
+						() -> TextPreprocessor.postprocessText(TextPreprocessor.preprocessText(text, "key"), "key",
+								service), text);
+			}
+		}
+	}
+
+	@Test
+	void overlappingPlaceholdersFollowReplacementOrder() {
+		assertEquals("__AT#", TextPreprocessor.postprocessText("__AT__HASH__", "key", "Gemini"));
+		assertEquals(".DOT__", TextPreprocessor.postprocessText("__DOT__DOT__", "key", "Gemini"));
+		assertEquals("a.b@c", TextPreprocessor.postprocessText("a__DOT__b__AT__c", "key", "Gemini"));
+	}
+
+	private static List<String> corpus() {
+		List<String> corpus = new ArrayList<>(List.of(FRAGMENTS));
+		corpus.add("");
+		corpus.add("\"");
+		corpus.add("\"quoted\"");
+		corpus.add("1: Tighten the bolt (M8) to 25 Nm; check @ 50%!");
+		corpus.add("Line one\r\nLine two\r\r\rLine three\n");
+		corpus.add("C:\\path\\to\\file.txt & \"more\" {x|y} [a^b] `c` ~d");
+		Random random = new Random(20241018L);
+		for (int i = 0; i < 20000; i++) {
+			StringBuilder text = new StringBuilder();
+			int parts = random.nextInt(12);
+			for (int j = 0; j < parts; j++) {
+				text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+			}
+			corpus.add(text.toString());
+		}
+		return corpus;
+	}
+
+	private static void assertSame(Supplier<String> expected, Supplier<String> actual, String input) {
+		assertEquals(outcome(expected), outcome(actual), () -> "Input: " + escape(input));
+	}
+
+	private static String outcome(Supplier<String> call) {
+		try {
+			return "=" + call.get();
+		} catch (RuntimeException e) {
+			return "!" + e.getClass().getName();
+		}
+	}
+
+	private static String escape(String text) {
+		StringBuilder escaped = new StringBuilder();
+		for (char c : text.toCharArray()) {
+			escaped.append(c < 0x20 || c > 0x7e ? String.format("\\u%04x", (int) c) : String.valueOf(c));
+		}
+		return escaped.toString();
+	}
+
+	private static String reference(String text) {
+		text = text.replace("\n", "__NEWLINE__")
+				.replace("\t", "__TAB__")
+				.replace("\\", "__BACKSLASH__")
+				.replace("'", "__SINGLEQUOTE__")
+				.replace("’", "__CURLYSINGLEQUOTE__")
+				.replace("‘", "__LSINGLEQUOTE__")
+				.replace("&", "__AMPERSAND__")
+				.replace("\"", "__DOUBLEQUOTE__")
+				.replace("“", "__LDOUBLEQUOTE__")
+				.replace("”", "__RDOUBLEQUOTE__")
+				.replace("%", "__PERCENT__")
+				.replace("!", "__EXCLAMATION__")
+				.replace("#", "__HASH__")
+				.replace("$", "__DOLLAR__")
+				.replace("(", "__LPAREN__")
+				.replace(")", "__RPAREN__")
+				.replace("*", "__ASTERISK__")
+				.replace("+", "__PLUS__")
+				.replace(",", "__COMMA__")
+				.replace(".", "__DOT__")
+				.replace("/", "__SLASH__")
+				.replace(":", "__COLON__")
+				.replace(";", "__SEMICOLON__")
+				.replace("=", "__EQUAL__")
+				.replace("?", "__QUESTION__")
+				.replace("@", "__AT__")
+				.replace("[", "__LBRACKET__")
+				.replace("]", "__RBRACKET__")
+				.replace("^", "__CARET__")
+				.replace("`", "__BACKTICK__")
+				.replace("{", "__LBRACE__")
+				.replace("|", "__PIPE__")
+				.replace("}", "__RBRACE__")
+				.replace("~", "__TILDE__");
+		text = Normalizer.normalize(text, Normalizer.Form.NFC);
+		return text.replaceAll("[\\n\\r]+", " ").trim();
+	}
+
+	private static String referencePostprocess(String text, String service) {
+		text = text.trim();
+		text = text.replace("__NEWLINE__", "\n").replace("__TAB__", "\t").replace("__BACKSLASH__", "\\")
+				.replace("__SINGLEQUOTE__", "'").replace("__CURLYSINGLEQUOTE__", "’").replace("__LSINGLEQUOTE__", "‘")
+				.replace("__AMPERSAND__", "&").replace("__LESSTHAN__", "<").replace("__GREATERTHAN__", ">")
+				.replace("__LDOUBLEQUOTE__", "“").replace("__RDOUBLEQUOTE__", "”").replace("__PERCENT__", "%")
+				.replace("__EXCLAMATION__", "!").replace("__HASH__", "#").replace("__DOLLAR__", "$")
+				.replace("__LPAREN__", "(").replace("__RPAREN__", ")").replace("__ASTERISK__", "*")
+				.replace("__PLUS__", "+").replace("__COMMA__", ",").replace("__DOT__", ".")
+				.replace("__SLASH__", "/").replace("__COLON__", ":").replace("__SEMICOLON__", ";")
+				.replace("__EQUAL__", "=").replace("__QUESTION__", "?").replace("__AT__", "@")
+				.replace("__LBRACKET__", "[").replace("__RBRACKET__", "]").replace("__CARET__", "^")
+				.replace("__BACKTICK__", "`").replace("__LBRACE__", "{").replace("__PIPE__", "|")
+				.replace("__RBRACE__", "}").replace("__TILDE__", "~").replace("__DOUBLEQUOTE__", "\"");
+		if ("ChatGPT".equalsIgnoreCase(service)) {
+			text = text.replace("\\\"", "\"").replace("\\“", "“").replace("\\”", "”").replace("\"", " ");
+		}
+		if (text.startsWith("\"") && text.endsWith("\"")) {
+			text = text.substring(1, text.length() - 1);
+		}
+		text = Normalizer.normalize(text, Normalizer.Form.NFC);
+		text = text.replaceAll("\\s*\\d+\\s*:", "").trim();
+		return text.replaceAll(" +", " ").trim();
+	}
+}
@@ -0,0 +1,143 @@
+package com.hackerx.translation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Differential tests: the streamed {@link TranslatableJsonStream} must find the same segments
+ * and highlights as the tree walk of {@link TranslatableDocument}, and write the same document.
+ * Each text is translated to itself and marked by the postprocessing, so a segment written to
+ * the wrong place shows.
+ */
+class TranslatableJsonStreamTests {
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	private static final UnaryOperator<String> MARK = text -> "<" + text + ">";
+
+	private static final String[] DOCUMENTS = {
+		"{}",
+		"{\"subject\":\"Physics\",\"topic_name\":\"Forces\",\"count\":3,\"ratio\":1.5,\"done\":true,\"none\":null}",
+		// OUTPUT data, before and after its type key, and a data key of another type
+		"{\"data\":\"printed\",\"type\":\"OUTPUT\",\"title\":\"Run it\"}",
+		"{\"type\":\"OUTPUT\",\"data\":\"printed\",\"title\":\"Run it\"}",
+		"{\"type\":\"TEXT\",\"data\":\"Read this\"}",
+		"{\"items\":[{\"type\":\"OUTPUT\",\"data\":\"42\"},{\"data\":\"43\",\"type\":\"OUTPUT\",\"hint\":\"x\"},"
+				+ "{\"type\":\"CODE\",\"data\":\"print(42)\"}]}",
+		// translate_content skips the next translatable key only
+		"{\"translate_content\":false,\"question_text\":\"Keep me\",\"hint\":\"Translate me\"}",
+		"{\"translate_content\":\"False\",\"other\":1,\"title\":\"Keep me\",\"name\":\"Translate me\"}",
+		"{\"translate_content\":true,\"title\":\"Translate me\"}",
+		"{\"translate_content\":false,\"option\":[\"a\",{\"content\":\"b\"}],\"hint\":\"c\"}",
+		"{\"translate_content\":false,\"nested\":{\"title\":\"inner\"},\"title\":\"outer\"}",
+		// option lists of strings, of maps, and a skipped one whose maps still carry highlights
+		"{\"option\":[\"Yes\",\"No\",\"\",7,null,[\"deep\"]]}",
+		"{\"option\":[{\"content\":\"First\",\"is_correct\":true},{\"content\":\"Second\",\"hint\":\"h\"}]}",
+		"{\"translate_content\":false,\"option\":[{\"data\":\"d\",\"highlight\":[{\"key_title\":\"k\"}]}]}",
+		"{\"questions\":{\"option\":{\"content\":\"In a map\"}}}",
+		"{\"choices\":[{\"option\":[\"x\"]},\"loose\",{\"name\":\"n\"}]}",
+		// highlights
+		"{\"data\":\"Newton's second law\",\"highlight\":[{\"key_title\":\"second law\",\"color\":\"red\"},"
+				+ "{\"key_title\":\"\"},{\"color\":\"blue\"},\"not a map\"]}",
+		"{\"highlight\":[{\"key_title\":\"before data\"}],\"data\":\"data after highlight\"}",
+		"{\"data\":\"output highlight\",\"type\":\"OUTPUT\",\"highlight\":[{\"key_title\":\"output\"}]}",
+		"{\"data\":\"d\",\"highlight\":{\"key_title\":\"not a list\"}}",
+		"{\"highlight\":[{\"key_title\":\"no data\"}]}",
+		"{\"data\":\"outer\",\"highlight\":[{\"key_title\":\"outer\"}],\"child\":{\"data\":\"inner text\","
+				+ "\"highlight\":[{\"key_title\":\"inner\"}]}}",
+		// translatable keys holding other values
+		"{\"content\":{\"title\":\"map under a translatable key\"},\"description\":[\"s\",{\"info_text\":\"i\"}]}",
+		"{\"lhs\":[\"a\",\"b\"],\"rhs\":[\"c\",\"\"],\"tap_option\":\"\",\"correct_explanation\":\"Because\"}",
+		// escapes and non-ASCII text
+		"{\"title\":\"Quote \\\" backslash \\\\ newline \\n tab \\t unicode \\u00e9 日本語 \\ud83d\\ude00\"}",
+		// a small lesson
+		"{\"subject\":\"Mechanics\",\"subtopic_name\":\"Torque\",\"lessons\":[{\"title\":\"Intro\",\"content\":["
+				+ "{\"type\":\"TEXT\",\"data\":\"Torque is a turning force.\",\"highlight\":[{\"key_title\":\"turning force\"}]},"
+				+ "{\"type\":\"OUTPUT\",\"data\":\"25 Nm\"},"
+				+ "{\"type\":\"QUESTION\",\"question_text\":\"What is torque?\",\"translate_content\":false,"
+				+ "\"option\":[\"A force\",\"A turning force\"],\"correct_explanation\":\"It turns.\","
+				+ "\"incorrect_explanation\":\"It does not push.\"}]}]}"
+	};
+
+	@Test
+	void streamMatchesTree() throws IOException {
+		for (String document : DOCUMENTS) {
+			assertEquals(translateTree(document), translateStream(document), document);
+		}
+	}
+
+	@Test
+	void streamFindsTheSameSegments() throws IOException {
+		for (String document : DOCUMENTS) {
+			byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+			TranslatableDocument tree = TranslatableDocument.of(parse(bytes));
+			TranslatableJsonStream stream = TranslatableJsonStream.scan(new ByteArrayInputStream(bytes));
+			assertEquals(tree.getTexts(), stream.getTexts(), document);
+			assertEquals(keyTitles(tree.getHighlights()), keyTitles(stream.getHighlights()), document);
+		}
+	}
+
+	private static Map<String, Object> translateTree(String document) throws IOException {
+		Map<String, Object> json = parse(document.getBytes(StandardCharsets.UTF_8));
+		TranslatableDocument translatable = TranslatableDocument.of(json);
+		translatable.fill(translatable.getTexts(), MARK);
+		resolve(translatable.getHighlights());
+		return json;
+	}
+
+	private static Map<String, Object> translateStream(String document) throws IOException {
+		byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+		TranslatableJsonStream stream = TranslatableJsonStream.scan(new ByteArrayInputStream(bytes));
+		stream.fill(stream.getTexts(), MARK);
+		resolve(stream.getHighlights());
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		stream.write(new ByteArrayInputStream(bytes), output);
+		return parse(output.toByteArray());
+	}
+
+	/**
+	 * Stands in for the {@link HighlightResolver}: points each key title at its data.
+	 */
+	private static void resolve(List<HighlightResolver.Highlight> highlights) {
+		for (HighlightResolver.Highlight highlight : highlights) {
+			if (highlight.getKeyTitle() != null) {
+				highlight.setKeyTitle(highlight.getKeyTitle() + " in " + highlight.getTranslatedData());
+			}
+		}
+	}
+
+	/**
+	 * The key titles of the highlights with their data, sorted: each highlight is resolved on its
+	 * own, and the stream lists nested ones first. Entries without a key title are left alone by
+	 * the resolver and only the tree keeps them.
+	 */
+	private static List<String> keyTitles(List<HighlightResolver.Highlight> highlights) {
+		List<String> keyTitles = new ArrayList<>();
+		for (HighlightResolver.Highlight highlight : highlights) {
+			if (highlight.getKeyTitle() != null) {
+				keyTitles.add(highlight.getKeyTitle() + " in " + highlight.getTranslatedData());
+			}
+		}
+		Collections.sort(keyTitles);
+		return keyTitles;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> parse(byte[] json) throws IOException {
+		return OBJECT_MAPPER.readValue(json, LinkedHashMap.class);
+	}
+}
@@ -0,0 +1,47 @@
+package com.hackerx.translation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Admission of the {@link TranslationJobExecutor} with results retained by finished jobs: they
+ * count against the in-memory budget until they are released.
+ */
+class TranslationJobExecutorTests {
+
+	private final TranslationJobExecutor executor = new TranslationJobExecutor(1, 1, 8, 100, 1, 30);
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdown();
+	}
+
+	@Test
+	void retainedResultsCountAgainstTheBudget() {
+		TranslationJobExecutor.Retention retention = executor.retain(80);
+
+		assertThrows(JobRejectedException.class, () -> executor.admit(30));
+		assertEquals(10, executor.retainedBytesToFree(30));
+		assertEquals(0, executor.getInMemoryBytes());
+
+		retention.release();
+		retention.release();
+		assertEquals(0, executor.getRetainedBytes());
+		assertEquals(0, executor.retainedBytesToFree(30));
+		executor.admit(30).release();
+	}
+
+	@Test
+	void nothingIsFreedForAJobThatDoesNotFitAnyway() {
+		TranslationJobExecutor.Admission running = executor.admit(90);
+		executor.retain(5);
+
+		assertEquals(0, executor.retainedBytesToFree(20));
+		assertEquals(0, executor.retainedBytesToFree(5));
+		assertEquals(5, executor.retainedBytesToFree(10));
+		running.release();
+	}
+}
@@ -0,0 +1,67 @@
+package com.hackerx.translation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Keys and lookups of the heap tier of the {@link TranslationMemory}.
+ */
+class TranslationMemoryTests {
+
+	private final TranslationMemory memory = new TranslationMemory(true, 1000, "");
+
+	@Test
+	void keyCoversMaskingAndPromptVersion() {
+		String placeholder = TranslationMemory.key("Hello", "es", "Gemini", MaskingMode.PLACEHOLDER);
+		assertNotEquals(placeholder, TranslationMemory.key("Hello", "es", "Gemini", MaskingMode.COMPACT));
+		assertEquals(placeholder, TranslationMemory.key("Hello", "ES", "gemini", MaskingMode.PLACEHOLDER));
+		assertTrue(placeholder.endsWith(":" + SystemPrompts.PROMPT_VERSION), placeholder);
+	}
+
+	@Test
+	void otherMaskingMissesTheMemory() {
+		memory.put("Hello", "es", "Gemini", MaskingMode.PLACEHOLDER, "Hola");
+
+		assertEquals("Hola", memory.get("Hello", "es", "Gemini", MaskingMode.PLACEHOLDER));
+		assertNull(memory.get("Hello", "es", "Gemini", MaskingMode.COMPACT));
+	}
+
+	@Test
+	void edgeWhitespaceIsPartOfTheKey() {
+		memory.put("Hello\n", "es", "Gemini", MaskingMode.NONE, "Hola\n");
+
+		assertNull(memory.get("Hello", "es", "Gemini", MaskingMode.NONE));
+		assertNull(memory.get("  Hello\n", "es", "Gemini", MaskingMode.NONE));
+		assertEquals("Hola\n", memory.get("Hello\n", "es", "Gemini", MaskingMode.NONE));
+		// Composed and decomposed forms are still the same text
+		memory.put("caf\u00e9", "es", "Gemini", MaskingMode.NONE, "caf\u00e9");
+		assertEquals("caf\u00e9", memory.get("cafe\u0301", "es", "Gemini", MaskingMode.NONE));
+	}
+
+	@Test
+	void repeatsKeepTheirOwnEdgeWhitespace() throws IOException {
+		List<List<String>> requests = new ArrayList<>();
+		List<String> texts = List.of("Hello\n", "Hello", "Hello\n", " Hello");
+		List<String> translated = Futures.await(memory.translateThrough(texts, "fr", "Stub", MaskingMode.NONE,
+				misses -> {
+					requests.add(misses);
+					List<String> translations = new ArrayList<>();
+					for (String miss : misses) {
+						translations.add(miss.replace("Hello", "Bonjour"));
+					}
+					return CompletableFuture.completedFuture(translations);
+				}));
+
+		assertEquals(List.of("Bonjour\n", "Bonjour", "Bonjour\n", " Bonjour"), translated);
+		assertEquals(List.of(List.of("Hello\n", "Hello", " Hello")), requests);
+	}
+}
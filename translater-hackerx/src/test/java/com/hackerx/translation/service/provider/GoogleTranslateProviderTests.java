@@ -0,0 +1,43 @@
+package com.hackerx.translation.service.provider;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Target languages of the {@link GoogleTranslateProvider}, given as codes or as English names.
+ */
+class GoogleTranslateProviderTests {
+
+	private final GoogleTranslateProvider provider = new GoogleTranslateProvider(null, null,
+			"http://localhost/translate", "", 128, 30000);
+
+	@AfterEach
+	void shutdown() {
+		provider.shutdown();
+	}
+
+	@Test
+	void namesShapedLikeCodesAreLookedUp() throws IOException {
+		assertEquals("lo", provider.languageCode("Lao"));
+		assertEquals("ee", provider.languageCode("Ewe"));
+		assertEquals("tw", provider.languageCode("Twi"));
+		assertEquals("es", provider.languageCode(" Spanish "));
+	}
+
+	@Test
+	void codesPassThrough() throws IOException {
+		assertEquals("es", provider.languageCode("es"));
+		assertEquals("zh-CN", provider.languageCode("zh-CN"));
+		assertEquals("fil", provider.languageCode("fil"));
+	}
+
+	@Test
+	void unknownNamesAreRejected() {
+		assertThrows(IOException.class, () -> provider.languageCode("Elvish Sindarin"));
+	}
+}
@@ -0,0 +1,226 @@
+package com.hackerx.translation.service.provider;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import com.hackerx.translation.service.Futures;
+import com.hackerx.translation.service.ProviderDispatch;
+import com.hackerx.translation.service.TranslationMetrics;
+import com.hackerx.translation.service.TranslationReport;
+import com.hackerx.translation.service.TranslationService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * The circuits of the {@link ProviderRouter} against stub providers whose calls complete when
+ * the test says so. A call counts as sent once it marks its {@link ProviderDispatch}, as the
+ * HTTP client does when the request leaves the queue.
+ */
+class ProviderRouterTests {
+
+	private static final long OPEN_MILLIS = 100;
+	private static final List<String> TEXTS = List.of("Hello");
+
+	private final StubProvider primary = new StubProvider("Primary");
+	private final StubProvider alternate = new StubProvider("Alternate");
+	private final TranslationProviderRegistry registry = new TranslationProviderRegistry(List.of(primary, alternate),
+			"", 0, false);
+	private final List<String> called = new ArrayList<>();
+
+	@Test
+	void failuresOpenTheCircuitAndASuccessfulProbeClosesIt() throws Exception {
+		ProviderRouter router = router(0);
+		TranslationReport report = new TranslationReport();
+		fail(router, report);
+		fail(router, report);
+		assertEquals("OPEN", state(router));
+
+		IOException rejected = assertThrows(IOException.class, () -> Futures.await(call(router, report, sent(reply()))));
+		assertTrue(rejected.getMessage().contains("is open"), rejected.getMessage());
+		assertEquals(2, called.size());
+
+		Thread.sleep(OPEN_MILLIS + 50);
+		CompletableFuture<List<String>> probe = new CompletableFuture<>();
+		CompletableFuture<List<String>> probed = call(router, report, sent(target -> probe));
+		assertEquals("HALF_OPEN", state(router));
+		assertThrows(IOException.class, () -> Futures.await(call(router, report, sent(reply()))));
+
+		probe.complete(List.of("Hola"));
+		assertEquals(List.of("Hola"), Futures.await(probed));
+		assertEquals("CLOSED", state(router));
+		assertEquals(List.of("Hola"), Futures.await(call(router, report, sent(reply()))));
+	}
+
+	@Test
+	void failedProbeOpensTheCircuitAgain() throws Exception {
+		ProviderRouter router = router(0);
+		TranslationReport report = new TranslationReport();
+		fail(router, report);
+		fail(router, report);
+
+		Thread.sleep(OPEN_MILLIS + 50);
+		fail(router, report);
+		assertEquals("OPEN", state(router));
+		assertThrows(IOException.class, () -> Futures.await(call(router, report, sent(reply()))));
+	}
+
+	@Test
+	void cancelledProbeGivesItsSlotBack() throws Exception {
+		ProviderRouter router = router(0);
+		TranslationReport report = new TranslationReport();
+		fail(router, report);
+		fail(router, report);
+
+		Thread.sleep(OPEN_MILLIS + 50);
+		CompletableFuture<List<String>> probe = new CompletableFuture<>();
+		call(router, report, sent(target -> probe)).cancel(true);
+		assertTrue(probe.isCancelled());
+		assertEquals("OPEN", state(router));
+
+		assertEquals(List.of("Hola"), Futures.await(call(router, report, sent(reply()))));
+		assertEquals("CLOSED", state(router));
+	}
+
+	@Test
+	void timeoutRunsFromTheMomentTheCallIsSent() throws Exception {
+		ProviderRouter router = router(100);
+		TranslationReport report = new TranslationReport();
+		AtomicReference<ProviderDispatch> dispatch = new AtomicReference<>();
+		CompletableFuture<List<String>> reply = new CompletableFuture<>();
+		CompletableFuture<List<String>> result = call(router, report, target -> {
+			dispatch.set(ProviderDispatch.current());
+			return reply;
+		});
+
+		// Queued well past the timeout: nothing happens to it
+		Thread.sleep(250);
+		assertFalse(result.isDone());
+		assertEquals(0L, router.stats().get("timeouts"));
+
+		dispatch.get().markSent();
+		IOException timedOut = assertThrows(IOException.class, () -> Futures.await(result));
+		assertTrue(timedOut.getMessage().contains("timed out"), timedOut.getMessage());
+		assertTrue(reply.isCancelled());
+		assertEquals(1L, router.stats().get("timeouts"));
+		assertEquals(1L, route(router).get("calls"));
+	}
+
+	@Test
+	void callCancelledWhileQueuedIsNotAFailure() throws Exception {
+		ProviderRouter router = router(100);
+		TranslationReport report = new TranslationReport();
+		CompletableFuture<List<String>> reply = new CompletableFuture<>();
+		call(router, report, target -> reply).cancel(true);
+
+		assertTrue(reply.isCancelled());
+		assertEquals(0L, route(router).get("calls"));
+		assertEquals("CLOSED", state(router));
+	}
+
+	@Test
+	void blockedProviderStillGetsAProbe() throws Exception {
+		ProviderRouter router = router(0);
+		TranslationReport report = new TranslationReport();
+		report.setFailoverAllowed(true);
+		Function<TranslationProvider, CompletableFuture<List<String>>> blockedOnPrimary = sent(target ->
+				CompletableFuture.completedFuture(List.of(target == primary ? TranslationService.SAFETY_BLOCKED_TEXT
+						: "Hola")));
+
+		Futures.await(call(router, report, blockedOnPrimary));
+		Futures.await(call(router, report, blockedOnPrimary));
+		Futures.await(call(router, report, blockedOnPrimary));
+		assertEquals(List.of("Primary", "Primary", "Alternate"), called);
+
+		Thread.sleep(OPEN_MILLIS + 50);
+		Futures.await(call(router, report, blockedOnPrimary));
+		Futures.await(call(router, report, blockedOnPrimary));
+		assertEquals(List.of("Primary", "Primary", "Alternate", "Primary", "Alternate"), called);
+	}
+
+	/**
+	 * A router whose circuits open after two calls at half of them failed.
+	 */
+	private ProviderRouter router(long callTimeoutMillis) {
+		return new ProviderRouter(registry, new TranslationMetrics(new SimpleMeterRegistry()), true, 0.5, 2, 0.5,
+				60000, 0.3, OPEN_MILLIS, callTimeoutMillis);
+	}
+
+	private CompletableFuture<List<String>> call(ProviderRouter router, TranslationReport report,
+			Function<TranslationProvider, CompletableFuture<List<String>>> call) {
+		return router.call(primary, TEXTS, "es", report, target -> {
+			called.add(target.getName());
+			return call.apply(target);
+		});
+	}
+
+	private void fail(ProviderRouter router, TranslationReport report) {
+		assertThrows(IOException.class, () -> Futures.await(call(router, report,
+				sent(target -> CompletableFuture.failedFuture(new IOException("Unexpected code 500"))))));
+	}
+
+	/**
+	 * {@code call}, marked sent as soon as it is made.
+	 */
+	private static Function<TranslationProvider, CompletableFuture<List<String>>> sent(
+			Function<TranslationProvider, CompletableFuture<List<String>>> call) {
+		return target -> {
+			ProviderDispatch.current().markSent();
+			return call.apply(target);
+		};
+	}
+
+	private static Function<TranslationProvider, CompletableFuture<List<String>>> reply() {
+		return target -> CompletableFuture.completedFuture(List.of("Hola"));
+	}
+
+	private static String state(ProviderRouter router) {
+		return (String) route(router).get("state");
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> route(ProviderRouter router) {
+		Map<String, Object> routes = (Map<String, Object>) router.stats().get("routes");
+		return (Map<String, Object>) routes.get("primary/es");
+	}
+
+	private static final class StubProvider implements TranslationProvider {
+		private final String name;
+
+		StubProvider(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public ProviderCapabilities getCapabilities() {
+			return ProviderCapabilities.languageModel();
+		}
+
+		@Override
+		public CompletableFuture<String> translate(String text, String targetLanguage) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public CompletableFuture<List<String>> translateBatch(List<String> texts, String targetLanguage,
+				TranslationReport report) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
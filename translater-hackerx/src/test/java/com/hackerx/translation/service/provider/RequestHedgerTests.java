@@ -0,0 +1,154 @@
+package com.hackerx.translation.service.provider;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import com.hackerx.translation.service.Futures;
+import com.hackerx.translation.service.ProviderDispatch;
+import com.hackerx.translation.service.TranslationReport;
+
+/**
+ * The {@link RequestHedger} against a stub provider whose calls complete when the test says
+ * so. Latencies are seeded with one instant call, so a batch is hedged
+ * {@link #MIN_DELAY_MILLIS} after it is sent.
+ */
+class RequestHedgerTests {
+
+	private static final long MIN_DELAY_MILLIS = 50;
+	private static final long PAST_DELAY_MILLIS = 200;
+
+	private final StubProvider provider = new StubProvider();
+	private final TranslationProviderRegistry registry = new TranslationProviderRegistry(List.of(provider), "", 0,
+			false);
+	private final List<CompletableFuture<String>> replies = new CopyOnWriteArrayList<>();
+	private final List<ProviderDispatch> dispatches = new CopyOnWriteArrayList<>();
+
+	@Test
+	void batchStillQueuedIsNotHedged() throws Exception {
+		RequestHedger hedger = hedger(1.0);
+		CompletableFuture<String> result = hedger.call(provider, call(false));
+
+		Thread.sleep(PAST_DELAY_MILLIS);
+		assertEquals(1, replies.size());
+		assertEquals(0L, hedger.stats().get("hedges"));
+
+		dispatches.get(0).markSent();
+		Thread.sleep(PAST_DELAY_MILLIS);
+		assertEquals(2, replies.size());
+		assertEquals(1L, hedger.stats().get("hedges"));
+		replies.get(0).complete("Hola");
+		assertEquals("Hola", Futures.await(result));
+	}
+
+	@Test
+	void firstReplyWinsAndTheOtherCallIsCancelled() throws Exception {
+		RequestHedger hedger = hedger(1.0);
+		CompletableFuture<String> result = hedger.call(provider, call(true));
+		Thread.sleep(PAST_DELAY_MILLIS);
+		assertEquals(2, replies.size());
+
+		replies.get(1).complete("Hola");
+		assertEquals("Hola", Futures.await(result));
+		assertTrue(replies.get(0).isCancelled());
+		assertEquals(1L, hedger.stats().get("hedgeWins"));
+	}
+
+	@Test
+	void failedCallWaitsForTheOther() throws Exception {
+		RequestHedger hedger = hedger(1.0);
+		CompletableFuture<String> result = hedger.call(provider, call(true));
+		Thread.sleep(PAST_DELAY_MILLIS);
+
+		replies.get(0).completeExceptionally(new IOException("Unexpected code 500"));
+		assertFalse(result.isDone());
+		replies.get(1).complete("Hola");
+		assertEquals("Hola", Futures.await(result));
+	}
+
+	@Test
+	void hedgesStayWithinTheBudget() throws Exception {
+		// At least one hedge is always allowed; a ratio of 0 allows no more
+		RequestHedger hedger = hedger(0);
+		hedger.call(provider, call(true));
+		hedger.call(provider, call(true));
+		Thread.sleep(PAST_DELAY_MILLIS);
+
+		assertEquals(3, replies.size());
+		assertEquals(1L, hedger.stats().get("hedges"));
+		assertEquals(1L, hedger.stats().get("overBudget"));
+	}
+
+	@Test
+	void cancellingTheBatchCancelsEveryCall() throws Exception {
+		RequestHedger hedger = hedger(1.0);
+		CompletableFuture<String> result = hedger.call(provider, call(true));
+		Thread.sleep(PAST_DELAY_MILLIS);
+		assertEquals(2, replies.size());
+
+		result.cancel(true);
+		assertTrue(replies.get(0).isCancelled());
+		assertTrue(replies.get(1).isCancelled());
+	}
+
+	/**
+	 * A hedger that hedges every call past {@link #MIN_DELAY_MILLIS}, within {@code budgetRatio},
+	 * its latency window seeded with one call that took no time.
+	 */
+	private RequestHedger hedger(double budgetRatio) throws IOException {
+		RequestHedger hedger = new RequestHedger(registry, true, 0.95, MIN_DELAY_MILLIS, budgetRatio, 1, 1, false);
+		Futures.await(hedger.call(provider, target -> {
+			ProviderDispatch.current().markSent();
+			return CompletableFuture.completedFuture("seed");
+		}));
+		return hedger;
+	}
+
+	/**
+	 * A call whose replies the test completes, sent at once if {@code sent}.
+	 */
+	private Function<TranslationProvider, CompletableFuture<String>> call(boolean sent) {
+		return target -> {
+			ProviderDispatch dispatch = ProviderDispatch.current();
+			dispatches.add(dispatch);
+			if (sent) {
+				dispatch.markSent();
+			}
+			CompletableFuture<String> reply = new CompletableFuture<>();
+			replies.add(reply);
+			return reply;
+		};
+	}
+
+	private static final class StubProvider implements TranslationProvider {
+
+		@Override
+		public String getName() {
+			return "Stub";
+		}
+
+		@Override
+		public ProviderCapabilities getCapabilities() {
+			return ProviderCapabilities.languageModel();
+		}
+
+		@Override
+		public CompletableFuture<String> translate(String text, String targetLanguage) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public CompletableFuture<List<String>> translateBatch(List<String> texts, String targetLanguage,
+				TranslationReport report) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}